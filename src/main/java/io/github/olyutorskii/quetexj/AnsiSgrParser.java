@@ -0,0 +1,528 @@
+/*
+ * License : The MIT License
+ * Copyright(c) 2019 Olyutorskii
+ */
+
+package io.github.olyutorskii.quetexj;
+
+/**
+ * Streaming parser of ANSI escape sequences.
+ *
+ * <p>Escape sequences are stripped from TextChunk in place.
+ * SGR(Select Graphic Rendition) sequences are converted
+ * to style spans of the chunk. Other sequences are just stripped:
+ * CSI sequences, escape sequences with intermediate bytes such as
+ * "ESC ( B", control strings (OSC, DCS, APC, PM) terminated by BEL or ST,
+ * and other two-char escape sequences.
+ *
+ * <p>Style is packed into int. 0 means default style,
+ * and text of default style has no span.
+ *
+ * <p>Supported SGR attributes are bold, underline, inverse,
+ * 16 colors, 256 colors, and 24-bit colors
+ * (approximated to nearest 256 colors).
+ *
+ * <p>Each chunk starts with default style,
+ * because chunks from different threads are interleaved.
+ * Unterminated sequence at the end of chunk is dropped.
+ *
+ * <p>No allocation happens per chunk.
+ *
+ * <p>Not thread-safe.
+ */
+final class AnsiSgrParser {
+
+    /** Document property key of SpanRing of ANSI styles. */
+    static final String SPANS_KEY =
+            "io.github.olyutorskii.quetexj.ansiSpans";
+
+    /** Color index mask of style. */
+    static final int COLOR_MASK = 0xff;
+    /** Flag of foreground color. */
+    static final int FG_SET = 1 << 8;
+    /** Shift of background color index. */
+    static final int BG_SHIFT = 9;
+    /** Flag of background color. */
+    static final int BG_SET = 1 << 17;
+    /** Flag of bold. */
+    static final int BOLD = 1 << 18;
+    /** Flag of underline. */
+    static final int UNDERLINE = 1 << 19;
+    /** Flag of inverse. */
+    static final int INVERSE = 1 << 20;
+
+    private static final int FG_BITS = FG_SET | COLOR_MASK;
+    private static final int BG_BITS = BG_SET | COLOR_MASK << BG_SHIFT;
+
+    private static final char ESC = '\u001b';
+    private static final char BEL = '\u0007';
+    private static final char ST_TAIL = '\\';
+    private static final int MAX_PARAMS = 16;
+    private static final int MAX_PARAMVAL = 0xffff;
+
+    private static final int SGR_RESET = 0;
+    private static final int SGR_BOLD = 1;
+    private static final int SGR_UNDERLINE = 4;
+    private static final int SGR_INVERSE = 7;
+    private static final int SGR_NORMAL = 22;
+    private static final int SGR_NO_UNDERLINE = 24;
+    private static final int SGR_NO_INVERSE = 27;
+    private static final int SGR_FG = 30;
+    private static final int SGR_FG_EXT = 38;
+    private static final int SGR_FG_DEF = 39;
+    private static final int SGR_BG = 40;
+    private static final int SGR_BG_EXT = 48;
+    private static final int SGR_BG_DEF = 49;
+    private static final int SGR_FG_BRIGHT = 90;
+    private static final int SGR_BG_BRIGHT = 100;
+    private static final int BASIC_COLORS = 8;
+
+    private static final int EXT_256 = 5;
+    private static final int EXT_RGB = 2;
+
+    private static final int CUBE_BASE = 16;
+    private static final int CUBE_SIDE = 6;
+
+
+    private final int[] params = new int[MAX_PARAMS];
+
+
+    /**
+     * Constructor.
+     */
+    AnsiSgrParser() {
+        super();
+        return;
+    }
+
+
+    /**
+     * Return whether chunk contains ESC.
+     *
+     * @param buf buffer
+     * @param len length
+     * @return true if contains
+     */
+    private static boolean hasEscape(char[] buf, int len) {
+        for (int idx = 0; idx < len; idx++) {
+            if (buf[idx] == ESC) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Parse chunk.
+     *
+     * <p>Escape sequences are stripped from chunk,
+     * and style spans are added to chunk.
+     *
+     * @param chunk text chunk
+     */
+    void parse(TextChunk chunk) {
+        ChunkSpans spans = chunk.getStyles();
+        char[] buf = chunk.getBuffer();
+        int len = chunk.length();
+        if (!hasEscape(buf, len)) return;
+
+        int style = 0;
+        int spanStart = 0;
+        int wpos = 0;
+        int rpos = 0;
+
+        while (rpos < len) {
+            char ch = buf[rpos];
+            if (ch != ESC) {
+                buf[wpos++] = ch;
+                rpos++;
+                continue;
+            }
+
+            int end = parseEscape(buf, rpos + 1, len);
+            if (end < 0) break;
+            rpos = end + 1;
+
+            if (!isSgr(buf, end)) continue;
+
+            int newStyle = applySgr(style, this.params[MAX_PARAMS - 1]);
+            if (newStyle != style) {
+                addSpan(spans, spanStart, wpos, style);
+                spanStart = wpos;
+                style = newStyle;
+            }
+        }
+
+        addSpan(spans, spanStart, wpos, style);
+        chunk.truncate(wpos);
+
+        return;
+    }
+
+    /**
+     * Add span if not default style.
+     *
+     * @param spans style spans
+     * @param start start position in chunk
+     * @param end end position in chunk (exclusive)
+     * @param style style
+     */
+    private static void addSpan(
+            ChunkSpans spans, int start, int end, int style) {
+        if (style == 0) return;
+        spans.add(start, end, style);
+        return;
+    }
+
+    /**
+     * Parse escape sequence after ESC.
+     *
+     * <p>Two-char escape sequence ends at the char after ESC.
+     *
+     * @param buf buffer
+     * @param from position after ESC
+     * @param len buffer length
+     * @return position of last char of sequence. -1 if unterminated.
+     */
+    private int parseEscape(char[] buf, int from, int len) {
+        if (from >= len) return -1;
+
+        this.params[0] = -1;
+        char ch = buf[from];
+
+        int result;
+        if (ch == '[') {
+            result = parseCsi(buf, from + 1, len);
+        } else if (isStringIntroducer(ch)) {
+            result = skipControlString(buf, from + 1, len);
+        } else if (isIntermediate(ch)) {
+            result = skipIntermediates(buf, from + 1, len);
+        } else {
+            result = from;
+        }
+
+        return result;
+    }
+
+    /**
+     * Return whether char after ESC introduces control string.
+     *
+     * <p>OSC, DCS, APC and PM.
+     *
+     * @param ch char after ESC
+     * @return true if control string
+     */
+    private static boolean isStringIntroducer(char ch) {
+        return ch == ']' || ch == 'P' || ch == '_' || ch == '^';
+    }
+
+    /**
+     * Return whether char is intermediate byte of escape sequence.
+     *
+     * @param ch char
+     * @return true if intermediate byte
+     */
+    private static boolean isIntermediate(char ch) {
+        return 0x20 <= ch && ch <= 0x2f;
+    }
+
+    /**
+     * Skip control string up to BEL or ST("ESC \").
+     *
+     * <p>ESC of another sequence also ends control string,
+     * before that ESC.
+     *
+     * @param buf buffer
+     * @param from position after introducer
+     * @param len buffer length
+     * @return position of last char of sequence. -1 if unterminated.
+     */
+    private static int skipControlString(char[] buf, int from, int len) {
+        for (int pos = from; pos < len; pos++) {
+            char ch = buf[pos];
+            if (ch == BEL) return pos;
+            if (ch != ESC) continue;
+
+            if (pos + 1 >= len) return -1;
+            if (buf[pos + 1] == ST_TAIL) return pos + 1;
+            return pos - 1;
+        }
+        return -1;
+    }
+
+    /**
+     * Skip intermediate bytes and final byte.
+     *
+     * @param buf buffer
+     * @param from position after first intermediate byte
+     * @param len buffer length
+     * @return position of final byte. -1 if unterminated.
+     */
+    private static int skipIntermediates(char[] buf, int from, int len) {
+        for (int pos = from; pos < len; pos++) {
+            if (!isIntermediate(buf[pos])) return pos;
+        }
+        return -1;
+    }
+
+    /**
+     * Return whether parsed escape sequence is valid SGR.
+     *
+     * @param buf buffer
+     * @param end position of last char of sequence
+     * @return true if SGR
+     */
+    private boolean isSgr(char[] buf, int end) {
+        boolean result = buf[end] == 'm' && this.params[0] >= 0;
+        return result;
+    }
+
+    /**
+     * Parse parameters of CSI sequence.
+     *
+     * <p>Numeric parameters are stored in params.
+     * Number of parameters is stored in last slot of params.
+     * If private or intermediate char exists, params[0] is -1.
+     *
+     * @param buf buffer
+     * @param from position after "ESC ["
+     * @param len buffer length
+     * @return position of final byte. -1 if unterminated.
+     */
+    private int parseCsi(char[] buf, int from, int len) {
+        int[] vals = this.params;
+        int maxNum = MAX_PARAMS - 1;
+
+        int num = 0;
+        int cur = 0;
+        boolean generic = false;
+
+        for (int pos = from; pos < len; pos++) {
+            char ch = buf[pos];
+
+            if (isDigit(ch)) {
+                cur = Integer.min(cur * 10 + ch - '0', MAX_PARAMVAL);
+            } else if (ch == ';' || ch == ':') {
+                if (num < maxNum) vals[num++] = cur;
+                cur = 0;
+            } else if (isFinalByte(ch)) {
+                if (num < maxNum) vals[num++] = cur;
+                if (generic) vals[0] = -1;
+                vals[maxNum] = num;
+                return pos;
+            } else {
+                generic = true;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Return whether char is decimal digit of CSI parameter.
+     *
+     * @param ch char
+     * @return true if digit
+     */
+    private static boolean isDigit(char ch) {
+        return '0' <= ch && ch <= '9';
+    }
+
+    /**
+     * Return whether char is final byte of CSI sequence.
+     *
+     * @param ch char
+     * @return true if final byte
+     */
+    private static boolean isFinalByte(char ch) {
+        return '@' <= ch && ch <= '~';
+    }
+
+    /**
+     * Apply SGR parameters to style.
+     *
+     * @param style old style
+     * @param num number of parameters
+     * @return new style
+     */
+    private int applySgr(int style, int num) {
+        int[] vals = this.params;
+        int result = style;
+
+        int idx = 0;
+        while (idx < num) {
+            int code = vals[idx++];
+
+            if (code != SGR_FG_EXT && code != SGR_BG_EXT) {
+                result = applyCode(result, code);
+                continue;
+            }
+
+            int color;
+            int kind = -1;
+            if (idx < num) kind = vals[idx];
+            if (kind == EXT_256 && idx + 1 < num) {
+                color = vals[idx + 1] & COLOR_MASK;
+                idx += 2;
+            } else if (kind == EXT_RGB && idx + 3 < num) {
+                color = toCube(vals[idx + 1], vals[idx + 2], vals[idx + 3]);
+                idx += 4;
+            } else {
+                break;
+            }
+
+            if (code == SGR_FG_EXT) {
+                result = withFg(result, color);
+            } else {
+                result = withBg(result, color);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Apply single SGR code to style.
+     *
+     * <p>Unsupported code is ignored.
+     *
+     * @param style old style
+     * @param code SGR code
+     * @return new style
+     */
+    private static int applyCode(int style, int code) {
+        int result;
+        if (code < SGR_FG) {
+            result = applyAttrCode(style, code);
+        } else {
+            result = applyColorCode(style, code);
+        }
+        return result;
+    }
+
+    /**
+     * Apply SGR attribute code to style.
+     *
+     * @param style old style
+     * @param code SGR code
+     * @return new style
+     */
+    private static int applyAttrCode(int style, int code) {
+        int result = style;
+
+        if (code == SGR_RESET) {
+            result = 0;
+        } else if (code == SGR_BOLD) {
+            result |= BOLD;
+        } else if (code == SGR_UNDERLINE) {
+            result |= UNDERLINE;
+        } else if (code == SGR_INVERSE) {
+            result |= INVERSE;
+        } else if (code == SGR_NORMAL) {
+            result &= ~BOLD;
+        } else if (code == SGR_NO_UNDERLINE) {
+            result &= ~UNDERLINE;
+        } else if (code == SGR_NO_INVERSE) {
+            result &= ~INVERSE;
+        }
+
+        return result;
+    }
+
+    /**
+     * Apply SGR color code to style.
+     *
+     * @param style old style
+     * @param code SGR code
+     * @return new style
+     */
+    private static int applyColorCode(int style, int code) {
+        int result = style;
+
+        if (isBasicColor(code, SGR_FG)) {
+            result = withFg(result, code - SGR_FG);
+        } else if (code == SGR_FG_DEF) {
+            result &= ~FG_BITS;
+        } else if (isBasicColor(code, SGR_BG)) {
+            result = withBg(result, code - SGR_BG);
+        } else if (code == SGR_BG_DEF) {
+            result &= ~BG_BITS;
+        } else if (isBasicColor(code, SGR_FG_BRIGHT)) {
+            result = withFg(result, code - SGR_FG_BRIGHT + BASIC_COLORS);
+        } else if (isBasicColor(code, SGR_BG_BRIGHT)) {
+            result = withBg(result, code - SGR_BG_BRIGHT + BASIC_COLORS);
+        }
+
+        return result;
+    }
+
+    /**
+     * Return whether SGR code is one of basic colors from base code.
+     *
+     * @param code SGR code
+     * @param base SGR code of first basic color
+     * @return true if basic color
+     */
+    private static boolean isBasicColor(int code, int base) {
+        return base <= code && code < base + BASIC_COLORS;
+    }
+
+    /**
+     * Set foreground color of style.
+     *
+     * @param style style
+     * @param color color index (0-255)
+     * @return new style
+     */
+    private static int withFg(int style, int color) {
+        int result = style & ~FG_BITS | FG_SET | color;
+        return result;
+    }
+
+    /**
+     * Set background color of style.
+     *
+     * @param style style
+     * @param color color index (0-255)
+     * @return new style
+     */
+    private static int withBg(int style, int color) {
+        int result = style & ~BG_BITS | BG_SET | color << BG_SHIFT;
+        return result;
+    }
+
+    /**
+     * Approximate 24-bit color to 6x6x6 color cube of 256 colors.
+     *
+     * @param red red (0-255)
+     * @param green green (0-255)
+     * @param blue blue (0-255)
+     * @return color index
+     */
+    private static int toCube(int red, int green, int blue) {
+        int result = CUBE_BASE
+                + CUBE_SIDE * CUBE_SIDE * toCubeLevel(red)
+                + CUBE_SIDE * toCubeLevel(green)
+                + toCubeLevel(blue);
+        return result;
+    }
+
+    /**
+     * Convert color component to cube level.
+     *
+     * <p>Cube levels are 0, 95, 135, 175, 215, 255.
+     *
+     * @param val color component (0-255)
+     * @return cube level (0-5)
+     */
+    private static int toCubeLevel(int val) {
+        int result;
+        if (val < 48) {
+            result = 0;
+        } else if (val < 115) {
+            result = 1;
+        } else {
+            result = Integer.min((val - 35) / 40, CUBE_SIDE - 1);
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,242 @@
+/*
+ * License : The MIT License
+ * Copyright(c) 2019 Olyutorskii
+ */
+
+package io.github.olyutorskii.quetexj;
+
+import java.awt.Color;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import javax.swing.JTextArea;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import javax.swing.text.Element;
+import javax.swing.text.JTextComponent;
+import javax.swing.text.Segment;
+import javax.swing.text.Utilities;
+import javax.swing.text.View;
+
+/**
+ * Text area UI which renders ANSI style spans.
+ *
+ * <p>Style spans are read from SpanRing attached to Document
+ * by SwingLogHandler.
+ * Text without span is drawn as usual.
+ *
+ * <p>Bold is drawn by overstriking,
+ * so glyph width and wrapped layout are not changed.
+ *
+ * <p>Line-wrapped text area only supported.
+ * Otherwise spans are not rendered.
+ *
+ * <p>Precomputed line breaks are also consumed.
+ *
+ * @see SwingLogHandler#setAnsiEnabled(boolean)
+ */
+class AnsiTextAreaUI extends CachedWrapTextAreaUI {
+
+    private static final int PALETTE_SIZE = 256;
+    private static final Color[] PALETTE = buildPalette();
+
+
+    /**
+     * Constructor.
+     */
+    AnsiTextAreaUI() {
+        super();
+        return;
+    }
+
+
+    /**
+     * Build xterm compatible 256 colors palette.
+     *
+     * @return palette
+     */
+    private static Color[] buildPalette() {
+        Color[] result = new Color[PALETTE_SIZE];
+
+        int[] basic = {
+            0x000000, 0xcd0000, 0x00cd00, 0xcdcd00,
+            0x0000ee, 0xcd00cd, 0x00cdcd, 0xe5e5e5,
+            0x7f7f7f, 0xff0000, 0x00ff00, 0xffff00,
+            0x5c5cff, 0xff00ff, 0x00ffff, 0xffffff,
+        };
+        for (int idx = 0; idx < basic.length; idx++) {
+            result[idx] = new Color(basic[idx]);
+        }
+
+        int[] levels = {0, 95, 135, 175, 215, 255};
+        int side = levels.length;
+        int idx = basic.length;
+        for (int cube = 0; cube < side * side * side; cube++) {
+            int red   = levels[cube / (side * side)];
+            int green = levels[cube / side % side];
+            int blue  = levels[cube % side];
+            result[idx++] = new Color(red, green, blue);
+        }
+
+        int gray = 8;
+        while (idx < PALETTE_SIZE) {
+            result[idx++] = new Color(gray, gray, gray);
+            gray += 10;
+        }
+
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Line-wrapped text area gets ANSI-aware view.
+     *
+     * @param elem {@inheritDoc}
+     * @return {@inheritDoc}
+     */
+    @Override
+    public View create(Element elem) {
+        JTextComponent comp = getComponent();
+        if (comp instanceof JTextArea) {
+            JTextArea area = (JTextArea) comp;
+            if (area.getLineWrap()) {
+                return new AnsiWrappedView(elem, area.getWrapStyleWord());
+            }
+        }
+        return super.create(elem);
+    }
+
+
+    /**
+     * Wrapped plain view with ANSI style spans.
+     */
+    private static class AnsiWrappedView extends CachedWrapView {
+
+        private final Segment segment = new Segment();
+
+
+        /**
+         * Constructor.
+         *
+         * @param elem element
+         * @param wordWrap true if wrapped at word boundaries
+         */
+        AnsiWrappedView(Element elem, boolean wordWrap) {
+            super(elem, wordWrap);
+            return;
+        }
+
+
+        /**
+         * {@inheritDoc}
+         *
+         * <p>Text is drawn span by span.
+         *
+         * @param gr {@inheritDoc}
+         * @param xpos {@inheritDoc}
+         * @param ypos {@inheritDoc}
+         * @param p0 {@inheritDoc}
+         * @param p1 {@inheritDoc}
+         * @return {@inheritDoc}
+         * @throws BadLocationException {@inheritDoc}
+         */
+        @Override
+        @SuppressWarnings("deprecation")
+        protected int drawUnselectedText(
+                Graphics gr, int xpos, int ypos, int p0, int p1)
+                throws BadLocationException {
+            Document doc = getDocument();
+            SpanRing spans = SpanRing.get(doc, AnsiSgrParser.SPANS_KEY);
+            if (spans == null || spans.size() <= 0) {
+                return super.drawUnselectedText(gr, xpos, ypos, p0, p1);
+            }
+
+            int spanNum = spans.size();
+            int idx = spans.search(p0);
+            int xnow = xpos;
+            int pos = p0;
+
+            while (pos < p1) {
+                int end;
+                if (idx < spanNum && spans.getStart(idx) <= pos) {
+                    end = Integer.min(p1, spans.getEnd(idx));
+                    xnow = drawStyled(gr, xnow, ypos, pos, end,
+                            spans.getTag(idx));
+                    idx++;
+                } else {
+                    end = p1;
+                    if (idx < spanNum) {
+                        end = Integer.min(p1, spans.getStart(idx));
+                    }
+                    xnow = super.drawUnselectedText(gr, xnow, ypos, pos, end);
+                }
+                pos = end;
+            }
+
+            return xnow;
+        }
+
+        /**
+         * Draw text with ANSI style.
+         *
+         * @param gr graphics
+         * @param xpos x position
+         * @param ypos baseline y position
+         * @param p0 start offset
+         * @param p1 end offset (exclusive)
+         * @param style packed style
+         * @return x position after text
+         * @throws BadLocationException illegal offset
+         */
+        @SuppressWarnings("deprecation")
+        private int drawStyled(
+                Graphics gr, int xpos, int ypos, int p0, int p1, int style)
+                throws BadLocationException {
+            JTextComponent host = (JTextComponent) getContainer();
+
+            Color fg = host.getForeground();
+            Color bg = null;
+            if ((style & AnsiSgrParser.FG_SET) != 0) {
+                fg = PALETTE[style & AnsiSgrParser.COLOR_MASK];
+            }
+            if ((style & AnsiSgrParser.BG_SET) != 0) {
+                int bgIdx = style >>> AnsiSgrParser.BG_SHIFT
+                        & AnsiSgrParser.COLOR_MASK;
+                bg = PALETTE[bgIdx];
+            }
+            if ((style & AnsiSgrParser.INVERSE) != 0) {
+                Color swap = fg;
+                fg = bg;
+                bg = swap;
+                if (fg == null) fg = host.getBackground();
+            }
+
+            Segment seg = this.segment;
+            getDocument().getText(p0, p1 - p0, seg);
+
+            FontMetrics metrics = gr.getFontMetrics();
+            int width = Utilities.getTabbedTextWidth(
+                    seg, metrics, xpos, this, p0);
+
+            if (bg != null) {
+                gr.setColor(bg);
+                gr.fillRect(xpos, ypos - metrics.getAscent(),
+                        width, metrics.getHeight());
+            }
+
+            gr.setColor(fg);
+            Utilities.drawTabbedText(seg, xpos, ypos, gr, this, p0);
+            if ((style & AnsiSgrParser.BOLD) != 0) {
+                Utilities.drawTabbedText(seg, xpos + 1, ypos, gr, this, p0);
+            }
+            if ((style & AnsiSgrParser.UNDERLINE) != 0) {
+                int lineY = ypos + metrics.getDescent() / 2;
+                gr.drawLine(xpos, lineY, xpos + width - 1, lineY);
+            }
+
+            return xpos + width;
+        }
+
+    }
+
+}
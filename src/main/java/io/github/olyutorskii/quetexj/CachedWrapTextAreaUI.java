@@ -0,0 +1,53 @@
+/*
+ * License : The MIT License
+ * Copyright(c) 2019 Olyutorskii
+ */
+
+package io.github.olyutorskii.quetexj;
+
+import javax.swing.JTextArea;
+import javax.swing.plaf.basic.BasicTextAreaUI;
+import javax.swing.text.Element;
+import javax.swing.text.JTextComponent;
+import javax.swing.text.View;
+
+/**
+ * Text area UI which consumes precomputed line breaks.
+ *
+ * <p>Line-wrapped text area gets CachedWrapView.
+ * Otherwise views are same as BasicTextAreaUI.
+ *
+ * @see MvcFacade#setLineBreakPrecompute(boolean)
+ */
+class CachedWrapTextAreaUI extends BasicTextAreaUI {
+
+    /**
+     * Constructor.
+     */
+    CachedWrapTextAreaUI() {
+        super();
+        return;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Line-wrapped text area gets CachedWrapView.
+     *
+     * @param elem {@inheritDoc}
+     * @return {@inheritDoc}
+     */
+    @Override
+    public View create(Element elem) {
+        JTextComponent comp = getComponent();
+        if (comp instanceof JTextArea) {
+            JTextArea area = (JTextArea) comp;
+            if (area.getLineWrap()) {
+                return new CachedWrapView(elem, area.getWrapStyleWord());
+            }
+        }
+        return super.create(elem);
+    }
+
+}
@@ -0,0 +1,115 @@
+/*
+ * License : The MIT License
+ * Copyright(c) 2019 Olyutorskii
+ */
+
+package io.github.olyutorskii.quetexj;
+
+import java.awt.Container;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import javax.swing.text.Element;
+import javax.swing.text.Segment;
+import javax.swing.text.WrappedPlainView;
+
+/**
+ * Wrapped plain view which consumes precomputed line breaks.
+ *
+ * <p>Breaks are looked up in LineBreakCache attached to Document,
+ * which measures appended text on ForkJoinPool.
+ * Rows not in cache are measured on EDT by same rule,
+ * so that rows never differ between cached and uncached text.
+ *
+ * <p>If no cache is attached, this works as WrappedPlainView.
+ *
+ * @see LineBreakCache
+ */
+class CachedWrapView extends WrappedPlainView {
+
+    private final boolean wordWrap;
+
+    private LineBreakCache.Spec spec;
+    private int specWidth = -1;
+    private Font specFont;
+
+    private final Segment segment = new Segment();
+
+
+    /**
+     * Constructor.
+     *
+     * @param elem element
+     * @param wordWrap true if wrapped at word boundaries
+     */
+    CachedWrapView(Element elem, boolean wordWrap) {
+        super(elem, wordWrap);
+        this.wordWrap = wordWrap;
+        return;
+    }
+
+
+    /**
+     * Prepare wrap spec of current width and font.
+     *
+     * <p>If spec changes, it is passed to cache.
+     *
+     * @param cache line break cache
+     */
+    private void prepareSpec(LineBreakCache cache) {
+        Container host = getContainer();
+        Font font = host.getFont();
+        int width = getWidth();
+
+        if (width != this.specWidth || !font.equals(this.specFont)) {
+            FontMetrics metrics = host.getFontMetrics(font);
+            int tabSize = getTabSize() * metrics.charWidth('m');
+            this.spec = new LineBreakCache.Spec(
+                    metrics, width, tabSize, this.wordWrap);
+            this.specWidth = width;
+            this.specFont = font;
+        }
+
+        if (cache.getSpec() != this.spec) {
+            cache.updateSpec(this.spec, getDocument());
+        }
+
+        return;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Break is looked up in LineBreakCache if attached.
+     *
+     * @param p0 {@inheritDoc}
+     * @param p1 {@inheritDoc}
+     * @return {@inheritDoc}
+     */
+    @Override
+    protected int calculateBreakPosition(int p0, int p1) {
+        Document doc = getDocument();
+        LineBreakCache cache = LineBreakCache.get(doc);
+        if (cache == null) return super.calculateBreakPosition(p0, p1);
+
+        prepareSpec(cache);
+
+        int result = cache.breakPosition(p0, p1);
+        if (result >= 0) return result;
+
+        Segment seg = this.segment;
+        try {
+            doc.getText(p0, p1 - p0, seg);
+        } catch (BadLocationException e) {
+            assert false;
+            return p1;
+        }
+
+        int rowEnd = this.spec.rowEnd(seg, 0, seg.length());
+        if (rowEnd >= seg.length()) return p1;
+
+        return p0 + rowEnd;
+    }
+
+}
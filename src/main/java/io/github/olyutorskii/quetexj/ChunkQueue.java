@@ -0,0 +1,384 @@
+/*
+ * License : The MIT License
+ * Copyright(c) 2019 Olyutorskii
+ */
+
+package io.github.olyutorskii.quetexj;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * FIFO queue of TextChunk with recycling pool.
+ *
+ * <p>Chunks are preallocated and recycled,
+ * so no allocation happens per message in steady state.
+ *
+ * <p>Priority chunks are queued in separate lane.
+ *
+ * <p>Producers can wait until number of pending chunks decreases.
+ *
+ * <p>Offered and transferred chunks are counted.
+ * Flushing thread can wait until chunks offered before
+ * are transferred.
+ *
+ * <p>This is thread-safe.
+ */
+final class ChunkQueue {
+
+    /** Default number of preallocated chunks. */
+    static final int DEF_PREALLOC = 64;
+    /** Max number of pooled chunks. */
+    static final int POOL_MAX = 1024;
+
+
+    private final Object lock = new Object();
+
+    private ArrayDeque<TextChunk> pending;
+    private ArrayDeque<TextChunk> priorPending;
+    private final ArrayDeque<TextChunk> pool;
+
+    private int waiters;
+
+    private long offeredNum;
+    private long transferredNum;
+
+
+    /**
+     * Constructor.
+     *
+     * @param preallocCount number of preallocated chunks
+     */
+    ChunkQueue(int preallocCount) {
+        super();
+
+        this.pending = new ArrayDeque<>(preallocCount);
+        this.priorPending = new ArrayDeque<>();
+        this.pool = new ArrayDeque<>(preallocCount);
+
+        for (int ct = 0; ct < preallocCount; ct++) {
+            this.pool.push(new TextChunk());
+        }
+
+        return;
+    }
+
+
+    /**
+     * Obtain empty chunk from pool.
+     *
+     * <p>If pool is empty, new chunk is created.
+     *
+     * @return empty chunk
+     */
+    TextChunk obtain() {
+        TextChunk result;
+        synchronized (this.lock) {
+            result = this.pool.poll();
+        }
+        if (result == null) {
+            result = new TextChunk();
+        }
+        return result;
+    }
+
+    /**
+     * Enqueue filled chunk.
+     *
+     * <p>Enqueued time of chunk must be set by caller.
+     *
+     * @param chunk chunk
+     * @param priority true if priority lane
+     */
+    void offer(TextChunk chunk, boolean priority) {
+        synchronized (this.lock) {
+            if (priority) {
+                this.priorPending.offer(chunk);
+            } else {
+                this.pending.offer(chunk);
+            }
+            this.offeredNum++;
+        }
+        return;
+    }
+
+    /**
+     * Return number of offered chunks since created.
+     *
+     * @return number of chunks
+     */
+    long getOfferedNum() {
+        long result;
+        synchronized (this.lock) {
+            result = this.offeredNum;
+        }
+        return result;
+    }
+
+    /**
+     * Return number of transferred chunks since created.
+     *
+     * @return number of chunks
+     */
+    long getTransferredNum() {
+        long result;
+        synchronized (this.lock) {
+            result = this.transferredNum;
+        }
+        return result;
+    }
+
+    /**
+     * Notify that chunks are transferred to Document.
+     *
+     * @param num number of chunks
+     */
+    void markTransferred(int num) {
+        synchronized (this.lock) {
+            this.transferredNum += num;
+            if (this.waiters > 0) {
+                this.lock.notifyAll();
+            }
+        }
+        return;
+    }
+
+    /**
+     * Wait until number of transferred chunks reaches target.
+     *
+     * @param target target number of transferred chunks
+     * @param timeoutNanos timeout (nano sec)
+     * @return true if reached. false if timeout
+     * @throws InterruptedException interrupted
+     */
+    boolean awaitTransferred(long target, long timeoutNanos)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + timeoutNanos;
+
+        synchronized (this.lock) {
+            while (this.transferredNum < target) {
+                long remain = deadline - System.nanoTime();
+                if (remain <= 0) return false;
+                waitNanos(remain);
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Wait for notification with lock held.
+     *
+     * @param nanos timeout (nano sec)
+     * @throws InterruptedException interrupted
+     */
+    private void waitNanos(long nanos) throws InterruptedException {
+        long msec = TimeUnit.NANOSECONDS.toMillis(nanos);
+        int subNanos = (int) (nanos - TimeUnit.MILLISECONDS.toNanos(msec));
+
+        this.waiters++;
+        try {
+            this.lock.wait(msec, subNanos);
+        } finally {
+            this.waiters--;
+        }
+
+        return;
+    }
+
+    /**
+     * Release pooled chunks.
+     */
+    void releasePool() {
+        synchronized (this.lock) {
+            this.pool.clear();
+        }
+        return;
+    }
+
+    /**
+     * Return number of pending chunks of both lanes.
+     *
+     * @return number of chunks
+     */
+    int size() {
+        int result;
+        synchronized (this.lock) {
+            result = this.pending.size() + this.priorPending.size();
+        }
+        return result;
+    }
+
+    /**
+     * Return number of pending chunks of normal lane.
+     *
+     * @return number of chunks
+     */
+    int normalSize() {
+        int result;
+        synchronized (this.lock) {
+            result = this.pending.size();
+        }
+        return result;
+    }
+
+    /**
+     * Estimate retained heap bytes of pending and pooled chunks.
+     *
+     * @return bytes
+     * @see FootprintAnalyzer
+     */
+    long estimateBytes() {
+        long result = 0L;
+        synchronized (this.lock) {
+            result += estimateBytes(this.pending);
+            result += estimateBytes(this.priorPending);
+            result += estimateBytes(this.pool);
+        }
+        return result;
+    }
+
+    /**
+     * Estimate retained heap bytes of chunks.
+     *
+     * @param chunks chunks
+     * @return bytes
+     */
+    private static long estimateBytes(ArrayDeque<TextChunk> chunks) {
+        long result = FootprintAnalyzer.arrayBytes(
+                chunks.size(), FootprintAnalyzer.REF);
+        for (TextChunk chunk : chunks) {
+            result += chunk.estimateBytes();
+        }
+        return result;
+    }
+
+    /**
+     * Return enqueued time of oldest pending chunk.
+     *
+     * @param defNanos default value if no pending chunk
+     * @return enqueued time by System.nanoTime()
+     */
+    long oldestEnqueueNanos(long defNanos) {
+        long result = defNanos;
+
+        synchronized (this.lock) {
+            TextChunk normal = this.pending.peek();
+            TextChunk prior = this.priorPending.peek();
+            if (normal != null) {
+                result = normal.getEnqueueNanos();
+            }
+            if (prior != null && prior.getEnqueueNanos() - result < 0) {
+                result = prior.getEnqueueNanos();
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Wait until pending chunks of normal lane decrease under limit.
+     *
+     * @param limit limit of pending chunks
+     * @param timeoutNanos timeout (nano sec)
+     * @return true if decreased. false if timeout
+     * @throws InterruptedException interrupted
+     */
+    boolean awaitRoom(int limit, long timeoutNanos)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + timeoutNanos;
+
+        synchronized (this.lock) {
+            while (this.pending.size() >= limit) {
+                long remain = deadline - System.nanoTime();
+                if (remain <= 0) return false;
+                waitNanos(remain);
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Take all pending chunks of lane.
+     *
+     * <p>Pending deque is exchanged with empty deque in O(1).
+     *
+     * @param empty empty deque for next pending chunks
+     * @param priority true if priority lane
+     * @return deque of pending chunks
+     */
+    ArrayDeque<TextChunk> swapPending(
+            ArrayDeque<TextChunk> empty, boolean priority) {
+        assert empty.isEmpty();
+
+        ArrayDeque<TextChunk> result;
+        synchronized (this.lock) {
+            if (priority) {
+                result = this.priorPending;
+                this.priorPending = empty;
+            } else {
+                result = this.pending;
+                this.pending = empty;
+            }
+            if (this.waiters > 0) {
+                this.lock.notifyAll();
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Take pending chunks of normal lane, up to limit.
+     *
+     * <p>If all pending chunks are within limit,
+     * pending deque is exchanged with empty deque in O(1).
+     * Otherwise leading chunks are moved into empty deque.
+     *
+     * @param empty empty deque for next pending chunks or taken chunks
+     * @param limit max number of chunks
+     * @return deque of taken chunks
+     */
+    ArrayDeque<TextChunk> takePending(ArrayDeque<TextChunk> empty, int limit) {
+        assert empty.isEmpty();
+
+        ArrayDeque<TextChunk> result;
+        synchronized (this.lock) {
+            if (this.pending.size() <= limit) {
+                result = this.pending;
+                this.pending = empty;
+            } else {
+                result = empty;
+                for (int ct = 0; ct < limit; ct++) {
+                    result.offer(this.pending.poll());
+                }
+            }
+            if (this.waiters > 0) {
+                this.lock.notifyAll();
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Return used chunks to pool.
+     *
+     * <p>Deque will be empty.
+     *
+     * @param used used chunks
+     */
+    void recycle(ArrayDeque<TextChunk> used) {
+        synchronized (this.lock) {
+            while (!used.isEmpty()) {
+                TextChunk chunk = used.poll();
+                if (this.pool.size() >= POOL_MAX) continue;
+                chunk.clear();
+                this.pool.push(chunk);
+            }
+        }
+        return;
+    }
+
+}
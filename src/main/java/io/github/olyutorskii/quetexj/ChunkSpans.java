@@ -0,0 +1,154 @@
+/*
+ * License : The MIT License
+ * Copyright(c) 2019 Olyutorskii
+ */
+
+package io.github.olyutorskii.quetexj;
+
+/**
+ * Recyclable list of tagged spans within TextChunk.
+ *
+ * <p>Positions are relative to chunk head.
+ * Spans must be added in ascending order without overlap.
+ *
+ * <p>Not thread-safe.
+ */
+final class ChunkSpans {
+
+    private static final int FIELDS = 3;
+    private static final int DEF_CAPACITY = 8;
+    private static final int RETAIN_CAPACITY = 1024;
+
+
+    private int[] data;
+    private int size;
+
+
+    /**
+     * Constructor.
+     */
+    ChunkSpans() {
+        super();
+        this.data = new int[DEF_CAPACITY * FIELDS];
+        this.size = 0;
+        return;
+    }
+
+
+    /**
+     * Return number of spans.
+     *
+     * @return number of spans
+     */
+    int size() {
+        return this.size;
+    }
+
+    /**
+     * Add span.
+     *
+     * <p>Span adjacent to last span with same tag is merged.
+     * Empty span is ignored.
+     *
+     * @param start start position
+     * @param end end position (exclusive)
+     * @param tag tag
+     */
+    void add(int start, int end, int tag) {
+        if (end <= start) return;
+
+        if (this.size > 0) {
+            int last = (this.size - 1) * FIELDS;
+            if (this.data[last + 1] == start && this.data[last + 2] == tag) {
+                this.data[last + 1] = end;
+                return;
+            }
+        }
+
+        int pos = this.size * FIELDS;
+        if (pos + FIELDS > this.data.length) {
+            int[] newData = new int[this.data.length * 2];
+            System.arraycopy(this.data, 0, newData, 0, pos);
+            this.data = newData;
+        }
+
+        this.data[pos] = start;
+        this.data[pos + 1] = end;
+        this.data[pos + 2] = tag;
+        this.size++;
+
+        return;
+    }
+
+    /**
+     * Copy spans to ring with absolute position.
+     *
+     * @param ring span ring
+     * @param absBase absolute position of chunk head
+     */
+    void copyTo(SpanRing ring, long absBase) {
+        int pos = 0;
+        for (int ct = 0; ct < this.size; ct++) {
+            ring.add(absBase + this.data[pos],
+                     absBase + this.data[pos + 1],
+                     this.data[pos + 2]);
+            pos += FIELDS;
+        }
+        return;
+    }
+
+    /**
+     * Map span positions to edited text.
+     *
+     * <p>Spans which become empty are removed.
+     *
+     * @param edits edits of text
+     */
+    void remap(LongLineGuard.Edits edits) {
+        edits.rewind();
+
+        int dst = 0;
+        for (int ct = 0; ct < this.size; ct++) {
+            int from = ct * FIELDS;
+            int start = edits.mapStart(this.data[from]);
+            int end = edits.mapEnd(this.data[from + 1]);
+            if (end <= start) continue;
+
+            int to = dst * FIELDS;
+            this.data[to] = start;
+            this.data[to + 1] = end;
+            this.data[to + 2] = this.data[from + 2];
+            dst++;
+        }
+
+        this.size = dst;
+
+        return;
+    }
+
+    /**
+     * Remove all spans.
+     *
+     * <p>Over-grown buffer is released.
+     */
+    void clear() {
+        this.size = 0;
+        if (this.data.length > RETAIN_CAPACITY * FIELDS) {
+            this.data = new int[DEF_CAPACITY * FIELDS];
+        }
+        return;
+    }
+
+    /**
+     * Estimate retained heap bytes.
+     *
+     * @return bytes
+     * @see FootprintAnalyzer
+     */
+    long estimateBytes() {
+        long result = FootprintAnalyzer.objectBytes(FootprintAnalyzer.REF + 4);
+        result += FootprintAnalyzer.arrayBytes(this.data.length, 4);
+        return result;
+    }
+
+}
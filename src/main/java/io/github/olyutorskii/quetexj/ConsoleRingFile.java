@@ -0,0 +1,478 @@
+/*
+ * License : The MIT License
+ * Copyright(c) 2019 Olyutorskii
+ */
+
+package io.github.olyutorskii.quetexj;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Crash-safe persistent ring of console text.
+ *
+ * <p>Text is stored in fixed-size memory-mapped file region.
+ * Oldest text is overwritten when ring is full.
+ *
+ * <p>File layout:
+ * <ul>
+ * <li>Header: magic, version, capacity, tail position, write position.
+ * <li>Data region: ring of frames.
+ * Each frame is char count(int) followed by UTF-16 chars.
+ * </ul>
+ *
+ * <p>Frames are not record boundaries.
+ * SwingLogHandler writes one frame per batch transferred to Document,
+ * so one frame may hold many records.
+ * Restoring tail text needs no frame boundaries,
+ * because it is cut at line separators.
+ *
+ * <p>Positions are 64-bit stream offsets. Frame bytes may wrap
+ * around the end of data region.
+ *
+ * <p>Tail position is stored before frame is written,
+ * and write position is stored after frame is written.
+ * So half-written frame is ignored at restore
+ * even if process crashes while writing.
+ * Durability against OS crash requires {@link #force()}.
+ *
+ * <p>This is thread-safe.
+ *
+ * @see SwingLogHandler#setRingFile(ConsoleRingFile)
+ * @see MvcFacade#restoreText(ConsoleRingFile)
+ */
+public final class ConsoleRingFile implements Closeable {
+
+    /** Default data capacity (bytes). */
+    public static final int DEF_CAPACITY = 4 * 1024 * 1024;
+
+    private static final int MAGIC = 0x51545852;  // "QTXR"
+    private static final int VERSION = 1;
+
+    private static final int OFS_MAGIC    = 0;
+    private static final int OFS_VERSION  = 4;
+    private static final int OFS_CAPACITY = 8;
+    private static final int OFS_TAIL     = 16;
+    private static final int OFS_WRITE    = 24;
+    private static final int HEADER_SIZE  = 32;
+
+    private static final int FRAME_HEAD = Integer.BYTES;
+    private static final int MIN_CAPACITY = 1024;
+
+
+    private final FileChannel channel;
+    private final MappedByteBuffer mapped;
+    private final int capacity;
+
+    private long tailPos;
+    private long writePos;
+
+
+    /**
+     * Constructor.
+     *
+     * @param channel file channel
+     * @param mapped mapped region
+     * @param capacity data capacity (bytes)
+     */
+    private ConsoleRingFile(
+            FileChannel channel, MappedByteBuffer mapped, int capacity) {
+        super();
+
+        this.channel = channel;
+        this.mapped = mapped;
+        this.capacity = capacity;
+
+        return;
+    }
+
+
+    /**
+     * Open ring file.
+     *
+     * <p>If file does not exist or is not compatible,
+     * empty ring is created.
+     * Otherwise stored text is kept and new text is appended.
+     *
+     * @param path file path
+     * @param capacity data capacity (bytes)
+     * @return ring file
+     * @throws IOException I/O error
+     * @throws IllegalArgumentException too small capacity
+     */
+    public static ConsoleRingFile open(Path path, int capacity)
+            throws IOException, IllegalArgumentException {
+        if (capacity < MIN_CAPACITY) throw new IllegalArgumentException();
+
+        FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+
+        MappedByteBuffer mapped;
+        try {
+            long size = (long) HEADER_SIZE + capacity;
+            mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0L, size);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+
+        ConsoleRingFile result = new ConsoleRingFile(channel, mapped, capacity);
+        result.loadHeader();
+
+        return result;
+    }
+
+    /**
+     * Load header, or initialize it if incompatible.
+     */
+    private void loadHeader() {
+        boolean valid =
+                   this.mapped.getInt(OFS_MAGIC) == MAGIC
+                && this.mapped.getInt(OFS_VERSION) == VERSION
+                && this.mapped.getInt(OFS_CAPACITY) == this.capacity;
+
+        long tail = this.mapped.getLong(OFS_TAIL);
+        long write = this.mapped.getLong(OFS_WRITE);
+        valid = valid && 0 <= tail && tail <= write
+                && write - tail <= this.capacity;
+
+        if (valid) {
+            this.tailPos = tail;
+            this.writePos = write;
+            return;
+        }
+
+        this.tailPos = 0L;
+        this.writePos = 0L;
+        this.mapped.putInt(OFS_MAGIC, MAGIC);
+        this.mapped.putInt(OFS_VERSION, VERSION);
+        this.mapped.putInt(OFS_CAPACITY, this.capacity);
+        this.mapped.putLong(OFS_TAIL, this.tailPos);
+        this.mapped.putLong(OFS_WRITE, this.writePos);
+
+        return;
+    }
+
+    /**
+     * Return data capacity.
+     *
+     * @return capacity (bytes)
+     */
+    public int getCapacity() {
+        return this.capacity;
+    }
+
+    /**
+     * Convert stream position to buffer index.
+     *
+     * @param pos stream position
+     * @return buffer index
+     */
+    private int toIndex(long pos) {
+        int result = HEADER_SIZE + (int) (pos % this.capacity);
+        return result;
+    }
+
+    /**
+     * Put byte at stream position.
+     *
+     * @param pos stream position
+     * @param bVal byte value
+     */
+    private void putByte(long pos, int bVal) {
+        this.mapped.put(toIndex(pos), (byte) bVal);
+        return;
+    }
+
+    /**
+     * Get byte at stream position.
+     *
+     * @param pos stream position
+     * @return byte value (0-255)
+     */
+    private int getByte(long pos) {
+        int result = this.mapped.get(toIndex(pos)) & 0xff;
+        return result;
+    }
+
+    /**
+     * Put int at stream position.
+     *
+     * <p>Big-endian.
+     *
+     * @param pos stream position
+     * @param iVal int value
+     */
+    private void putIntAt(long pos, int iVal) {
+        putByte(pos,     iVal >>> 24);
+        putByte(pos + 1, iVal >>> 16);
+        putByte(pos + 2, iVal >>> 8);
+        putByte(pos + 3, iVal);
+        return;
+    }
+
+    /**
+     * Get int at stream position.
+     *
+     * <p>Big-endian.
+     *
+     * @param pos stream position
+     * @return int value
+     */
+    private int getIntAt(long pos) {
+        int result = getByte(pos) << 24
+                   | getByte(pos + 1) << 16
+                   | getByte(pos + 2) << 8
+                   | getByte(pos + 3);
+        return result;
+    }
+
+    /**
+     * Return whether byte region does not wrap around data region.
+     *
+     * @param pos stream position
+     * @param len byte length
+     * @return true if contiguous
+     */
+    private boolean isContiguous(long pos, long len) {
+        boolean result = pos % this.capacity + len <= this.capacity;
+        return result;
+    }
+
+    /**
+     * Write text as one frame.
+     *
+     * <p>If text exceeds capacity, only its last part is kept.
+     *
+     * @param text text
+     */
+    public synchronized void write(CharSequence text) {
+        int textLen = text.length();
+        if (textLen <= 0) return;
+
+        int maxChars = (this.capacity - FRAME_HEAD) / Character.BYTES;
+        int from = Integer.max(0, textLen - maxChars);
+        int charNum = textLen - from;
+        long frameSize = FRAME_HEAD + (long) charNum * Character.BYTES;
+
+        long newWrite = this.writePos + frameSize;
+        while (newWrite - this.tailPos > this.capacity) {
+            int tailChars = getIntAt(this.tailPos);
+            this.tailPos += FRAME_HEAD + (long) tailChars * Character.BYTES;
+        }
+        this.mapped.putLong(OFS_TAIL, this.tailPos);
+
+        long pos = this.writePos;
+        putIntAt(pos, charNum);
+        pos += FRAME_HEAD;
+
+        if (isContiguous(pos, frameSize - FRAME_HEAD)) {
+            int bufIdx = toIndex(pos);
+            for (int idx = from; idx < textLen; idx++) {
+                this.mapped.putChar(bufIdx, text.charAt(idx));
+                bufIdx += Character.BYTES;
+            }
+        } else {
+            for (int idx = from; idx < textLen; idx++) {
+                char ch = text.charAt(idx);
+                putByte(pos,     ch >>> 8);
+                putByte(pos + 1, ch);
+                pos += Character.BYTES;
+            }
+        }
+
+        this.writePos = newWrite;
+        this.mapped.putLong(OFS_WRITE, this.writePos);
+
+        return;
+    }
+
+    /**
+     * Get char at stream position.
+     *
+     * @param pos stream position
+     * @return char
+     */
+    private char getCharAt(long pos) {
+        int hi = getByte(pos);
+        int lo = getByte(pos + 1);
+        char result = (char) (hi << 8 | lo);
+        return result;
+    }
+
+    /**
+     * Append chars of frame body to buffer.
+     *
+     * @param buf output
+     * @param pos stream position of first char
+     * @param charNum number of chars
+     */
+    private void appendChars(StringBuilder buf, long pos, int charNum) {
+        long bodySize = (long) charNum * Character.BYTES;
+
+        if (isContiguous(pos, bodySize)) {
+            int bufIdx = toIndex(pos);
+            for (int ct = 0; ct < charNum; ct++) {
+                buf.append(this.mapped.getChar(bufIdx));
+                bufIdx += Character.BYTES;
+            }
+        } else {
+            for (int ct = 0; ct < charNum; ct++) {
+                buf.append(getCharAt(pos + (long) ct * Character.BYTES));
+            }
+        }
+
+        return;
+    }
+
+    /**
+     * Return stream positions of valid frames.
+     *
+     * <p>Frames after broken one are ignored.
+     *
+     * @return positions, terminated by position after last frame
+     */
+    private long[] scanFrames() {
+        long[] result = new long[16];
+        int num = 0;
+
+        long pos = this.tailPos;
+        while (pos < this.writePos) {
+            int charNum = getIntAt(pos);
+            long next = pos + FRAME_HEAD + (long) charNum * Character.BYTES;
+            if (charNum < 0 || next > this.writePos) break;
+
+            if (num + 1 >= result.length) {
+                result = Arrays.copyOf(result, result.length * 2);
+            }
+            result[num++] = pos;
+            pos = next;
+        }
+
+        result = Arrays.copyOf(result, num + 1);
+        result[num] = pos;
+
+        return result;
+    }
+
+    /**
+     * Read all retained text.
+     *
+     * @return text
+     */
+    public synchronized String restore() {
+        StringBuilder buf = new StringBuilder();
+
+        long[] frames = scanFrames();
+        for (int idx = 0; idx < frames.length - 1; idx++) {
+            long pos = frames[idx];
+            appendChars(buf, pos + FRAME_HEAD, getIntAt(pos));
+        }
+
+        return buf.toString();
+    }
+
+    /**
+     * Read last lines of retained text.
+     *
+     * <p>Lines are separated by LF.
+     * Only frames holding restored lines are read,
+     * so cost is bounded by restored text rather than capacity.
+     *
+     * @param maxLines max number of lines
+     * @return text
+     * @throws IllegalArgumentException negative lines
+     */
+    public synchronized String restoreTail(int maxLines)
+            throws IllegalArgumentException {
+        if (maxLines < 0) throw new IllegalArgumentException();
+
+        long[] frames = scanFrames();
+        int last = frames.length - 1;
+        long endPos = frames[last];
+
+        long startPos = searchLinesStart(frames, maxLines);
+        int charNum = (int) ((endPos - startPos) / Character.BYTES);
+        StringBuilder buf = new StringBuilder(charNum);
+
+        for (int idx = 0; idx < last; idx++) {
+            long bodyStart = frames[idx] + FRAME_HEAD;
+            long bodyEnd = frames[idx + 1];
+            if (bodyEnd <= startPos) continue;
+
+            long from = Long.max(bodyStart, startPos);
+            int num = (int) ((bodyEnd - from) / Character.BYTES);
+            appendChars(buf, from, num);
+        }
+
+        return buf.toString();
+    }
+
+    /**
+     * Search stream position of first char of last lines.
+     *
+     * <p>LF at the end of text does not start new line.
+     *
+     * @param frames frame positions by {@link #scanFrames()}
+     * @param maxLines max number of lines
+     * @return stream position
+     */
+    private long searchLinesStart(long[] frames, int maxLines) {
+        int last = frames.length - 1;
+        long endPos = frames[last];
+        if (maxLines <= 0 || last <= 0) return endPos;
+
+        int lines = 0;
+        for (int idx = last - 1; idx >= 0; idx--) {
+            long bodyStart = frames[idx] + FRAME_HEAD;
+            long pos = frames[idx + 1] - Character.BYTES;
+            for (; pos >= bodyStart; pos -= Character.BYTES) {
+                if (getCharAt(pos) != '\n') continue;
+                if (pos + Character.BYTES == endPos) continue;
+                lines++;
+                if (lines >= maxLines) return pos + Character.BYTES;
+            }
+        }
+
+        return frames[0] + FRAME_HEAD;
+    }
+
+    /**
+     * Discard all retained text.
+     */
+    public synchronized void clear() {
+        this.tailPos = this.writePos;
+        this.mapped.putLong(OFS_TAIL, this.tailPos);
+        return;
+    }
+
+    /**
+     * Force stored text to storage device.
+     */
+    public synchronized void force() {
+        this.mapped.force();
+        return;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Stored text is forced to storage device.
+     *
+     * @throws IOException {@inheritDoc}
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        this.mapped.force();
+        this.channel.close();
+        return;
+    }
+
+}
@@ -0,0 +1,158 @@
+/*
+ * License : The MIT License
+ * Copyright(c) 2019 Olyutorskii
+ */
+
+package io.github.olyutorskii.quetexj;
+
+import java.awt.EventQueue;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * EDT responsiveness probe.
+ *
+ * <p>Marker events are posted to EventQueue periodically
+ * by daemon timer thread.
+ * Delay from posting to dispatching is smoothed
+ * by exponentially weighted moving average.
+ *
+ * <p>Only one marker is outstanding at a time.
+ * If marker is not dispatched yet, its waiting time is observed
+ * as lower bound of lag, so frozen EDT is detected.
+ *
+ * <p>This is thread-safe.
+ */
+final class EdtLagProbe {
+
+    /** Default probe period (msec). */
+    static final long DEF_PERIOD = 50L;
+
+    private static final double WEIGHT = 0.25;
+
+
+    private final long periodMsec;
+    private final Runnable marker;
+
+    private Timer timer;
+    private boolean stopped;
+
+    private boolean markerPending;
+    private long postedNanos;
+    private double lagNanos;
+
+
+    /**
+     * Constructor.
+     *
+     * @param periodMsec probe period (msec)
+     */
+    EdtLagProbe(long periodMsec) {
+        super();
+
+        this.periodMsec = periodMsec;
+        this.marker = () -> {
+            eventMarker();
+        };
+
+        return;
+    }
+
+
+    /**
+     * Start probing.
+     *
+     * <p>If already started or stopped, do nothing.
+     */
+    synchronized void start() {
+        if (this.timer != null || this.stopped) return;
+
+        this.timer = new Timer("EdtLagProbe", true);
+        TimerTask task = new TimerTask() {
+            @Override
+            public void run() {
+                eventTick();
+                return;
+            }
+        };
+        this.timer.schedule(task, 0L, this.periodMsec);
+
+        return;
+    }
+
+    /**
+     * Stop probing permanently.
+     */
+    synchronized void stop() {
+        this.stopped = true;
+        if (this.timer != null) {
+            this.timer.cancel();
+            this.timer = null;
+        }
+        return;
+    }
+
+    /**
+     * Return smoothed EDT lag.
+     *
+     * @return lag (nano sec)
+     */
+    synchronized long getLagNanos() {
+        return (long) this.lagNanos;
+    }
+
+    /**
+     * Return smoothed EDT lag.
+     *
+     * @return lag (msec)
+     */
+    long getLagMillis() {
+        long result = TimeUnit.NANOSECONDS.toMillis(getLagNanos());
+        return result;
+    }
+
+    /**
+     * Blend observed lag into average.
+     *
+     * @param observed observed lag (nano sec)
+     */
+    private void observe(long observed) {
+        this.lagNanos += (observed - this.lagNanos) * WEIGHT;
+        return;
+    }
+
+    /**
+     * Receive timer tick.
+     *
+     * <p>Post marker, or observe waiting time of outstanding marker.
+     */
+    private synchronized void eventTick() {
+        long now = System.nanoTime();
+
+        if (this.markerPending) {
+            long waiting = now - this.postedNanos;
+            if (waiting > this.lagNanos) {
+                observe(waiting);
+            }
+            return;
+        }
+
+        this.markerPending = true;
+        this.postedNanos = now;
+        EventQueue.invokeLater(this.marker);
+
+        return;
+    }
+
+    /**
+     * Receive marker dispatched on EDT.
+     */
+    private synchronized void eventMarker() {
+        long now = System.nanoTime();
+        observe(now - this.postedNanos);
+        this.markerPending = false;
+        return;
+    }
+
+}
@@ -0,0 +1,267 @@
+/*
+ * License : The MIT License
+ * Copyright(c) 2019 Olyutorskii
+ */
+
+package io.github.olyutorskii.quetexj;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Locale;
+import java.util.logging.Formatter;
+import java.util.logging.LogManager;
+import java.util.logging.LogRecord;
+import java.util.logging.SimpleFormatter;
+
+/**
+ * High-speed replacement of SimpleFormatter.
+ *
+ * <p>Output is compatible with default format of SimpleFormatter.
+ * <pre>
+ * %1$tb %1$td, %1$tY %1$tl:%1$tM:%1$tS %1$Tp %2$s%n%4$s: %5$s%6$s%n
+ * </pre>
+ *
+ * <ul>
+ * <li>Text is built in reusable per-thread StringBuilder.
+ * <li>Timestamp prefix is formatted once per second and cached per-thread.
+ * <li>Message without parameters and resource bundle
+ * bypasses MessageFormat.
+ * </ul>
+ *
+ * <p>Custom format by "java.util.logging.SimpleFormatter.format" property
+ * is not supported. Use SimpleFormatter for it.
+ *
+ * <p>This is thread-safe.
+ */
+public class FastSimpleFormatter extends Formatter {
+
+    /** Property key of SimpleFormatter format. */
+    static final String PROP_FORMAT =
+            "java.util.logging.SimpleFormatter.format";
+
+    private static final String FORM_STAMP =
+            "%1$tb %1$td, %1$tY %1$tl:%1$tM:%1$tS %1$Tp ";
+    private static final String LEVEL_DELIM = ": ";
+    private static final String LINE_SEP = System.lineSeparator();
+
+    private static final long MSEC_PER_SEC = 1000L;
+    private static final int BUF_RETAIN_MAX = 8 * 1024;
+
+    private static final ThreadLocal<Context> CONTEXT =
+            ThreadLocal.withInitial(Context::new);
+
+
+    /**
+     * Constructor.
+     */
+    public FastSimpleFormatter() {
+        super();
+        return;
+    }
+
+
+    /**
+     * Return whether custom SimpleFormatter format is configured.
+     *
+     * <p>System property and LogManager property are checked.
+     *
+     * @return true if configured
+     */
+    static boolean hasCustomSimpleFormat() {
+        if (System.getProperty(PROP_FORMAT) != null) return true;
+
+        String prop = LogManager.getLogManager().getProperty(PROP_FORMAT);
+        boolean result = prop != null;
+
+        return result;
+    }
+
+    /**
+     * Build default Formatter for log handler.
+     *
+     * <p>If custom SimpleFormatter format is configured,
+     * SimpleFormatter is returned.
+     *
+     * @return formatter
+     */
+    static Formatter buildDefaultFormatter() {
+        Formatter result;
+        if (hasCustomSimpleFormat()) {
+            result = new SimpleFormatter();
+        } else {
+            result = new FastSimpleFormatter();
+        }
+        return result;
+    }
+
+    /**
+     * Append source text of log record.
+     *
+     * <p>"sourceClassName sourceMethodName" or logger name.
+     *
+     * @param logRec log record
+     * @param buf output
+     */
+    private static void appendSource(LogRecord logRec, StringBuilder buf) {
+        String srcClass = logRec.getSourceClassName();
+        if (srcClass == null) {
+            buf.append(logRec.getLoggerName());
+            return;
+        }
+
+        buf.append(srcClass);
+
+        String srcMethod = logRec.getSourceMethodName();
+        if (srcMethod != null) {
+            buf.append(' ').append(srcMethod);
+        }
+
+        return;
+    }
+
+    /**
+     * Append stack trace of log record.
+     *
+     * <p>If no throwable, do nothing.
+     *
+     * @param logRec log record
+     * @param buf output
+     */
+    private static void appendThrown(LogRecord logRec, StringBuilder buf) {
+        Throwable thrown = logRec.getThrown();
+        if (thrown == null) return;
+
+        StringWriter writer = new StringWriter();
+        try (PrintWriter pw = new PrintWriter(writer)) {
+            pw.println();
+            thrown.printStackTrace(pw);
+        }
+        buf.append(writer.getBuffer());
+
+        return;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param logRec {@inheritDoc}
+     * @return {@inheritDoc}
+     */
+    @Override
+    public String format(LogRecord logRec) {
+        Context ctx = CONTEXT.get();
+        StringBuilder buf = ctx.buf;
+
+        buf.setLength(0);
+        formatTo(logRec, buf);
+        String result = buf.toString();
+
+        if (buf.capacity() > BUF_RETAIN_MAX) {
+            ctx.buf = new StringBuilder();
+        }
+
+        return result;
+    }
+
+    /**
+     * Append formatted log record to StringBuilder.
+     *
+     * <p>No intermediate String is created
+     * in common case.
+     *
+     * @param logRec log record
+     * @param buf output
+     */
+    public void formatTo(LogRecord logRec, StringBuilder buf) {
+        Context ctx = CONTEXT.get();
+
+        long millis = logRec.getMillis();
+        String stamp = ctx.getStampPrefix(millis);
+        buf.append(stamp);
+
+        appendSource(logRec, buf);
+        buf.append(LINE_SEP);
+
+        buf.append(logRec.getLevel().getLocalizedName());
+        buf.append(LEVEL_DELIM);
+
+        appendMessage(logRec, buf);
+        appendThrown(logRec, buf);
+        buf.append(LINE_SEP);
+
+        return;
+    }
+
+    /**
+     * Append localized and formatted message of log record.
+     *
+     * <p>Common no-parameter message without resource bundle
+     * bypasses Formatter#formatMessage.
+     *
+     * @param logRec log record
+     * @param buf output
+     */
+    private void appendMessage(LogRecord logRec, StringBuilder buf) {
+        Object[] params = logRec.getParameters();
+        boolean noParam = params == null || params.length <= 0;
+
+        if (noParam && logRec.getResourceBundle() == null) {
+            buf.append(logRec.getMessage());
+        } else {
+            buf.append(formatMessage(logRec));
+        }
+
+        return;
+    }
+
+
+    /**
+     * Per-thread formatting context.
+     */
+    private static final class Context {
+
+        private StringBuilder buf = new StringBuilder();
+
+        private long stampSec = Long.MIN_VALUE;
+        private String stampPrefix = "";
+
+
+        /**
+         * Constructor.
+         */
+        Context() {
+            super();
+            return;
+        }
+
+
+        /**
+         * Return timestamp prefix.
+         *
+         * <p>Prefix is re-formatted only when second changes.
+         *
+         * @param millis epoch millisecond
+         * @return prefix text with trailing space
+         */
+        String getStampPrefix(long millis) {
+            long sec = Math.floorDiv(millis, MSEC_PER_SEC);
+            if (sec == this.stampSec) return this.stampPrefix;
+
+            Instant instant = Instant.ofEpochMilli(millis);
+            ZonedDateTime zdt =
+                    ZonedDateTime.ofInstant(instant, ZoneId.systemDefault());
+            Locale locale = Locale.getDefault(Locale.Category.FORMAT);
+
+            this.stampPrefix = String.format(locale, FORM_STAMP, zdt);
+            this.stampSec = sec;
+
+            return this.stampPrefix;
+        }
+
+    }
+
+}
@@ -0,0 +1,149 @@
+/*
+ * License : The MIT License
+ * Copyright(c) 2019 Olyutorskii
+ */
+
+package io.github.olyutorskii.quetexj;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Estimated heap footprint of text component and logging pipeline.
+ *
+ * <p>Retained bytes are estimated per subsystem,
+ * and compared with retained and visible text.
+ *
+ * <p>This is immutable.
+ *
+ * @see FootprintAnalyzer
+ */
+public final class Footprint {
+
+    private final Map<Part, Long> bytes;
+    private final long totalBytes;
+    private final int documentChars;
+    private final int visibleChars;
+
+
+    /**
+     * Constructor.
+     *
+     * @param bytes estimated bytes of each part. Missing part means 0.
+     * @param documentChars number of chars in Document
+     * @param visibleChars number of chars in visible rows
+     */
+    Footprint(Map<Part, Long> bytes, int documentChars, int visibleChars) {
+        super();
+
+        this.bytes = new EnumMap<>(Part.class);
+        long total = 0L;
+        for (Part part : Part.values()) {
+            Long val = bytes.get(part);
+            long partBytes = 0L;
+            if (val != null) partBytes = val;
+            this.bytes.put(part, partBytes);
+            total += partBytes;
+        }
+
+        this.totalBytes = total;
+        this.documentChars = documentChars;
+        this.visibleChars = visibleChars;
+
+        return;
+    }
+
+
+    /**
+     * Return estimated bytes of part.
+     *
+     * @param part part
+     * @return bytes
+     */
+    public long getBytes(Part part) {
+        return this.bytes.get(part);
+    }
+
+    /**
+     * Return estimated bytes of all parts.
+     *
+     * @return bytes
+     */
+    public long getTotalBytes() {
+        return this.totalBytes;
+    }
+
+    /**
+     * Return number of chars in Document.
+     *
+     * @return number of chars
+     */
+    public int getDocumentChars() {
+        return this.documentChars;
+    }
+
+    /**
+     * Return number of chars in rows visible in text component.
+     *
+     * @return number of chars
+     */
+    public int getVisibleChars() {
+        return this.visibleChars;
+    }
+
+    /**
+     * Return ratio of total bytes to chars in Document.
+     *
+     * @return bytes per char. NaN if Document is empty.
+     */
+    public double getBytesPerDocumentChar() {
+        if (this.documentChars <= 0) return Double.NaN;
+        return (double) this.totalBytes / this.documentChars;
+    }
+
+    /**
+     * Return ratio of total bytes to visible chars.
+     *
+     * @return bytes per char. NaN if no char is visible.
+     */
+    public double getBytesPerVisibleChar() {
+        if (this.visibleChars <= 0) return Double.NaN;
+        return (double) this.totalBytes / this.visibleChars;
+    }
+
+
+    /**
+     * Subsystem retaining heap.
+     */
+    public static enum Part {
+
+        /** Char array of Document content. */
+        CONTENT,
+        /** Element tree and its positions. */
+        ELEMENTS,
+        /** View tree of text component. */
+        VIEWS,
+        /** Records queued in log handler. */
+        QUEUE,
+        /** ANSI style spans. */
+        STYLE_SPANS,
+        /** Highlight spans. */
+        HIGHLIGHT_SPANS,
+        /** Time index. */
+        TIME_INDEX,
+        /** Snapshot store. */
+        SNAPSHOTS,
+        /** Precomputed line breaks. */
+        LINE_BREAKS,
+        /** Compressed warm tier. */
+        WARM_TIER,
+        /** Elided long lines. */
+        LONG_LINES,
+        /** Record columns. */
+        RECORD_COLUMNS,
+        /** Document of pinned records. */
+        PINNED,
+
+    }
+
+}
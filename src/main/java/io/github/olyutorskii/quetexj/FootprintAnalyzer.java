@@ -0,0 +1,308 @@
+/*
+ * License : The MIT License
+ * Copyright(c) 2019 Olyutorskii
+ */
+
+package io.github.olyutorskii.quetexj;
+
+import java.awt.FontMetrics;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.EnumMap;
+import java.util.Map;
+import javax.swing.plaf.TextUI;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import javax.swing.text.Element;
+import javax.swing.text.JTextComponent;
+import javax.swing.text.Utilities;
+import javax.swing.text.View;
+
+/**
+ * Analyzer of heap footprint.
+ *
+ * <p>Retained bytes of Document content, element tree, views,
+ * handler queue and caches are estimated by their sizes,
+ * without walking heap.
+ * Sizes are modeled on 64-bit JVM with compressed references:
+ * 12 bytes object header, 16 bytes array header, 4 bytes reference,
+ * and 8 bytes alignment.
+ * Strings are counted as UTF-16.
+ * Gap of Document content is not counted.
+ * Native memory of Deflater and Inflater is not counted.
+ *
+ * <p>(EDT only.)
+ *
+ * @see Footprint
+ */
+public final class FootprintAnalyzer {
+
+    /** Bytes of object header. */
+    static final int OBJ_HEADER = 12;
+    /** Bytes of array header. */
+    static final int ARRAY_HEADER = 16;
+    /** Bytes of reference. */
+    static final int REF = 4;
+
+    private static final int ALIGN = 8;
+
+    /** AbstractDocument.LeafElement with its two positions. */
+    private static final long LEAF_BYTES;
+    /** AbstractDocument.BranchElement without children array. */
+    private static final long BRANCH_BYTES;
+    /** View of one paragraph with its soft break cache. */
+    private static final long LINE_VIEW_BYTES;
+    /** View with children, without children arrays. */
+    private static final long BOX_VIEW_BYTES;
+
+    static {
+        // StickyPosition and MarkData(WeakReference) in GapContent
+        long mark = objectBytes(REF) + objectBytes(REF * 4 + 4) + REF;
+        LEAF_BYTES = objectBytes(REF * 4) + mark * 2;
+        BRANCH_BYTES = objectBytes(REF * 3 + 4 * 2);
+        // WrappedLine and SoftReference
+        LINE_VIEW_BYTES = objectBytes(REF * 3 + 4) + objectBytes(REF * 4 + 8);
+        BOX_VIEW_BYTES = objectBytes(REF * 8 + 4 * 16);
+    }
+
+
+    /**
+     * Hidden constructor.
+     */
+    private FootprintAnalyzer() {
+        assert false;
+        throw new AssertionError();
+    }
+
+
+    /**
+     * Align object size.
+     *
+     * @param size size
+     * @return aligned size
+     */
+    static long align(long size) {
+        long result = (size + ALIGN - 1) / ALIGN * ALIGN;
+        return result;
+    }
+
+    /**
+     * Estimate bytes of object.
+     *
+     * @param fieldBytes bytes of all fields
+     * @return bytes
+     */
+    static long objectBytes(int fieldBytes) {
+        return align(OBJ_HEADER + fieldBytes);
+    }
+
+    /**
+     * Estimate bytes of array.
+     *
+     * @param length array length
+     * @param elemBytes bytes of element
+     * @return bytes
+     */
+    static long arrayBytes(int length, int elemBytes) {
+        return align(ARRAY_HEADER + (long) length * elemBytes);
+    }
+
+    /**
+     * Estimate bytes of String.
+     *
+     * @param text string. null is allowed.
+     * @return bytes. 0 if null.
+     */
+    static long stringBytes(String text) {
+        if (text == null) return 0L;
+        return objectBytes(REF + 4 + 2) + arrayBytes(text.length(), 2);
+    }
+
+    /**
+     * Analyze footprint.
+     *
+     * @param facade facade of text component
+     * @param handler log handler. null if none.
+     * @return footprint
+     */
+    public static Footprint analyze(MvcFacade facade, SwingLogHandler handler) {
+        Map<Footprint.Part, Long> bytes = new EnumMap<>(Footprint.Part.class);
+
+        JTextComponent textComp = facade.getTextArea();
+        Document doc = facade.getDocument();
+
+        bytes.put(Footprint.Part.CONTENT, contentBytes(doc));
+        bytes.put(Footprint.Part.ELEMENTS,
+                elementBytes(doc.getDefaultRootElement()));
+        bytes.put(Footprint.Part.VIEWS, viewBytes(textComp));
+
+        SpanRing styles = SpanRing.get(doc, AnsiSgrParser.SPANS_KEY);
+        if (styles != null) {
+            bytes.put(Footprint.Part.STYLE_SPANS, styles.estimateBytes());
+        }
+        SpanRing marks = SpanRing.get(doc, HighlightRules.SPANS_KEY);
+        if (marks != null) {
+            bytes.put(Footprint.Part.HIGHLIGHT_SPANS, marks.estimateBytes());
+        }
+        TimeIndex index = TimeIndex.get(doc);
+        if (index != null) {
+            bytes.put(Footprint.Part.TIME_INDEX, index.estimateBytes());
+        }
+        SnapshotStore snapshots = SnapshotStore.get(doc);
+        if (snapshots != null) {
+            bytes.put(Footprint.Part.SNAPSHOTS, snapshots.estimateBytes());
+        }
+        LineBreakCache breaks = LineBreakCache.get(doc);
+        if (breaks != null) {
+            bytes.put(Footprint.Part.LINE_BREAKS, breaks.estimateBytes());
+        }
+        WarmTier warmTier = facade.getHeightKeeper().getWarmTier();
+        if (warmTier != null) {
+            bytes.put(Footprint.Part.WARM_TIER, warmTier.estimateBytes());
+        }
+
+        if (handler != null) {
+            putHandlerBytes(bytes, handler);
+        }
+
+        int visibleChars = countVisibleChars(textComp);
+
+        Footprint result = new Footprint(bytes, doc.getLength(), visibleChars);
+        return result;
+    }
+
+    /**
+     * Estimate bytes of log handler.
+     *
+     * @param bytes bytes of each part
+     * @param handler log handler
+     */
+    private static void putHandlerBytes(Map<Footprint.Part, Long> bytes,
+                                        SwingLogHandler handler) {
+        bytes.put(Footprint.Part.QUEUE, handler.estimateQueueBytes());
+        bytes.put(Footprint.Part.LONG_LINES,
+                handler.getLongLineStore().estimateBytes());
+
+        RecordColumns columns = handler.getRecordColumns();
+        if (columns != null) {
+            bytes.put(Footprint.Part.RECORD_COLUMNS, columns.estimateBytes());
+        }
+
+        Document pinned = handler.getPinnedDocument();
+        long pinnedBytes = contentBytes(pinned)
+                + elementBytes(pinned.getDefaultRootElement());
+        bytes.put(Footprint.Part.PINNED, pinnedBytes);
+
+        return;
+    }
+
+    /**
+     * Estimate bytes of Document content.
+     *
+     * @param doc document
+     * @return bytes
+     */
+    private static long contentBytes(Document doc) {
+        // implied break at the end
+        return arrayBytes(doc.getLength() + 1, 2);
+    }
+
+    /**
+     * Estimate bytes of element tree.
+     *
+     * @param elem root element
+     * @return bytes
+     */
+    private static long elementBytes(Element elem) {
+        if (elem.isLeaf()) return LEAF_BYTES;
+
+        int childNum = elem.getElementCount();
+        long result = BRANCH_BYTES + arrayBytes(childNum, REF);
+        for (int idx = 0; idx < childNum; idx++) {
+            result += elementBytes(elem.getElement(idx));
+        }
+
+        return result;
+    }
+
+    /**
+     * Estimate bytes of view tree of text component.
+     *
+     * @param textComp text component
+     * @return bytes
+     */
+    private static long viewBytes(JTextComponent textComp) {
+        TextUI ui = textComp.getUI();
+        if (ui == null) return 0L;
+
+        FontMetrics metrics = textComp.getFontMetrics(textComp.getFont());
+        int rowHeight = Integer.max(1, metrics.getHeight());
+
+        View root = ui.getRootView(textComp);
+        long result = viewBytes(root, rowHeight);
+
+        return result;
+    }
+
+    /**
+     * Estimate bytes of view tree.
+     *
+     * <p>Leaf view is regarded as paragraph view with soft break cache.
+     *
+     * @param view root view
+     * @param rowHeight height of row
+     * @return bytes
+     */
+    private static long viewBytes(View view, int rowHeight) {
+        int childNum = view.getViewCount();
+
+        if (childNum <= 0) {
+            float span = view.getPreferredSpan(View.Y_AXIS);
+            int rows = Integer.max(1, Math.round(span / rowHeight));
+            return LINE_VIEW_BYTES + arrayBytes(rows, 4);
+        }
+
+        // children, offsets and spans of both axis
+        long result = BOX_VIEW_BYTES
+                + arrayBytes(childNum, REF) + arrayBytes(childNum, 4) * 4;
+        for (int idx = 0; idx < childNum; idx++) {
+            result += viewBytes(view.getView(idx), rowHeight);
+        }
+
+        return result;
+    }
+
+    /**
+     * Count chars in rows visible in text component.
+     *
+     * @param textComp text component
+     * @return number of chars
+     */
+    @SuppressWarnings("deprecation")
+    private static int countVisibleChars(JTextComponent textComp) {
+        Rectangle visible = textComp.getVisibleRect();
+        if (visible.isEmpty()) return 0;
+
+        Point topLeft = new Point(visible.x, visible.y);
+        Point bottomRight = new Point(
+                visible.x + visible.width - 1,
+                visible.y + visible.height - 1);
+
+        int start = textComp.viewToModel(topLeft);
+        int last = textComp.viewToModel(bottomRight);
+        if (start < 0 || last < start) return 0;
+
+        int end;
+        try {
+            end = Utilities.getRowEnd(textComp, last);
+        } catch (BadLocationException e) {
+            assert false;
+            return 0;
+        }
+        if (end < 0) end = last;
+
+        int result = end - start;
+        return result;
+    }
+
+}
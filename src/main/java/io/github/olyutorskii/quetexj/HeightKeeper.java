@@ -6,16 +6,16 @@
 package io.github.olyutorskii.quetexj;
 
 import java.awt.EventQueue;
-import java.awt.Point;
 import java.awt.Rectangle;
 import java.awt.event.ComponentAdapter;
 import java.awt.event.ComponentEvent;
 import java.util.Objects;
 import javax.swing.BoundedRangeModel;
 import javax.swing.JTextArea;
-import javax.swing.SwingConstants;
+import javax.swing.Timer;
 import javax.swing.text.BadLocationException;
 import javax.swing.text.Document;
+import javax.swing.text.Element;
 import javax.swing.text.JTextComponent;
 
 /**
@@ -23,6 +23,11 @@
  * by chopping head of Document model.
  *
  * <p>Component is chopped row by row.
+ * Chopping offset is binary-searched over paragraph Elements,
+ * then over rows of one paragraph,
+ * by row positions from cached layout of text views.
+ * Chopped height is measured exactly, not assumed uniform row height,
+ * so styled text with mixed fonts is supported.
  *
  * <p>Physical text-line layout is preserved.
  *
@@ -30,7 +35,17 @@
  * to keep JViewport view in JScrollPane
  * as much as possible.
  *
- * <p>PlainDocument only supported.
+ * <p>Resize events are coalesced.
+ * Chopping is checked at most once per chop delay,
+ * and postponed while BoundedRangeModel is adjusted by hand.
+ *
+ * <p>Chopped text can be kept in WarmTier.
+ * Text restored from WarmTier is chopped again
+ * only by excess over its own height,
+ * so that restored history stays while new text arrives.
+ *
+ * <p>Any text component is supported,
+ * as long as rows are laid out from top to bottom.
  */
 public class HeightKeeper {
 
@@ -38,11 +53,10 @@ public class HeightKeeper {
     public static final int DEF_HEIGHTLIMIT = 3000;
     /** Default new height. */
     public static final int DEF_NEWHEIGHT   = 2500;
+    /** Default chop delay (msec). About one frame. */
+    public static final int DEF_CHOPDELAY   = 16;
 
-    private static final Rectangle DMY_RECT = new Rectangle();
-
-
-    private final JTextArea textComp;
+    private final JTextComponent textComp;
 
     private final BoundedRangeModel rangeModel;
 
@@ -51,6 +65,9 @@ public class HeightKeeper {
     private final Object condLock = new Object();
 
     private final SizeWatcher watcher = new SizeWatcher();
+    private final Timer chopTimer;
+
+    private WarmTier warmTier;
 
 
     /**
@@ -61,7 +78,8 @@ public class HeightKeeper {
      * @param textComp text component
      * @param rangeModel bounded range model
      */
-    public HeightKeeper(JTextArea textComp, BoundedRangeModel rangeModel) {
+    public HeightKeeper(JTextComponent textComp,
+            BoundedRangeModel rangeModel) {
         this(textComp, rangeModel, DEF_HEIGHTLIMIT, DEF_NEWHEIGHT);
         return;
     }
@@ -80,7 +98,7 @@ public HeightKeeper(JTextArea textComp, BoundedRangeModel rangeModel) {
      * @param newHeight new height when over limit
      * @throws IllegalArgumentException illegal integer argument
      */
-    public HeightKeeper(JTextArea textComp, BoundedRangeModel rangeModel,
+    public HeightKeeper(JTextComponent textComp, BoundedRangeModel rangeModel,
             int heightLimit, int newHeight) {
         super();
 
@@ -97,9 +115,66 @@ public HeightKeeper(JTextArea textComp, BoundedRangeModel rangeModel,
 
         this.rangeModel = rangeModel;
 
+        this.chopTimer = buildChopTimer();
+        this.chopTimer.addActionListener(ev -> {
+            eventChopTimer();
+        });
+
         return;
     }
 
+    /**
+     * Constructor.
+     *
+     * <p>Condition parameters are default value.
+     *
+     * <p>Kept for binary compatibility with 1.0.x.
+     *
+     * @param textComp text area
+     * @param rangeModel bounded range model
+     */
+    public HeightKeeper(JTextArea textComp, BoundedRangeModel rangeModel) {
+        this((JTextComponent) textComp, rangeModel);
+        return;
+    }
+
+    /**
+     * Constructor.
+     *
+     * <p>Kept for binary compatibility with 1.0.x.
+     *
+     * @param textComp text area
+     * @param rangeModel bounded range model
+     * @param heightLimit height limit condition
+     * @param newHeight new height when over limit
+     * @throws IllegalArgumentException illegal integer argument
+     * @see #HeightKeeper(JTextComponent, BoundedRangeModel, int, int)
+     */
+    public HeightKeeper(JTextArea textComp, BoundedRangeModel rangeModel,
+            int heightLimit, int newHeight) {
+        this((JTextComponent) textComp, rangeModel, heightLimit, newHeight);
+        return;
+    }
+
+
+    /**
+     * Build chop timer.
+     *
+     * <p>Timer is one-shot and coalesced.
+     *
+     * @return timer
+     */
+    private static Timer buildChopTimer() {
+        Timer result = new Timer(DEF_CHOPDELAY, null);
+
+        result.setInitialDelay(DEF_CHOPDELAY);
+        result.setRepeats(false);
+        result.setCoalesce(true);
+
+        return result;
+    }
+
+
     /**
      * Return associated text component.
      *
@@ -173,6 +248,82 @@ public void setConditions(int heightLimitArg, int newHeightArg)
         return;
     }
 
+    /**
+     * Return chop delay.
+     *
+     * @return chop delay (msec)
+     */
+    public int getChopDelay() {
+        return this.chopTimer.getInitialDelay();
+    }
+
+    /**
+     * Set chop delay.
+     *
+     * <p>Resize events within delay are coalesced into one chop check.
+     *
+     * <p>(EDT only.)
+     *
+     * @param msec chop delay (msec). 0 means next EventQueue turn.
+     * @throws IllegalArgumentException negative delay
+     */
+    public void setChopDelay(int msec) throws IllegalArgumentException {
+        if (msec < 0) throw new IllegalArgumentException();
+        this.chopTimer.setInitialDelay(msec);
+        this.chopTimer.setDelay(msec);
+        return;
+    }
+
+    /**
+     * Return warm tier of chopped text.
+     *
+     * @return warm tier. null if none.
+     */
+    public WarmTier getWarmTier() {
+        return this.warmTier;
+    }
+
+    /**
+     * Set warm tier of chopped text.
+     *
+     * <p>Chopped text is stored into warm tier.
+     *
+     * <p>(EDT only.)
+     *
+     * @param tier warm tier. null if chopped text is discarded.
+     */
+    public void setWarmTier(WarmTier tier) {
+        this.warmTier = tier;
+        return;
+    }
+
+    /**
+     * Schedule chop check.
+     *
+     * <p>If already scheduled, do nothing.
+     */
+    private void scheduleChop() {
+        if (this.chopTimer.isRunning()) return;
+        this.chopTimer.start();
+        return;
+    }
+
+    /**
+     * Receive chop timer event.
+     *
+     * <p>While knob is adjusted by hand, chopping is postponed.
+     */
+    private void eventChopTimer() {
+        if (this.rangeModel.getValueIsAdjusting()) {
+            scheduleChop();
+            return;
+        }
+
+        eventResized();
+
+        return;
+    }
+
     /**
      * Receive component resized event.
      *
@@ -186,72 +337,134 @@ void eventResized() {
             condNewHeight   = this.newHeight;
         }
 
+        int restoredHeight = getRestoredHeight();
+        condHeightLimit += restoredHeight;
+        condNewHeight   += restoredHeight;
+
         int compHeight = this.textComp.getHeight();
         if (compHeight < condHeightLimit) return;
 
         int chopHeight = compHeight - condNewHeight;
         int oldRangeVal = this.rangeModel.getValue();
 
-        chopHeadHeightRowBounds(chopHeight);
+        int chopEnd = searchRowStart(chopHeight);
+        if (chopEnd <= 0) return;
 
-        adjustBoundedRangeModel(chopHeight, oldRangeVal);
+        int insetsTop = this.textComp.getInsets().top;
+        int realChopHeight = getRowTop(chopEnd) - insetsTop;
+
+        chopHead(chopEnd);
+
+        adjustBoundedRangeModel(realChopHeight, oldRangeVal);
 
         return;
     }
 
     /**
-     * Chop text component height from ceiling.
+     * Return height of text restored from warm tier.
      *
-     * <p>Component height will be shrunk between row bounds.
+     * @return height. 0 if none.
+     */
+    private int getRestoredHeight() {
+        WarmTier tier = this.warmTier;
+        if (tier == null) return 0;
+
+        int restored = tier.getRestoredChars();
+        if (restored <= 0) return 0;
+
+        int docLength = this.textComp.getDocument().getLength();
+        int offset = Integer.min(restored, docLength);
+
+        int rowTop = getRowTop(offset);
+        if (rowTop < 0) return 0;
+
+        return rowTop;
+    }
+
+    /**
+     * Return top of row containing Document offset.
      *
-     * <p>Text component will be resized later EventQueue.
+     * <p>Row position comes from cached layout of text views.
      *
-     * @param chopRegionHeight Chopping height from ceiling.
+     * @param offset offset in Document model
+     * @return top of row. -1 if not laid out yet.
      */
-    private void chopHeadHeightRowBounds(int chopRegionHeight) {
-        int docLastPos = chopHeightToLinedOffset(chopRegionHeight);
-        chopHeadHeightByDocPos(docLastPos);
-        return;
+    @SuppressWarnings("deprecation")
+    private int getRowTop(int offset) {
+        Rectangle rect;
+        try {
+            rect = this.textComp.modelToView(offset);
+        } catch (BadLocationException e) {
+            assert false;
+            return -1;
+        }
+        if (rect == null) return -1;
+
+        return rect.y;
     }
 
     /**
-     * Convert from head chop height
-     * to physical line-end offset in Document model.
+     * Search first Document offset of row
+     * whose top is at or below chop height.
+     *
+     * <p>Paragraph Elements are binary-searched first,
+     * then offsets in the paragraph.
      *
      * @param chopHeight head chop height in text component
-     * @return offset in Document model. -1 if undefined.
+     * @return offset in Document model.
+     *     Document length if all rows are above.
+     *     -1 if undefined.
      */
-    private int chopHeightToLinedOffset(int chopHeight) {
-        int chopWidth  = this.textComp.getWidth();
-
-        // Diagonal corner of shrink region
-        Point edgePoint = new Point(chopWidth  - 1, chopHeight - 1);
+    private int searchRowStart(int chopHeight) {
+        Document document = this.textComp.getDocument();
+        int docLength = document.getLength();
+        if (docLength <= 0) return -1;
+
+        if (getRowTop(0) < 0) return -1;
+        if (getRowTop(docLength) < chopHeight) return docLength;
+
+        Element root = document.getDefaultRootElement();
+
+        int low = 0;
+        int high = root.getElementCount() - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            int midStart = root.getElement(mid).getStartOffset();
+            if (getRowTop(midStart) < chopHeight) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
 
-        int docOffset = this.textComp.viewToModel(edgePoint);
+        Element para = root.getElement(low);
+        int from = para.getStartOffset();
+        int to = Integer.min(para.getEndOffset(), docLength);
+        while (from < to) {
+            int mid = (from + to) >>> 1;
+            if (getRowTop(mid) < chopHeight) {
+                from = mid + 1;
+            } else {
+                to = mid;
+            }
+        }
 
-        return docOffset;
+        return from;
     }
 
     /**
-     * Chop text component height by chopping head of Document model.
-     *
-     * <p>If Document position is negative, do nothing.
+     * Chop head of Document model.
      *
      * <p>Text component will be resized later EventQueue.
      *
-     * @param docLastPos last char position of chop-text in Document model.
+     * @param chopEnd end offset of chop-text in Document model. (exclusive)
      */
-    private void chopHeadHeightByDocPos(int docLastPos) {
-        if (docLastPos < 0) return;
-
+    private void chopHead(int chopEnd) {
         Document document = this.textComp.getDocument();
-        int docLength = document.getLength();
-        if (docLength <= 0) return;
-
-        int regionLength = Integer.min(docLastPos + 1, docLength);
 
         try {
-            document.remove(0, regionLength);
+            storeWarmTier(document, chopEnd);
+            document.remove(0, chopEnd);
         } catch (BadLocationException e) {
             assert false;
         }
@@ -260,52 +473,42 @@ private void chopHeadHeightByDocPos(int docLastPos) {
     }
 
     /**
-     * Adjust BoundedRangeModel to keep JViewport view in JScrollPane.
-     *
-     * @param chopHeight chop height
-     * @param oldRangeVal BoundedRangeModel value before chopping
-     * @return adjusted BoundedRangeModel value.
-     */
-    private int adjustBoundedRangeModel(int chopHeight, int oldRangeVal) {
-        int realChopHeight = getRealChopHeight(chopHeight);
-        int newRangeVal = oldRangeVal - realChopHeight;
-        this.rangeModel.setValue(newRangeVal);
-        return newRangeVal;
-    }
-
-    /**
-     * Convert head height to row-bounds height.
+     * Store head text about to be chopped into warm tier.
      *
-     * <p>Result is multiple of row height.
+     * <p>If no warm tier, do nothing.
      *
-     * @param chopHeight chop height
-     * @return row-bounds height
+     * @param document document
+     * @param regionLength chopping length
+     * @throws BadLocationException illegal length
      */
-    private int getRealChopHeight(int chopHeight) {
-        int insetsTop = this.textComp.getInsets().top;
-        int bodyHeight = chopHeight - insetsTop;
-        int rowHeight = getRowHeight();
-        int chopRows = bodyHeight / rowHeight + 1;
+    private void storeWarmTier(Document document, int regionLength)
+            throws BadLocationException {
+        WarmTier tier = this.warmTier;
+        if (tier == null) return;
+
+        long millis = -1L;
+        TimeIndex index = TimeIndex.get(document);
+        if (index != null) millis = index.getHeadMillis();
 
-        int realChopHeight = rowHeight * chopRows + insetsTop;
+        String text = document.getText(0, regionLength);
+        tier.store(text, millis);
 
-        return realChopHeight;
+        return;
     }
 
     /**
-     * Get row height of text component.
+     * Adjust BoundedRangeModel to keep JViewport view in JScrollPane.
      *
-     * @return row height
-     * @see JTextArea#getRowHeight()
+     * @param realChopHeight exact chopped height
+     * @param oldRangeVal BoundedRangeModel value before chopping
+     * @return adjusted BoundedRangeModel value.
      */
-    private int getRowHeight() {
-        int result =
-                this.textComp.getScrollableUnitIncrement(
-                        DMY_RECT, SwingConstants.VERTICAL, 0);
-        return result;
+    private int adjustBoundedRangeModel(int realChopHeight, int oldRangeVal) {
+        int newRangeVal = oldRangeVal - realChopHeight;
+        this.rangeModel.setValue(newRangeVal);
+        return newRangeVal;
     }
 
-
     /**
      * Component resize watcher.
      */
@@ -326,7 +529,7 @@ private class SizeWatcher extends ComponentAdapter {
          */
         @Override
         public void componentResized(ComponentEvent ev) {
-            eventResized();
+            scheduleChop();
             return;
         }
 
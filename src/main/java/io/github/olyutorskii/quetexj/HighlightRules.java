@@ -0,0 +1,275 @@
+/*
+ * License : The MIT License
+ * Copyright(c) 2019 Olyutorskii
+ */
+
+package io.github.olyutorskii.quetexj;
+
+import java.awt.Color;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Pattern highlighting rules of log text.
+ *
+ * <p>Each rule is precompiled regex Pattern and highlight color.
+ *
+ * <p>Rules are matched against each record by producer thread
+ * before queueing, so EDT never runs regex.
+ * Matches become compact spans attached to Document,
+ * which are painted by {@link MvcFacade#setHighlightRendering(boolean)}.
+ *
+ * <p>If matches of rules overlap, earlier match wins.
+ * If matches start at same position, earlier rule wins.
+ *
+ * <p>Matchers are cached per thread,
+ * so no allocation happens per record in steady state.
+ *
+ * <p>This is thread-safe.
+ *
+ * @see SwingLogHandler#setHighlightRules(HighlightRules)
+ */
+public class HighlightRules {
+
+    /** Document property key of SpanRing of highlights. */
+    static final String SPANS_KEY =
+            "io.github.olyutorskii.quetexj.highlightSpans";
+
+    private static final int RGB_MASK = 0xffffff;
+
+
+    private volatile Rule[] rules = new Rule[0];
+
+    private final ThreadLocal<MatchContext> context =
+            ThreadLocal.withInitial(MatchContext::new);
+
+
+    /**
+     * Constructor.
+     */
+    public HighlightRules() {
+        super();
+        return;
+    }
+
+
+    /**
+     * Add rule.
+     *
+     * @param pattern precompiled pattern
+     * @param color highlight color. Alpha is ignored.
+     * @throws NullPointerException null argument
+     */
+    public synchronized void addRule(Pattern pattern, Color color)
+            throws NullPointerException {
+        Objects.requireNonNull(pattern);
+        Objects.requireNonNull(color);
+
+        Rule[] oldRules = this.rules;
+        Rule[] newRules = Arrays.copyOf(oldRules, oldRules.length + 1);
+        newRules[oldRules.length] = new Rule(pattern, color.getRGB());
+        this.rules = newRules;
+
+        return;
+    }
+
+    /**
+     * Add rule.
+     *
+     * @param regex regular expression
+     * @param color highlight color. Alpha is ignored.
+     * @throws NullPointerException null argument
+     * @throws java.util.regex.PatternSyntaxException illegal regex
+     */
+    public void addRule(String regex, Color color)
+            throws NullPointerException {
+        addRule(Pattern.compile(regex), color);
+        return;
+    }
+
+    /**
+     * Return number of rules.
+     *
+     * @return number of rules
+     */
+    public int getRuleCount() {
+        return this.rules.length;
+    }
+
+    /**
+     * Convert span tag to RGB color value.
+     *
+     * @param tag span tag
+     * @return RGB color value
+     */
+    static int toRgb(int tag) {
+        return tag & RGB_MASK;
+    }
+
+    /**
+     * Match rules against chunk text.
+     *
+     * <p>Matches are added to highlight spans of chunk.
+     * Span tag is RGB color value.
+     *
+     * @param chunk text chunk
+     */
+    void match(TextChunk chunk) {
+        Rule[] nowRules = this.rules;
+        if (nowRules.length <= 0) return;
+
+        MatchContext ctx = this.context.get();
+        ctx.prepare(nowRules);
+        ctx.collect(chunk);
+        ctx.resolve(chunk.getMarks());
+
+        return;
+    }
+
+
+    /**
+     * Highlight rule.
+     */
+    private static final class Rule {
+
+        private final Pattern pattern;
+        private final int rgb;
+
+        /**
+         * Constructor.
+         *
+         * @param pattern pattern
+         * @param rgb RGB color value
+         */
+        Rule(Pattern pattern, int rgb) {
+            super();
+            this.pattern = pattern;
+            this.rgb = rgb & RGB_MASK;
+            return;
+        }
+
+    }
+
+    /**
+     * Per-thread matching context.
+     */
+    private static final class MatchContext {
+
+        private static final int FIELDS = 3;
+        private static final int DEF_CAPACITY = 16;
+
+        private Rule[] rules;
+        private Matcher[] matchers;
+
+        private int[] found = new int[DEF_CAPACITY * FIELDS];
+        private int foundNum;
+
+        /**
+         * Constructor.
+         */
+        MatchContext() {
+            super();
+            return;
+        }
+
+        /**
+         * Prepare matchers for rules.
+         *
+         * <p>Matchers are rebuilt only if rules changed.
+         *
+         * @param nowRules rules
+         */
+        void prepare(Rule[] nowRules) {
+            if (this.rules == nowRules) return;
+
+            this.rules = nowRules;
+            this.matchers = new Matcher[nowRules.length];
+            for (int idx = 0; idx < nowRules.length; idx++) {
+                this.matchers[idx] = nowRules[idx].pattern.matcher("");
+            }
+
+            return;
+        }
+
+        /**
+         * Collect matches of all rules.
+         *
+         * @param text text
+         */
+        void collect(CharSequence text) {
+            this.foundNum = 0;
+
+            for (int idx = 0; idx < this.matchers.length; idx++) {
+                Matcher matcher = this.matchers[idx];
+                matcher.reset(text);
+                while (matcher.find()) {
+                    int start = matcher.start();
+                    int end = matcher.end();
+                    if (start < end) {
+                        addFound(start, end, this.rules[idx].rgb);
+                    }
+                }
+            }
+
+            for (Matcher matcher : this.matchers) {
+                matcher.reset("");
+            }
+
+            return;
+        }
+
+        /**
+         * Add found match, keeping start order.
+         *
+         * <p>Insertion sort. Match of earlier rule precedes
+         * at same start position.
+         *
+         * @param start start position
+         * @param end end position (exclusive)
+         * @param rgb RGB color value
+         */
+        private void addFound(int start, int end, int rgb) {
+            int pos = this.foundNum * FIELDS;
+            if (pos + FIELDS > this.found.length) {
+                this.found = Arrays.copyOf(this.found, this.found.length * 2);
+            }
+
+            while (pos > 0 && this.found[pos - FIELDS] > start) {
+                System.arraycopy(this.found, pos - FIELDS,
+                        this.found, pos, FIELDS);
+                pos -= FIELDS;
+            }
+
+            this.found[pos] = start;
+            this.found[pos + 1] = end;
+            this.found[pos + 2] = rgb;
+            this.foundNum++;
+
+            return;
+        }
+
+        /**
+         * Drop overlapped matches and output spans.
+         *
+         * @param spans output spans
+         */
+        void resolve(ChunkSpans spans) {
+            int lastEnd = 0;
+            int pos = 0;
+            for (int ct = 0; ct < this.foundNum; ct++) {
+                int start = this.found[pos];
+                int end = this.found[pos + 1];
+                if (start >= lastEnd) {
+                    spans.add(start, end, this.found[pos + 2]);
+                    lastEnd = end;
+                }
+                pos += FIELDS;
+            }
+            return;
+        }
+
+    }
+
+}
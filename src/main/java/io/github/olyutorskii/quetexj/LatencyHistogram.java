@@ -0,0 +1,188 @@
+/*
+ * License : The MIT License
+ * Copyright(c) 2019 Olyutorskii
+ */
+
+package io.github.olyutorskii.quetexj;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free fixed-memory log-linear histogram of latency.
+ *
+ * <p>Each power-of-two range is divided into 16 linear sub-buckets,
+ * so relative error of percentile is at most 1/16.
+ * Memory is fixed (about 8KB) regardless of recorded values.
+ *
+ * <p>Values are nano seconds. Negative values are recorded as 0.
+ *
+ * <p>This is thread-safe. Recording never blocks.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BITS = 4;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int GROUPS = Long.SIZE - SUB_BITS;
+    private static final int BUCKETS = GROUPS * SUB_COUNT;
+
+    private static final double PERCENT = 100.0;
+
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+
+    /**
+     * Constructor.
+     */
+    public LatencyHistogram() {
+        super();
+        return;
+    }
+
+
+    /**
+     * Convert value to bucket index.
+     *
+     * @param value value
+     * @return bucket index
+     */
+    static int toIndex(long value) {
+        if (value < SUB_COUNT) return (int) value;
+
+        int exp = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        int shift = exp - SUB_BITS;
+        int sub = (int) (value >>> shift) & (SUB_COUNT - 1);
+        int group = shift + 1;
+
+        int result = group * SUB_COUNT + sub;
+        return result;
+    }
+
+    /**
+     * Return lowest value of bucket.
+     *
+     * @param idx bucket index
+     * @return lowest value
+     */
+    static long lowestValue(int idx) {
+        if (idx < SUB_COUNT) return idx;
+
+        int group = idx / SUB_COUNT;
+        int sub = idx % SUB_COUNT;
+
+        long result = (long) (SUB_COUNT + sub) << (group - 1);
+        return result;
+    }
+
+    /**
+     * Return highest value of bucket.
+     *
+     * @param idx bucket index
+     * @return highest value
+     */
+    static long highestValue(int idx) {
+        if (idx >= BUCKETS - 1) return Long.MAX_VALUE;
+        long result = lowestValue(idx + 1) - 1;
+        return result;
+    }
+
+    /**
+     * Record value.
+     *
+     * @param nanos latency (nano sec)
+     */
+    public void recordNanos(long nanos) {
+        long value = nanos;
+        if (value < 0) value = 0;
+
+        int idx = toIndex(value);
+        this.counts.incrementAndGet(idx);
+        this.total.incrementAndGet();
+
+        long oldMax = this.max.get();
+        while (value > oldMax) {
+            if (this.max.compareAndSet(oldMax, value)) break;
+            oldMax = this.max.get();
+        }
+
+        return;
+    }
+
+    /**
+     * Return number of recorded values.
+     *
+     * @return number of values
+     */
+    public long getCount() {
+        return this.total.get();
+    }
+
+    /**
+     * Return max recorded value.
+     *
+     * @return max value (nano sec). 0 if no value.
+     */
+    public long getMax() {
+        return this.max.get();
+    }
+
+    /**
+     * Return percentile value.
+     *
+     * <p>Result is highest value of bucket that contains percentile,
+     * but not more than max value.
+     *
+     * @param percentile percentile (0.0 - 100.0)
+     * @return percentile value (nano sec). 0 if no value.
+     * @throws IllegalArgumentException illegal percentile
+     */
+    public long getPercentile(double percentile)
+            throws IllegalArgumentException {
+        if (!(0.0 <= percentile && percentile <= PERCENT)) {
+            throw new IllegalArgumentException();
+        }
+
+        long[] snapshot = new long[BUCKETS];
+        long sum = 0;
+        for (int idx = 0; idx < BUCKETS; idx++) {
+            long count = this.counts.get(idx);
+            snapshot[idx] = count;
+            sum += count;
+        }
+        if (sum <= 0) return 0L;
+
+        long rank = (long) Math.ceil(sum * percentile / PERCENT);
+        if (rank < 1) rank = 1;
+
+        long accum = 0;
+        int found = BUCKETS - 1;
+        for (int idx = 0; idx < BUCKETS; idx++) {
+            accum += snapshot[idx];
+            if (accum >= rank) {
+                found = idx;
+                break;
+            }
+        }
+
+        long result = Math.min(highestValue(found), getMax());
+        return result;
+    }
+
+    /**
+     * Reset all recorded values.
+     *
+     * <p>Values recorded concurrently may be partially lost.
+     */
+    public void reset() {
+        for (int idx = 0; idx < BUCKETS; idx++) {
+            this.counts.set(idx, 0L);
+        }
+        this.total.set(0L);
+        this.max.set(0L);
+        return;
+    }
+
+}
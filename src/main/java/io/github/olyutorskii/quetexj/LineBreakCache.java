@@ -0,0 +1,947 @@
+/*
+ * License : The MIT License
+ * Copyright(c) 2019 Olyutorskii
+ */
+
+package io.github.olyutorskii.quetexj;
+
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.font.FontRenderContext;
+import java.text.BreakIterator;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import javax.swing.text.Segment;
+
+/**
+ * Cache of line breaks precomputed off EDT.
+ *
+ * <p>Appended text is measured on ForkJoinPool
+ * with current wrap spec (width, font metrics and tab size),
+ * so that wrapped views need not measure glyphs on EDT.
+ * Each appended text becomes one entry,
+ * which keeps soft breaks
+ * (row starts except paragraph starts) of its whole paragraphs.
+ * Measuring starts when text is offered before insertion,
+ * so entry exists before any DocumentListener updates views.
+ * Large text is split at line ends and measured in parallel.
+ *
+ * <p>If wrap spec changes, whole Document text is measured again
+ * as entries of paragraph ranges,
+ * so layout consumes each range as soon as it is finished.
+ *
+ * <p>Entry is joined when view asks break first.
+ * So EDT waits only for unfinished measuring,
+ * and never measures same text twice.
+ *
+ * <p>Positions are kept as absolute stream positions,
+ * which count chars chopped from head of Document.
+ * Entries entirely chopped are dropped.
+ *
+ * <p>Insertion at head of Document restores chopped positions,
+ * so inserted text has no entries.
+ * Other insertion except at the end of Document,
+ * or removal except from head of Document, clears all entries.
+ *
+ * <p>Cache is attached to Document as its property.
+ *
+ * <p>(EDT only.)
+ *
+ * @see CachedWrapView
+ */
+final class LineBreakCache {
+
+    /** Document property key of line break cache. */
+    static final String CACHE_KEY = "io.github.olyutorskii.quetexj.lineBreaks";
+
+    private static final int DEF_CAPACITY = 64;
+    private static final int SPLIT_CHARS = 16 * 1024;
+    private static final int[] NO_BREAKS = new int[0];
+
+
+    private Entry[] entries;
+    private int head;
+    private int size;
+
+    private long chopped;
+
+    private Spec spec;
+
+    /** Text offered before insertion. */
+    private String offered;
+    /** Absolute position where offered text will be inserted. */
+    private long offeredPos;
+    /** True if last entry was added for offered text. */
+    private boolean offeredEntry;
+
+    private final Segment segment = new Segment();
+    private final Watcher watcher = new Watcher();
+
+
+    /**
+     * Constructor.
+     */
+    private LineBreakCache() {
+        super();
+        this.entries = new Entry[DEF_CAPACITY];
+        return;
+    }
+
+
+    /**
+     * Return line break cache attached to Document.
+     *
+     * @param doc document
+     * @return line break cache. null if none.
+     */
+    static LineBreakCache get(Document doc) {
+        Object prop = doc.getProperty(CACHE_KEY);
+        if (prop instanceof LineBreakCache) {
+            return (LineBreakCache) prop;
+        }
+        return null;
+    }
+
+    /**
+     * Attach line break cache to Document.
+     *
+     * <p>If already attached, its listener is registered again.
+     *
+     * <p>Attach after text UI is installed.
+     * Then chopping is notified to cache before views,
+     * as AbstractDocument notifies listeners added later first.
+     *
+     * @param doc document
+     * @return line break cache
+     */
+    static LineBreakCache attach(Document doc) {
+        LineBreakCache result = get(doc);
+        if (result != null) {
+            doc.removeDocumentListener(result.watcher);
+            doc.addDocumentListener(result.watcher);
+            return result;
+        }
+
+        result = new LineBreakCache();
+        doc.addDocumentListener(result.watcher);
+        doc.putProperty(CACHE_KEY, result);
+
+        return result;
+    }
+
+    /**
+     * Detach line break cache from Document.
+     *
+     * <p>If none, do nothing.
+     *
+     * @param doc document
+     */
+    static void detach(Document doc) {
+        LineBreakCache cache = get(doc);
+        if (cache == null) return;
+
+        doc.removeDocumentListener(cache.watcher);
+        doc.putProperty(CACHE_KEY, null);
+        cache.clear();
+
+        return;
+    }
+
+    /**
+     * Offer text about to be appended to Document.
+     *
+     * <p>Offered text is measured as is,
+     * instead of copying it from Document.
+     * Measuring starts here, before views are notified of insertion.
+     *
+     * @param doc document
+     * @param text text
+     */
+    void offer(Document doc, String text) {
+        cancelOffer();
+
+        int offset = doc.getLength();
+        this.offered = text;
+        this.offeredPos = this.chopped + offset;
+        this.offeredEntry = addAppended(doc, offset, text);
+
+        return;
+    }
+
+    /**
+     * Cancel offered text.
+     *
+     * <p>Entry added for offered text is dropped.
+     */
+    private void cancelOffer() {
+        if (this.offeredEntry) {
+            this.size--;
+            this.entries[slot(this.size)] = null;
+        }
+        this.offered = null;
+        this.offeredEntry = false;
+        return;
+    }
+
+    /**
+     * Return current wrap spec.
+     *
+     * @return wrap spec. null if none.
+     */
+    Spec getSpec() {
+        return this.spec;
+    }
+
+    /**
+     * Update wrap spec.
+     *
+     * <p>If spec changes, all entries are dropped
+     * and whole Document text is measured again.
+     * Text is split into entries of paragraph ranges,
+     * so that joining one range never waits for whole text.
+     *
+     * @param newSpec wrap spec
+     * @param doc document
+     */
+    void updateSpec(Spec newSpec, Document doc) {
+        if (newSpec.equals(this.spec)) return;
+
+        this.spec = newSpec;
+        clear();
+
+        int docLength = doc.getLength();
+        if (docLength <= 0) return;
+
+        String text;
+        try {
+            text = doc.getText(0, docLength);
+        } catch (BadLocationException e) {
+            assert false;
+            return;
+        }
+
+        int textLength = text.length();
+        int from = 0;
+        while (from < textLength) {
+            int to = textLength;
+            if (textLength - from > SPLIT_CHARS) {
+                int lineEnd = text.indexOf('\n', from + SPLIT_CHARS - 1);
+                if (lineEnd >= 0) to = lineEnd + 1;
+            }
+            addEntry(this.chopped, text, from, to);
+            from = to;
+        }
+
+        return;
+    }
+
+    /**
+     * Return break position of row.
+     *
+     * <p>Unfinished measuring is joined.
+     *
+     * @param p0 row start offset in Document
+     * @param p1 paragraph end offset in Document
+     * @return start offset of next row. p1 if row reaches p1.
+     *     -1 if unknown.
+     */
+    int breakPosition(int p0, int p1) {
+        long abs0 = this.chopped + p0;
+        long abs1 = this.chopped + p1;
+
+        int idx = search(abs0);
+        if (idx < 0) return -1;
+
+        Entry entry = this.entries[slot(idx)];
+        if (abs1 > entry.end) return -1;
+
+        int[] breaks = entry.task.join();
+        int rel0 = (int) (abs0 - entry.base);
+
+        int brkIdx = Arrays.binarySearch(breaks, rel0);
+        if (brkIdx >= 0) {
+            brkIdx++;
+        } else {
+            brkIdx = -brkIdx - 1;
+        }
+
+        if (brkIdx < breaks.length) {
+            long absBrk = entry.base + breaks[brkIdx];
+            if (absBrk < abs1) {
+                return (int) (absBrk - this.chopped);
+            }
+        }
+
+        return p1;
+    }
+
+    /**
+     * Search entry containing absolute position.
+     *
+     * <p>Binary search.
+     *
+     * @param absPos absolute position
+     * @return entry index. -1 if none.
+     */
+    private int search(long absPos) {
+        int low = 0;
+        int high = this.size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (this.entries[slot(mid)].start <= absPos) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+
+        int result = low - 1;
+        if (result < 0) return -1;
+        if (this.entries[slot(result)].end <= absPos) return -1;
+
+        return result;
+    }
+
+    /**
+     * Convert entry index to ring slot.
+     *
+     * @param idx entry index
+     * @return slot
+     */
+    private int slot(int idx) {
+        int result = this.head + idx;
+        if (result >= this.entries.length) result -= this.entries.length;
+        return result;
+    }
+
+    /**
+     * Add entry and start measuring on ForkJoinPool.
+     *
+     * <p>Text range must start at paragraph start
+     * and end at line end.
+     *
+     * @param base absolute position of text head
+     * @param text text
+     * @param from start of range in text
+     * @param to end of range in text (exclusive)
+     */
+    private void addEntry(long base, String text, int from, int to) {
+        Measure task = new Measure(this.spec, text, from, to);
+        ForkJoinPool.commonPool().execute(task);
+
+        if (this.size >= this.entries.length) grow();
+
+        Entry entry = new Entry(base + from, base + to, base, task);
+        this.entries[slot(this.size)] = entry;
+        this.size++;
+
+        return;
+    }
+
+    /**
+     * Double ring capacity.
+     */
+    private void grow() {
+        int newCap = this.entries.length * 2;
+        int firstLen = Integer.min(this.size, this.entries.length - this.head);
+
+        Entry[] newEntries = new Entry[newCap];
+        System.arraycopy(this.entries, this.head, newEntries, 0, firstLen);
+        System.arraycopy(this.entries, 0,
+                newEntries, firstLen, this.size - firstLen);
+
+        this.entries = newEntries;
+        this.head = 0;
+
+        return;
+    }
+
+    /**
+     * Notify chars chopped from head of Document.
+     *
+     * <p>Entries entirely chopped are dropped.
+     *
+     * @param len chopped length
+     */
+    private void chopHead(int len) {
+        this.chopped += len;
+
+        while (this.size > 0 && this.entries[this.head].end <= this.chopped) {
+            this.entries[this.head] = null;
+            this.head = slot(1);
+            this.size--;
+        }
+
+        return;
+    }
+
+    /**
+     * Notify chars inserted at head of Document.
+     *
+     * <p>Positions of entries are kept.
+     *
+     * @param len inserted length
+     */
+    private void unchopHead(int len) {
+        this.chopped -= len;
+        return;
+    }
+
+    /**
+     * Remove all entries.
+     *
+     * <p>Over-grown ring is released.
+     */
+    private void clear() {
+        Arrays.fill(this.entries, null);
+        if (this.entries.length > DEF_CAPACITY) {
+            this.entries = new Entry[DEF_CAPACITY];
+        }
+        this.head = 0;
+        this.size = 0;
+        this.offeredEntry = false;
+        return;
+    }
+
+    /**
+     * Measure text appended to Document.
+     *
+     * <p>Text offered before is already measured.
+     *
+     * @param doc document
+     * @param offset inserted offset
+     * @param len inserted length
+     */
+    private void mirrorInsert(Document doc, int offset, int len) {
+        String text = this.offered;
+        if (text != null && text.length() == len
+                && this.offeredPos == this.chopped + offset) {
+            this.offered = null;
+            this.offeredEntry = false;
+            return;
+        }
+
+        cancelOffer();
+        if (this.spec == null) return;
+
+        try {
+            text = doc.getText(offset, len);
+        } catch (BadLocationException e) {
+            assert false;
+            return;
+        }
+
+        addAppended(doc, offset, text);
+
+        return;
+    }
+
+    /**
+     * Add entry of text appended at offset.
+     *
+     * <p>Partial paragraphs at both ends of text are not measured.
+     * Text may be not inserted yet.
+     *
+     * @param doc document
+     * @param offset appended offset
+     * @param text appended text
+     * @return true if entry is added
+     */
+    private boolean addAppended(Document doc, int offset, String text) {
+        if (this.spec == null) return false;
+
+        int from = 0;
+        if (!isParagraphStart(doc, offset)) {
+            from = text.indexOf('\n') + 1;
+            if (from <= 0) return false;
+        }
+        int to = text.lastIndexOf('\n') + 1;
+        if (to <= from) return false;
+
+        addEntry(this.chopped + offset, text, from, to);
+
+        return true;
+    }
+
+    /**
+     * Return whether Document offset is paragraph start.
+     *
+     * @param doc document
+     * @param offset offset
+     * @return true if paragraph start
+     */
+    private boolean isParagraphStart(Document doc, int offset) {
+        if (offset <= 0) return true;
+
+        Segment seg = this.segment;
+        try {
+            doc.getText(offset - 1, 1, seg);
+        } catch (BadLocationException e) {
+            assert false;
+            return false;
+        }
+
+        return seg.first() == '\n';
+    }
+
+    /**
+     * Estimate retained heap bytes.
+     *
+     * <p>Breaks of tasks not yet done are not counted.
+     *
+     * @return bytes
+     * @see FootprintAnalyzer
+     */
+    long estimateBytes() {
+        long result = FootprintAnalyzer.objectBytes(
+                FootprintAnalyzer.REF * 5 + 4 * 2 + 8 * 2 + 1);
+        result += FootprintAnalyzer.stringBytes(this.offered);
+        result += FootprintAnalyzer.arrayBytes(
+                this.entries.length, FootprintAnalyzer.REF);
+
+        long entryBytes = FootprintAnalyzer.objectBytes(
+                8 * 3 + FootprintAnalyzer.REF);
+        long taskBytes = FootprintAnalyzer.objectBytes(
+                FootprintAnalyzer.REF * 3 + 4 * 3);
+
+        for (int idx = 0; idx < this.size; idx++) {
+            Entry entry = this.entries[slot(idx)];
+            result += entryBytes + taskBytes;
+            if (entry.task.isDone() && !entry.task.isCompletedAbnormally()) {
+                int[] breaks = entry.task.getRawResult();
+                if (breaks != null && breaks != NO_BREAKS) {
+                    result += FootprintAnalyzer.arrayBytes(breaks.length, 4);
+                }
+            }
+        }
+
+        return result;
+    }
+
+
+    /**
+     * Wrap spec.
+     *
+     * <p>Rows are broken where next char exceeds width,
+     * or at word boundary if wrapped at word boundaries.
+     * Char widths come from FontMetrics.
+     * Widths of ASCII chars are tabled at construction.
+     *
+     * <p>This is immutable.
+     */
+    static final class Spec {
+
+        private static final int ASCII = 128;
+        private static final int LATIN1 = 256;
+
+        private final FontMetrics metrics;
+        private final Font font;
+        private final FontRenderContext frc;
+        private final int width;
+        private final int tabSize;
+        private final boolean wordWrap;
+        private final int[] asciiWidths = new int[ASCII];
+
+
+        /**
+         * Constructor.
+         *
+         * <p>(EDT only.)
+         *
+         * @param metrics font metrics
+         * @param width wrap width
+         * @param tabSize tab width
+         * @param wordWrap true if wrapped at word boundaries
+         */
+        Spec(FontMetrics metrics, int width, int tabSize, boolean wordWrap) {
+            super();
+
+            this.metrics = metrics;
+            this.font = metrics.getFont();
+            this.frc = metrics.getFontRenderContext();
+            this.width = width;
+            this.tabSize = tabSize;
+            this.wordWrap = wordWrap;
+
+            for (int ch = 0; ch < ASCII; ch++) {
+                this.asciiWidths[ch] = metrics.charWidth((char) ch);
+            }
+
+            return;
+        }
+
+
+        /**
+         * Return end of row starting at position.
+         *
+         * <p>At least one char (or surrogate pair) is in the row.
+         *
+         * <p>Line end is never measured.
+         * But as WrappedPlainView does, line end gets its own row
+         * if word break falls just before it.
+         *
+         * @param text text
+         * @param from row start
+         * @param to paragraph end, including line end if any
+         * @return start of next row. to if rest of paragraph fits.
+         */
+        int rowEnd(CharSequence text, int from, int to) {
+            int end = to;
+            if (end > from && text.charAt(end - 1) == '\n') end--;
+
+            int xpos = 0;
+            int pos = from;
+
+            while (pos < end) {
+                int nextX = charAdvance(text, pos, end, xpos);
+                if (nextX > this.width) break;
+
+                xpos = nextX;
+                pos = charEnd(text, pos, end);
+            }
+
+            if (pos >= end) return to;
+
+            if (this.wordWrap) {
+                int wordEnd = wordBreak(text, from, end, pos);
+                if (wordEnd > from) return wordEnd;
+            }
+
+            if (pos == from) return charEnd(text, from, end);
+
+            return pos;
+        }
+
+        /**
+         * Return x position after char.
+         *
+         * <p>Tab advances to next tab stop.
+         * Surrogate pair is measured as one code point.
+         *
+         * @param text text
+         * @param pos char position
+         * @param to paragraph end, excluding line end
+         * @param xpos x position before char
+         * @return x position after char
+         */
+        private int charAdvance(CharSequence text, int pos, int to, int xpos) {
+            char ch = text.charAt(pos);
+
+            if (ch == '\t') {
+                if (this.tabSize <= 0) return xpos;
+                return xpos + this.tabSize - xpos % this.tabSize;
+            }
+            if (ch < ASCII) {
+                return xpos + this.asciiWidths[ch];
+            }
+
+            int next = pos + 1;
+            if (Character.isHighSurrogate(ch) && next < to
+                    && Character.isLowSurrogate(text.charAt(next))) {
+                int codePoint = Character.toCodePoint(ch, text.charAt(next));
+                return xpos + this.metrics.charWidth(codePoint);
+            }
+
+            return xpos + this.metrics.charWidth(ch);
+        }
+
+        /**
+         * Return end of char.
+         *
+         * @param text text
+         * @param pos char position
+         * @param to paragraph end, excluding line end
+         * @return end of char. After low surrogate if surrogate pair.
+         */
+        private static int charEnd(CharSequence text, int pos, int to) {
+            int result = pos + 1;
+            if (Character.isHighSurrogate(text.charAt(pos)) && result < to
+                    && Character.isLowSurrogate(text.charAt(result))) {
+                result++;
+            }
+            return result;
+        }
+
+        /**
+         * Return word break of row.
+         *
+         * <p>Same rule as Swing wrapped views:
+         * row breaks after last whitespace up to first overflowing char.
+         * If multibyte char is found first, BreakIterator is used.
+         *
+         * @param text text
+         * @param from row start
+         * @param to paragraph end, excluding line end
+         * @param over first overflowing char
+         * @return start of next row. from if no break.
+         */
+        private static int wordBreak(
+                CharSequence text, int from, int to, int over) {
+            for (int idx = over; idx >= from; idx--) {
+                char ch = text.charAt(idx);
+                if (ch >= LATIN1) {
+                    BreakIterator bit = BreakIterator.getLineInstance();
+                    bit.setText(text.subSequence(from, to).toString());
+                    int brk = bit.preceding(idx - from + 1);
+                    if (brk > 0) return from + brk;
+                    return from;
+                }
+                if (Character.isWhitespace(ch)) return idx + 1;
+            }
+            return from;
+        }
+
+        /**
+         * {@inheritDoc}
+         *
+         * @param obj {@inheritDoc}
+         * @return {@inheritDoc}
+         */
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) return true;
+            if (!(obj instanceof Spec)) return false;
+
+            Spec other = (Spec) obj;
+            if (this.width != other.width) return false;
+            if (this.tabSize != other.tabSize) return false;
+            if (this.wordWrap != other.wordWrap) return false;
+            if (!this.font.equals(other.font)) return false;
+
+            return this.frc.equals(other.frc);
+        }
+
+        /**
+         * {@inheritDoc}
+         *
+         * @return {@inheritDoc}
+         */
+        @Override
+        public int hashCode() {
+            return Objects.hash(this.font, this.width, this.tabSize);
+        }
+
+    }
+
+
+    /**
+     * Measured range of appended text.
+     */
+    private static final class Entry {
+
+        /** Absolute start position. Paragraph start. */
+        private final long start;
+        /** Absolute end position (exclusive). After line end. */
+        private final long end;
+        /** Absolute position of text head. */
+        private final long base;
+        /** Soft breaks relative to text head. */
+        private final ForkJoinTask<int[]> task;
+
+
+        /**
+         * Constructor.
+         *
+         * @param start absolute start position
+         * @param end absolute end position (exclusive)
+         * @param base absolute position of text head
+         * @param task measuring task
+         */
+        Entry(long start, long end, long base, ForkJoinTask<int[]> task) {
+            super();
+
+            this.start = start;
+            this.end = end;
+            this.base = base;
+            this.task = task;
+
+            return;
+        }
+
+    }
+
+
+    /**
+     * Measuring task of text range.
+     *
+     * <p>Large range is split at line end, and measured in parallel.
+     * Result is sorted soft breaks relative to text head.
+     */
+    @SuppressWarnings("serial")
+    private static final class Measure extends RecursiveTask<int[]> {
+
+        private final Spec spec;
+        private final int from;
+        private final int to;
+        private String text;
+
+
+        /**
+         * Constructor.
+         *
+         * @param spec wrap spec
+         * @param text text
+         * @param from start of range. Paragraph start.
+         * @param to end of range (exclusive). After line end.
+         */
+        Measure(Spec spec, String text, int from, int to) {
+            super();
+
+            this.spec = spec;
+            this.text = text;
+            this.from = from;
+            this.to = to;
+
+            return;
+        }
+
+
+        /**
+         * {@inheritDoc}
+         *
+         * @return {@inheritDoc}
+         */
+        @Override
+        protected int[] compute() {
+            String src = this.text;
+            this.text = null;
+
+            int[] result;
+            int mid = -1;
+            if (this.to - this.from > SPLIT_CHARS) {
+                mid = src.indexOf('\n', (this.from + this.to) >>> 1) + 1;
+            }
+
+            if (this.from < mid && mid < this.to) {
+                Measure left = new Measure(this.spec, src, this.from, mid);
+                Measure right = new Measure(this.spec, src, mid, this.to);
+                left.fork();
+                int[] rightBreaks = right.compute();
+                int[] leftBreaks = left.join();
+
+                result = Arrays.copyOf(leftBreaks,
+                        leftBreaks.length + rightBreaks.length);
+                System.arraycopy(rightBreaks, 0,
+                        result, leftBreaks.length, rightBreaks.length);
+            } else {
+                result = measure(src);
+            }
+
+            return result;
+        }
+
+        /**
+         * Measure paragraphs of range.
+         *
+         * @param src text
+         * @return soft breaks
+         */
+        private int[] measure(String src) {
+            int[] result = NO_BREAKS;
+            int num = 0;
+
+            int paraStart = this.from;
+            while (paraStart < this.to) {
+                int paraEnd = src.indexOf('\n', paraStart) + 1;
+                if (paraEnd <= 0 || paraEnd > this.to) paraEnd = this.to;
+
+                int rowStart = paraStart;
+                while (true) {
+                    int rowEnd = this.spec.rowEnd(src, rowStart, paraEnd);
+                    if (rowEnd >= paraEnd) break;
+
+                    if (num >= result.length) {
+                        result = Arrays.copyOf(result, num * 2 + 8);
+                    }
+                    result[num++] = rowEnd;
+                    rowStart = rowEnd;
+                }
+
+                paraStart = paraEnd;
+            }
+
+            return Arrays.copyOf(result, num);
+        }
+
+    }
+
+
+    /**
+     * Document modification watcher.
+     */
+    private class Watcher implements DocumentListener {
+
+        /**
+         * Constructor.
+         */
+        Watcher() {
+            super();
+            return;
+        }
+
+
+        /**
+         * {@inheritDoc}
+         *
+         * <p>Appended text is measured.
+         * Insertion at the head unchops positions.
+         * Other insertion clears all entries.
+         *
+         * @param ev {@inheritDoc}
+         */
+        @Override
+        public void insertUpdate(DocumentEvent ev) {
+            Document doc = ev.getDocument();
+            int offset = ev.getOffset();
+            int len = ev.getLength();
+
+            if (offset + len == doc.getLength()) {
+                mirrorInsert(doc, offset, len);
+            } else if (offset == 0) {
+                cancelOffer();
+                unchopHead(len);
+            } else {
+                cancelOffer();
+                clear();
+            }
+
+            return;
+        }
+
+        /**
+         * {@inheritDoc}
+         *
+         * <p>Removal except from head clears all entries.
+         *
+         * @param ev {@inheritDoc}
+         */
+        @Override
+        public void removeUpdate(DocumentEvent ev) {
+            if (ev.getOffset() == 0) {
+                chopHead(ev.getLength());
+            } else {
+                clear();
+            }
+            return;
+        }
+
+        /**
+         * {@inheritDoc}
+         *
+         * @param ev {@inheritDoc}
+         */
+        @Override
+        public void changedUpdate(DocumentEvent ev) {
+            return;
+        }
+
+    }
+
+}
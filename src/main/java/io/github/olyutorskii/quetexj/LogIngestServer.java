@@ -0,0 +1,612 @@
+/*
+ * License : The MIT License
+ * Copyright(c) 2019 Olyutorskii
+ */
+
+package io.github.olyutorskii.quetexj;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.ErrorManager;
+
+/**
+ * Loopback TCP ingestion server of log text from other processes.
+ *
+ * <p>Single thread serves all connections by NIO Selector.
+ * Received text is appended to SwingLogHandler,
+ * so it goes through same queue and batched transfer as records.
+ *
+ * <p>Protocol: each frame is byte length (big-endian int)
+ * followed by UTF-8 text.
+ * First frame of connection is source name.
+ * Each line of following frames is prefixed with "[source] ".
+ * Frame longer than buffer size closes connection.
+ *
+ * <p>Each connection has reusable direct buffer from pool.
+ * All frames received by one read become one append.
+ *
+ * <p>Each connection has budget of text in flight,
+ * appended to handler but not yet transferred to Document.
+ * Budget is four times buffer size in chars.
+ * While text in flight of connection reaches its budget,
+ * only that connection is not read.
+ * Then TCP flow control blocks its writing client,
+ * while other clients keep writing.
+ *
+ * <p>Only loopback address is bound.
+ *
+ * <p>This is thread-safe.
+ */
+public final class LogIngestServer implements Closeable {
+
+    /** Default buffer size per connection (bytes). */
+    public static final int DEF_BUFFER_SIZE = 64 * 1024;
+
+    private static final int FRAME_HEAD = Integer.BYTES;
+    private static final int MIN_BUFFER_SIZE = 256;
+    private static final int POOL_LIMIT = 16;
+    private static final long PAUSE_POLL = 10L;  // msec
+    private static final int TEXT_RETAIN = 256 * 1024;
+    private static final int BUDGET_BUFFERS = 4;
+
+
+    private final SwingLogHandler handler;
+    private final ServerSocketChannel server;
+    private final Selector selector;
+    private final int bufferSize;
+    private final int sourceBudget;
+    private final Thread thread;
+
+    private volatile boolean closed;
+
+    /** Buffer pool. (Server thread only.) */
+    private final ArrayDeque<ByteBuffer> pool = new ArrayDeque<>();
+    private final CharsetDecoder decoder;
+    private final CharBuffer charBuf;
+    private final StringBuilder textBuf = new StringBuilder();
+    private boolean paused;
+
+    private final AtomicLong frameCount = new AtomicLong();
+    private final AtomicLong byteCount = new AtomicLong();
+    private final AtomicInteger connections = new AtomicInteger();
+
+
+    /**
+     * Constructor.
+     *
+     * @param handler log handler
+     * @param server bound server channel
+     * @param selector selector
+     * @param bufferSize buffer size per connection
+     */
+    private LogIngestServer(SwingLogHandler handler,
+            ServerSocketChannel server, Selector selector, int bufferSize) {
+        super();
+
+        this.handler = handler;
+        this.server = server;
+        this.selector = selector;
+        this.bufferSize = bufferSize;
+        this.sourceBudget = bufferSize * BUDGET_BUFFERS;
+
+        this.decoder = StandardCharsets.UTF_8.newDecoder().
+                onMalformedInput(CodingErrorAction.REPLACE).
+                onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.charBuf = CharBuffer.allocate(bufferSize);
+
+        this.thread = new Thread(this::serve, "LogIngestServer");
+        this.thread.setDaemon(true);
+
+        return;
+    }
+
+
+    /**
+     * Open server on loopback address.
+     *
+     * <p>Default buffer size is used.
+     *
+     * @param handler log handler
+     * @param port port number. 0 if ephemeral.
+     * @return server
+     * @throws IOException I/O error
+     */
+    public static LogIngestServer open(SwingLogHandler handler, int port)
+            throws IOException {
+        return open(handler, port, DEF_BUFFER_SIZE);
+    }
+
+    /**
+     * Open server on loopback address.
+     *
+     * @param handler log handler
+     * @param port port number. 0 if ephemeral.
+     * @param bufferSize buffer size per connection (bytes).
+     *     Max frame length is this minus 4.
+     * @return server
+     * @throws IOException I/O error
+     * @throws IllegalArgumentException too small buffer size
+     */
+    public static LogIngestServer open(
+            SwingLogHandler handler, int port, int bufferSize)
+            throws IOException, IllegalArgumentException {
+        if (bufferSize < MIN_BUFFER_SIZE) throw new IllegalArgumentException();
+
+        InetAddress loopback = InetAddress.getLoopbackAddress();
+        Selector selector = Selector.open();
+        ServerSocketChannel server;
+        try {
+            server = ServerSocketChannel.open();
+            try {
+                server.bind(new InetSocketAddress(loopback, port));
+                server.configureBlocking(false);
+                server.register(selector, SelectionKey.OP_ACCEPT);
+            } catch (IOException e) {
+                server.close();
+                throw e;
+            }
+        } catch (IOException e) {
+            selector.close();
+            throw e;
+        }
+
+        LogIngestServer result =
+                new LogIngestServer(handler, server, selector, bufferSize);
+        result.thread.start();
+
+        return result;
+    }
+
+    /**
+     * Return bound port number.
+     *
+     * @return port number
+     */
+    public int getPort() {
+        return this.server.socket().getLocalPort();
+    }
+
+    /**
+     * Return number of received text frames.
+     *
+     * <p>Source name frames are not counted.
+     *
+     * @return number of frames
+     */
+    public long getFrameCount() {
+        return this.frameCount.get();
+    }
+
+    /**
+     * Return number of received bytes.
+     *
+     * @return number of bytes
+     */
+    public long getByteCount() {
+        return this.byteCount.get();
+    }
+
+    /**
+     * Return number of current connections.
+     *
+     * @return number of connections
+     */
+    public int getConnectionCount() {
+        return this.connections.get();
+    }
+
+    /**
+     * Close server and all connections.
+     *
+     * <p>Text already received is kept in handler.
+     *
+     * @throws IOException I/O error
+     */
+    @Override
+    public void close() throws IOException {
+        this.closed = true;
+        this.selector.wakeup();
+
+        if (Thread.currentThread() != this.thread) {
+            try {
+                this.thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        return;
+    }
+
+    /**
+     * Server loop.
+     */
+    private void serve() {
+        try {
+            while (!this.closed) {
+                updatePause();
+                if (this.paused) {
+                    this.selector.select(PAUSE_POLL);
+                } else {
+                    this.selector.select();
+                }
+                dispatch();
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            if (!this.closed) {
+                this.handler.getErrorManager().error(
+                        "ingestion server stopped", e, ErrorManager.GENERIC_FAILURE);
+            }
+        } finally {
+            closeAll();
+        }
+
+        return;
+    }
+
+    /**
+     * Pause or resume reading of each connection by its text in flight.
+     *
+     * <p>Text transferred to Document is retired from flight first.
+     */
+    private void updatePause() {
+        long transferred = this.handler.getTransferredNum();
+        boolean anyPaused = false;
+
+        for (SelectionKey key : this.selector.keys()) {
+            if (!key.isValid()) continue;
+            if (!(key.attachment() instanceof Source)) continue;
+
+            Source src = (Source) key.attachment();
+            src.retire(transferred);
+            boolean over = src.getInFlight() >= this.sourceBudget;
+            if (over) anyPaused = true;
+            if (over == src.paused) continue;
+
+            src.paused = over;
+            int ops = 0;
+            if (!over) ops = SelectionKey.OP_READ;
+            key.interestOps(ops);
+        }
+
+        this.paused = anyPaused;
+
+        return;
+    }
+
+    /**
+     * Dispatch selected keys.
+     *
+     * @throws IOException I/O error of server channel
+     */
+    private void dispatch() throws IOException {
+        Iterator<SelectionKey> it = this.selector.selectedKeys().iterator();
+        while (it.hasNext()) {
+            SelectionKey key = it.next();
+            it.remove();
+            if (!key.isValid()) continue;
+
+            if (key.isAcceptable()) {
+                accept();
+            } else if (key.isReadable()) {
+                Source src = (Source) key.attachment();
+                try {
+                    read(src);
+                } catch (IOException e) {
+                    closeSource(key);
+                }
+            }
+        }
+        return;
+    }
+
+    /**
+     * Accept connection.
+     *
+     * @throws IOException I/O error of server channel
+     */
+    private void accept() throws IOException {
+        SocketChannel ch = this.server.accept();
+        if (ch == null) return;
+
+        ch.configureBlocking(false);
+
+        ByteBuffer buf = this.pool.pollFirst();
+        if (buf == null) buf = ByteBuffer.allocateDirect(this.bufferSize);
+
+        ch.register(this.selector, SelectionKey.OP_READ, new Source(ch, buf));
+        this.connections.incrementAndGet();
+
+        return;
+    }
+
+    /**
+     * Close connection.
+     *
+     * <p>Buffer returns to pool.
+     *
+     * @param key selection key
+     */
+    private void closeSource(SelectionKey key) {
+        key.cancel();
+        Source src = (Source) key.attachment();
+        try {
+            src.channel.close();
+        } catch (IOException e) {
+            // NOTHING
+        }
+
+        src.buffer.clear();
+        if (this.pool.size() < POOL_LIMIT) {
+            this.pool.offerFirst(src.buffer);
+        }
+        this.connections.decrementAndGet();
+
+        return;
+    }
+
+    /**
+     * Close server and all connections.
+     */
+    private void closeAll() {
+        for (SelectionKey key : this.selector.keys()) {
+            if (key.attachment() instanceof Source) {
+                closeSource(key);
+            }
+        }
+        try {
+            this.server.close();
+            this.selector.close();
+        } catch (IOException e) {
+            // NOTHING
+        }
+        this.pool.clear();
+        return;
+    }
+
+    /**
+     * Read frames from connection.
+     *
+     * <p>All complete frames are appended to handler at once.
+     *
+     * @param src source
+     * @throws IOException I/O error or protocol error
+     */
+    private void read(Source src) throws IOException {
+        ByteBuffer buf = src.buffer;
+        int readLen = src.channel.read(buf);
+        if (readLen < 0) throw new IOException("EOF");
+        this.byteCount.addAndGet(readLen);
+
+        buf.flip();
+        try {
+            while (buf.remaining() >= FRAME_HEAD) {
+                int pos = buf.position();
+                int frameLen = buf.getInt(pos);
+                if (frameLen < 0 || frameLen > buf.capacity() - FRAME_HEAD) {
+                    throw new IOException("illegal frame length");
+                }
+                if (buf.remaining() < FRAME_HEAD + frameLen) break;
+
+                buf.position(pos + FRAME_HEAD);
+                int oldLimit = buf.limit();
+                buf.limit(pos + FRAME_HEAD + frameLen);
+                decodeFrame(src, buf);
+                buf.limit(oldLimit);
+            }
+        } finally {
+            buf.compact();
+        }
+
+        flushText(src);
+
+        return;
+    }
+
+    /**
+     * Decode one frame.
+     *
+     * @param src source
+     * @param frame frame bytes
+     */
+    private void decodeFrame(Source src, ByteBuffer frame) {
+        CharBuffer chars = this.charBuf;
+        chars.clear();
+        this.decoder.reset();
+        this.decoder.decode(frame, chars, true);
+        this.decoder.flush(chars);
+        chars.flip();
+
+        if (src.prefix == null) {
+            src.setName(chars);
+            return;
+        }
+
+        this.frameCount.incrementAndGet();
+        appendLines(src.prefix, chars);
+
+        return;
+    }
+
+    /**
+     * Append lines with source prefix to text buffer.
+     *
+     * @param prefix source prefix
+     * @param chars decoded chars
+     */
+    private void appendLines(String prefix, CharBuffer chars) {
+        StringBuilder text = this.textBuf;
+        char[] array = chars.array();
+        int end = chars.limit();
+
+        int lineStart = 0;
+        while (lineStart < end) {
+            int lineEnd = lineStart;
+            while (lineEnd < end && array[lineEnd] != '\n') lineEnd++;
+
+            text.append(prefix);
+            text.append(array, lineStart, lineEnd - lineStart);
+            text.append('\n');
+
+            lineStart = lineEnd + 1;
+        }
+
+        return;
+    }
+
+    /**
+     * Append received text to handler.
+     *
+     * <p>Appended text is in flight of source until transferred.
+     *
+     * @param src source
+     */
+    private void flushText(Source src) {
+        StringBuilder text = this.textBuf;
+        if (text.length() <= 0) return;
+
+        this.handler.append(text);
+        src.addFlight(this.handler.getOfferedNum(), text.length());
+
+        text.setLength(0);
+        if (text.capacity() > TEXT_RETAIN) {
+            text.trimToSize();
+        }
+
+        return;
+    }
+
+
+    /**
+     * Connection source.
+     *
+     * <p>Text in flight is recorded with number of chunks offered
+     * to handler just after its append.
+     * It is retired when as many chunks are transferred.
+     */
+    private static final class Source {
+
+        private static final int DEF_FLIGHTS = 8;
+
+        private final SocketChannel channel;
+        private final ByteBuffer buffer;
+        private String prefix;
+        private boolean paused;
+
+        private long[] marks = new long[DEF_FLIGHTS];
+        private int[] lengths = new int[DEF_FLIGHTS];
+        private int head;
+        private int size;
+        private long inFlight;
+
+        /**
+         * Constructor.
+         *
+         * @param channel channel
+         * @param buffer receive buffer
+         */
+        Source(SocketChannel channel, ByteBuffer buffer) {
+            super();
+            this.channel = channel;
+            this.buffer = buffer;
+            return;
+        }
+
+        /**
+         * Set source name.
+         *
+         * <p>If empty, remote address is used.
+         *
+         * @param name source name
+         */
+        void setName(CharSequence name) {
+            String tag = name.toString().trim();
+            if (tag.isEmpty()) {
+                try {
+                    tag = String.valueOf(this.channel.getRemoteAddress());
+                } catch (IOException e) {
+                    tag = "?";
+                }
+            }
+            this.prefix = "[" + tag + "] ";
+            return;
+        }
+
+        /**
+         * Return chars in flight.
+         *
+         * @return number of chars
+         */
+        long getInFlight() {
+            return this.inFlight;
+        }
+
+        /**
+         * Add text in flight.
+         *
+         * @param mark number of offered chunks just after append
+         * @param len text length
+         */
+        void addFlight(long mark, int len) {
+            if (this.size >= this.marks.length) growFlights();
+
+            int tail = (this.head + this.size) % this.marks.length;
+            this.marks[tail] = mark;
+            this.lengths[tail] = len;
+            this.size++;
+            this.inFlight += len;
+
+            return;
+        }
+
+        /**
+         * Retire text already transferred.
+         *
+         * @param transferred number of transferred chunks
+         */
+        void retire(long transferred) {
+            while (this.size > 0 && this.marks[this.head] <= transferred) {
+                this.inFlight -= this.lengths[this.head];
+                this.head = (this.head + 1) % this.marks.length;
+                this.size--;
+            }
+            return;
+        }
+
+        /**
+         * Double capacity of flight records.
+         */
+        private void growFlights() {
+            int oldCap = this.marks.length;
+            long[] newMarks = new long[oldCap * 2];
+            int[] newLengths = new int[oldCap * 2];
+            for (int idx = 0; idx < this.size; idx++) {
+                int slot = (this.head + idx) % oldCap;
+                newMarks[idx] = this.marks[slot];
+                newLengths[idx] = this.lengths[slot];
+            }
+            this.marks = newMarks;
+            this.lengths = newLengths;
+            this.head = 0;
+            return;
+        }
+
+    }
+
+}
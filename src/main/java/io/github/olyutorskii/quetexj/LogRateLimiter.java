@@ -0,0 +1,333 @@
+/*
+ * License : The MIT License
+ * Copyright(c) 2019 Olyutorskii
+ */
+
+package io.github.olyutorskii.quetexj;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token-bucket rate limiter keyed by logger name.
+ *
+ * <p>Records from loggers whose names start with registered prefix
+ * share one bucket of the prefix rule. The longest prefix wins.
+ * Other loggers have their own bucket of default rule, if any.
+ *
+ * <p>Suppressed records are counted per bucket
+ * and reported as one summary line per bucket per summary interval.
+ * Summary is reported on the next logging after the interval elapsed.
+ *
+ * <p>This is thread-safe.
+ *
+ * @see SwingLogHandler#setRateLimiter(LogRateLimiter)
+ */
+public class LogRateLimiter {
+
+    /** Default summary interval (msec). */
+    public static final long DEF_SUMMARY_INTERVAL = 10_000L;
+
+    private static final int BUCKETS_SWEEP = 4096;
+    private static final double NANO_PER_SEC = 1.0e9;
+    private static final String LINE_SEP = System.lineSeparator();
+
+
+    private final Rule defRule;
+    private final List<Rule> prefixRules = new ArrayList<>();
+    private final Map<String, Bucket> nameBuckets = new HashMap<>();
+
+    private long summaryNanos;
+    private long lastSummary;
+
+
+    /**
+     * Constructor.
+     *
+     * <p>No default rule. Only prefix rules limit records.
+     */
+    public LogRateLimiter() {
+        super();
+        this.defRule = null;
+        this.summaryNanos =
+                TimeUnit.MILLISECONDS.toNanos(DEF_SUMMARY_INTERVAL);
+        this.lastSummary = System.nanoTime();
+        return;
+    }
+
+    /**
+     * Constructor.
+     *
+     * <p>Each logger not matched by prefix rules
+     * is limited by its own bucket.
+     *
+     * @param permitsPerSec default records per second
+     * @param burst default bucket size
+     * @throws IllegalArgumentException illegal argument
+     */
+    public LogRateLimiter(double permitsPerSec, int burst)
+            throws IllegalArgumentException {
+        super();
+        this.defRule = new Rule(null, permitsPerSec, burst);
+        this.summaryNanos =
+                TimeUnit.MILLISECONDS.toNanos(DEF_SUMMARY_INTERVAL);
+        this.lastSummary = System.nanoTime();
+        return;
+    }
+
+
+    /**
+     * Add prefix rule.
+     *
+     * <p>All loggers whose names start with prefix share one bucket.
+     *
+     * @param prefix logger name prefix
+     * @param permitsPerSec records per second
+     * @param burst bucket size
+     * @throws NullPointerException null prefix
+     * @throws IllegalArgumentException illegal argument
+     */
+    public synchronized void addPrefixRule(
+            String prefix, double permitsPerSec, int burst)
+            throws NullPointerException, IllegalArgumentException {
+        if (prefix == null) throw new NullPointerException();
+
+        Rule rule = new Rule(prefix, permitsPerSec, burst);
+
+        int pos = 0;
+        for (Rule other : this.prefixRules) {
+            if (other.prefix.length() < prefix.length()) break;
+            pos++;
+        }
+        this.prefixRules.add(pos, rule);
+
+        return;
+    }
+
+    /**
+     * Return summary interval.
+     *
+     * @return summary interval (msec)
+     */
+    public synchronized long getSummaryInterval() {
+        return TimeUnit.NANOSECONDS.toMillis(this.summaryNanos);
+    }
+
+    /**
+     * Set summary interval.
+     *
+     * @param msec summary interval (msec)
+     * @throws IllegalArgumentException non-positive interval
+     */
+    public synchronized void setSummaryInterval(long msec)
+            throws IllegalArgumentException {
+        if (msec <= 0) throw new IllegalArgumentException();
+        this.summaryNanos = TimeUnit.MILLISECONDS.toNanos(msec);
+        return;
+    }
+
+    /**
+     * Find bucket for logger name.
+     *
+     * @param loggerName logger name
+     * @return bucket. null if unlimited.
+     */
+    private Bucket findBucket(String loggerName) {
+        String name = loggerName;
+        if (name == null) name = "";
+
+        for (Rule rule : this.prefixRules) {
+            if (name.startsWith(rule.prefix)) return rule.shared;
+        }
+
+        if (this.defRule == null) return null;
+
+        Bucket bucket = this.nameBuckets.get(name);
+        if (bucket == null) {
+            bucket = new Bucket(name, this.defRule);
+            this.nameBuckets.put(name, bucket);
+        }
+
+        return bucket;
+    }
+
+    /**
+     * Try to take one permit for logger.
+     *
+     * @param loggerName logger name
+     * @param nowNanos current time by System.nanoTime()
+     * @return true if permitted
+     */
+    synchronized boolean tryAcquire(String loggerName, long nowNanos) {
+        Bucket bucket = findBucket(loggerName);
+        if (bucket == null) return true;
+        boolean result = bucket.tryAcquire(nowNanos);
+        return result;
+    }
+
+    /**
+     * Append summary lines of suppressed records.
+     *
+     * <p>If summary interval is not elapsed, do nothing.
+     *
+     * <p>Suppression counters are reset.
+     *
+     * @param nowNanos current time by System.nanoTime()
+     * @param buf output
+     * @return true if any summary is appended
+     */
+    synchronized boolean pollSummary(long nowNanos, StringBuilder buf) {
+        long elapsed = nowNanos - this.lastSummary;
+        if (elapsed < this.summaryNanos) return false;
+        this.lastSummary = nowNanos;
+
+        long sec = TimeUnit.NANOSECONDS.toSeconds(elapsed);
+        boolean result = false;
+
+        for (Rule rule : this.prefixRules) {
+            result |= rule.shared.pollSummary(sec, buf);
+        }
+
+        boolean sweep = this.nameBuckets.size() > BUCKETS_SWEEP;
+        Iterator<Bucket> it = this.nameBuckets.values().iterator();
+        while (it.hasNext()) {
+            Bucket bucket = it.next();
+            boolean reported = bucket.pollSummary(sec, buf);
+            result |= reported;
+            if (sweep && !reported) it.remove();
+        }
+
+        return result;
+    }
+
+
+    /**
+     * Limit rule.
+     */
+    private static final class Rule {
+
+        private final String prefix;
+        private final double permitsPerNano;
+        private final int burst;
+        private final Bucket shared;
+
+
+        /**
+         * Constructor.
+         *
+         * @param prefix logger name prefix. null if default rule
+         * @param permitsPerSec records per second
+         * @param burst bucket size
+         * @throws IllegalArgumentException illegal argument
+         */
+        Rule(String prefix, double permitsPerSec, int burst)
+                throws IllegalArgumentException {
+            super();
+
+            if (!(permitsPerSec > 0.0)) throw new IllegalArgumentException();
+            if (burst <= 0) throw new IllegalArgumentException();
+
+            this.prefix = prefix;
+            this.permitsPerNano = permitsPerSec / NANO_PER_SEC;
+            this.burst = burst;
+
+            if (prefix == null) {
+                this.shared = null;
+            } else {
+                this.shared = new Bucket(prefix + "*", this);
+            }
+
+            return;
+        }
+
+    }
+
+
+    /**
+     * Token bucket.
+     */
+    private static final class Bucket {
+
+        private final String label;
+        private final Rule rule;
+
+        private double tokens;
+        private long lastRefill;
+        private long suppressed;
+
+
+        /**
+         * Constructor.
+         *
+         * <p>Bucket is full.
+         *
+         * @param label summary label
+         * @param rule limit rule
+         */
+        Bucket(String label, Rule rule) {
+            super();
+            this.label = label;
+            this.rule = rule;
+            this.tokens = rule.burst;
+            this.lastRefill = System.nanoTime();
+            return;
+        }
+
+
+        /**
+         * Try to take one token.
+         *
+         * @param nowNanos current time
+         * @return true if taken
+         */
+        boolean tryAcquire(long nowNanos) {
+            long elapsed = nowNanos - this.lastRefill;
+            if (elapsed > 0) {
+                double refill = elapsed * this.rule.permitsPerNano;
+                this.tokens = Math.min(this.rule.burst, this.tokens + refill);
+                this.lastRefill = nowNanos;
+            }
+
+            if (this.tokens >= 1.0) {
+                this.tokens -= 1.0;
+                return true;
+            }
+
+            this.suppressed++;
+
+            return false;
+        }
+
+        /**
+         * Append summary line and reset suppression counter.
+         *
+         * <p>If nothing suppressed, do nothing.
+         *
+         * @param sec interval seconds
+         * @param buf output
+         * @return true if appended
+         */
+        boolean pollSummary(long sec, StringBuilder buf) {
+            if (this.suppressed <= 0) return false;
+
+            buf.append("[rate limit] ").
+                    append(this.suppressed).
+                    append(" records suppressed from \"").
+                    append(this.label).
+                    append("\" in last ").
+                    append(sec).
+                    append(" sec").
+                    append(LINE_SEP);
+
+            this.suppressed = 0;
+
+            return true;
+        }
+
+    }
+
+}
@@ -0,0 +1,187 @@
+/*
+ * License : The MIT License
+ * Copyright(c) 2019 Olyutorskii
+ */
+
+package io.github.olyutorskii.quetexj;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Immutable snapshot of retained log text.
+ *
+ * <p>Text consists of immutable chunks shared with SnapshotStore
+ * and other snapshots. No chars are copied by taking snapshot.
+ *
+ * <p>Snapshot never changes after Document is appended or chopped,
+ * so any thread can read it without locking.
+ *
+ * <p>Positions are Document offsets at snapshot time.
+ * Absolute stream position of offset 0 is
+ * {@link #getStreamPosition()}.
+ *
+ * <p>This is thread-safe.
+ *
+ * @see SnapshotStore#snapshot()
+ */
+public final class LogSnapshot implements CharSequence {
+
+    /** Chunks of empty text. */
+    static final String[] NO_CHUNKS = new String[0];
+    /** Start positions of empty text. */
+    static final long[] NO_STARTS = new long[0];
+
+
+    private final String[] chunks;
+    private final long[] starts;
+    private final long headPos;
+    private final long tailPos;
+
+
+    /**
+     * Constructor.
+     *
+     * @param chunks text chunks. Not copied.
+     * @param starts absolute start positions of chunks. Not copied.
+     * @param headPos absolute position of text head
+     * @param tailPos absolute position of text tail (exclusive)
+     */
+    LogSnapshot(String[] chunks, long[] starts, long headPos, long tailPos) {
+        super();
+
+        assert chunks.length == starts.length;
+        assert headPos <= tailPos;
+
+        this.chunks = chunks;
+        this.starts = starts;
+        this.headPos = headPos;
+        this.tailPos = tailPos;
+
+        return;
+    }
+
+
+    /**
+     * Return absolute stream position of text head.
+     *
+     * <p>This counts all chars chopped from head of Document
+     * since SnapshotStore was attached.
+     *
+     * @return stream position
+     */
+    public long getStreamPosition() {
+        return this.headPos;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return {@inheritDoc}
+     */
+    @Override
+    public int length() {
+        return (int) (this.tailPos - this.headPos);
+    }
+
+    /**
+     * Return chunk index containing absolute position.
+     *
+     * <p>Binary search.
+     *
+     * @param pos absolute position
+     * @return chunk index
+     */
+    private int chunkIndex(long pos) {
+        int idx = Arrays.binarySearch(this.starts, pos);
+        if (idx < 0) idx = -idx - 2;
+        return idx;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param index {@inheritDoc}
+     * @return {@inheritDoc}
+     * @throws IndexOutOfBoundsException {@inheritDoc}
+     */
+    @Override
+    public char charAt(int index) throws IndexOutOfBoundsException {
+        if (index < 0 || length() <= index) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        long pos = this.headPos + index;
+        int idx = chunkIndex(pos);
+        char result = this.chunks[idx].charAt((int) (pos - this.starts[idx]));
+
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Result is also snapshot sharing chunks.
+     *
+     * @param start {@inheritDoc}
+     * @param end {@inheritDoc}
+     * @return {@inheritDoc}
+     * @throws IndexOutOfBoundsException {@inheritDoc}
+     */
+    @Override
+    public LogSnapshot subSequence(int start, int end)
+            throws IndexOutOfBoundsException {
+        if (start < 0 || end < start || length() < end) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        LogSnapshot result = new LogSnapshot(this.chunks, this.starts,
+                this.headPos + start, this.headPos + end);
+
+        return result;
+    }
+
+    /**
+     * Append text to Appendable.
+     *
+     * <p>Text is appended chunk by chunk.
+     *
+     * @param app output
+     * @throws IOException output error
+     */
+    public void appendTo(Appendable app) throws IOException {
+        if (this.headPos >= this.tailPos) return;
+
+        int first = chunkIndex(this.headPos);
+        int last = chunkIndex(this.tailPos - 1);
+
+        for (int idx = first; idx <= last; idx++) {
+            String chunk = this.chunks[idx];
+            long chunkStart = this.starts[idx];
+
+            long from = Long.max(this.headPos, chunkStart);
+            long to = Long.min(this.tailPos, chunkStart + chunk.length());
+
+            app.append(chunk, (int) (from - chunkStart), (int) (to - chunkStart));
+        }
+
+        return;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder(length());
+        try {
+            appendTo(result);
+        } catch (IOException e) {
+            assert false;
+        }
+        return result.toString();
+    }
+
+}
@@ -0,0 +1,345 @@
+/*
+ * License : The MIT License
+ * Copyright(c) 2019 Olyutorskii
+ */
+
+package io.github.olyutorskii.quetexj;
+
+/**
+ * Guard against too long line in chunk.
+ *
+ * <p>Line longer than max length is split or elided,
+ * so wrapped layout of one paragraph stays bounded
+ * and HeightKeeper can chop it.
+ *
+ * <p>Surrogate pair is never cut.
+ *
+ * <p>Style spans of chunk are shifted to guarded text.
+ * Spans within elided part are dropped.
+ *
+ * <p>Configuration is immutable. This is thread-safe.
+ */
+final class LongLineGuard {
+
+    private static final int RETAIN_CAPACITY = 64 * 1024;
+
+    private static final ThreadLocal<StringBuilder> BUFS =
+            ThreadLocal.withInitial(StringBuilder::new);
+    private static final ThreadLocal<Edits> EDITS =
+            ThreadLocal.withInitial(Edits::new);
+
+
+    private final int maxLength;
+    private final LongLinePolicy policy;
+    private final LongLineStore store;
+
+
+    /**
+     * Constructor.
+     *
+     * @param maxLength max line length
+     * @param policy treatment of long line
+     * @param store side store of elided lines
+     */
+    LongLineGuard(int maxLength, LongLinePolicy policy, LongLineStore store) {
+        super();
+
+        assert maxLength > 0;
+
+        this.maxLength = maxLength;
+        this.policy = policy;
+        this.store = store;
+
+        return;
+    }
+
+
+    /**
+     * Return max line length.
+     *
+     * @return max line length
+     */
+    int getMaxLength() {
+        return this.maxLength;
+    }
+
+    /**
+     * Return whether text contains too long line.
+     *
+     * @param buf text
+     * @param len text length
+     * @return true if contains
+     */
+    private boolean hasLongLine(char[] buf, int len) {
+        if (len <= this.maxLength) return false;
+
+        int lineLen = 0;
+        for (int idx = 0; idx < len; idx++) {
+            if (buf[idx] == '\n') {
+                lineLen = 0;
+            } else if (++lineLen > this.maxLength) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Return cut position which does not break surrogate pair.
+     *
+     * @param buf text
+     * @param pos desired cut position
+     * @param lineStart start position of line
+     * @return cut position
+     */
+    private static int safeCut(char[] buf, int pos, int lineStart) {
+        int result = pos;
+        if (result - 1 > lineStart && Character.isHighSurrogate(buf[result - 1])) {
+            result--;
+        }
+        return result;
+    }
+
+    /**
+     * Guard chunk text.
+     *
+     * <p>Style spans are shifted to guarded text.
+     *
+     * @param chunk text chunk
+     * @return true if text is modified
+     */
+    boolean guard(TextChunk chunk) {
+        char[] buf = chunk.getBuffer();
+        int len = chunk.length();
+        if (!hasLongLine(buf, len)) return false;
+
+        StringBuilder out = BUFS.get();
+        out.setLength(0);
+        Edits edits = EDITS.get();
+        edits.clear();
+
+        int lineStart = 0;
+        while (lineStart < len) {
+            int lineEnd = lineStart;
+            while (lineEnd < len && buf[lineEnd] != '\n') lineEnd++;
+
+            if (lineEnd - lineStart <= this.maxLength) {
+                out.append(buf, lineStart, lineEnd - lineStart);
+            } else if (this.policy == LongLinePolicy.ELIDE) {
+                elide(buf, lineStart, lineEnd, out, edits);
+            } else {
+                split(buf, lineStart, lineEnd, out, edits);
+            }
+
+            if (lineEnd < len) out.append('\n');
+            lineStart = lineEnd + 1;
+        }
+
+        chunk.truncate(0);
+        chunk.append(out, 0, out.length());
+        chunk.getStyles().remap(edits);
+
+        out.setLength(0);
+        if (out.capacity() > RETAIN_CAPACITY) {
+            out.trimToSize();
+        }
+        edits.clear();
+
+        return true;
+    }
+
+    /**
+     * Split long line into lines.
+     *
+     * @param buf text
+     * @param lineStart start position of line
+     * @param lineEnd end position of line (exclusive)
+     * @param out output
+     * @param edits edits of text
+     */
+    private void split(char[] buf, int lineStart, int lineEnd,
+            StringBuilder out, Edits edits) {
+        int pos = lineStart;
+        while (lineEnd - pos > this.maxLength) {
+            int cut = safeCut(buf, pos + this.maxLength, pos);
+            out.append(buf, pos, cut - pos).append('\n');
+            edits.add(cut, 0, 1);
+            pos = cut;
+        }
+        out.append(buf, pos, lineEnd - pos);
+        return;
+    }
+
+    /**
+     * Cut long line and append placeholder.
+     *
+     * <p>Whole line is kept in side store.
+     *
+     * @param buf text
+     * @param lineStart start position of line
+     * @param lineEnd end position of line (exclusive)
+     * @param out output
+     * @param edits edits of text
+     */
+    private void elide(char[] buf, int lineStart, int lineEnd,
+            StringBuilder out, Edits edits) {
+        String whole = new String(buf, lineStart, lineEnd - lineStart);
+        int id = this.store.put(whole);
+
+        int cut = safeCut(buf, lineStart + this.maxLength, lineStart);
+        out.append(buf, lineStart, cut - lineStart);
+        int phStart = out.length();
+        LongLineStore.appendPlaceholder(out, lineEnd - cut, id);
+        edits.add(cut, lineEnd - cut, out.length() - phStart);
+
+        return;
+    }
+
+
+    /**
+     * Edits of guarded text, in ascending order of position.
+     *
+     * <p>Each edit replaces chars with inserted chars.
+     * Positions of original text are mapped to guarded text.
+     * Mapped positions must be queried in ascending order
+     * after {@link #rewind()}.
+     *
+     * <p>Not thread-safe.
+     */
+    static final class Edits {
+
+        private static final int FIELDS = 3;
+        private static final int DEF_CAPACITY = 8;
+        private static final int RETAIN_CAPACITY = 1024;
+
+        private int[] data = new int[DEF_CAPACITY * FIELDS];
+        private int size;
+        private int cursor;
+        private int cursorDelta;
+
+
+        /**
+         * Constructor.
+         */
+        Edits() {
+            super();
+            return;
+        }
+
+
+        /**
+         * Add edit.
+         *
+         * @param pos position of original text
+         * @param removed number of removed chars
+         * @param inserted number of inserted chars
+         */
+        void add(int pos, int removed, int inserted) {
+            int at = this.size * FIELDS;
+            if (at + FIELDS > this.data.length) {
+                int[] newData = new int[this.data.length * 2];
+                System.arraycopy(this.data, 0, newData, 0, at);
+                this.data = newData;
+            }
+
+            this.data[at] = pos;
+            this.data[at + 1] = removed;
+            this.data[at + 2] = inserted;
+            this.size++;
+
+            return;
+        }
+
+        /**
+         * Remove all edits.
+         *
+         * <p>Over-grown buffer is released.
+         */
+        void clear() {
+            this.size = 0;
+            rewind();
+            if (this.data.length > RETAIN_CAPACITY * FIELDS) {
+                this.data = new int[DEF_CAPACITY * FIELDS];
+            }
+            return;
+        }
+
+        /**
+         * Restart ascending queries.
+         */
+        void rewind() {
+            this.cursor = 0;
+            this.cursorDelta = 0;
+            return;
+        }
+
+        /**
+         * Skip edits entirely before position.
+         *
+         * @param pos position of original text
+         */
+        private void advance(int pos) {
+            while (this.cursor < this.size) {
+                int at = this.cursor * FIELDS;
+                if (this.data[at] + this.data[at + 1] >= pos) break;
+                this.cursorDelta += this.data[at + 2] - this.data[at + 1];
+                this.cursor++;
+            }
+            return;
+        }
+
+        /**
+         * Map span start position.
+         *
+         * <p>Chars inserted at the position precede mapped start.
+         * Start within removed chars moves after inserted chars.
+         *
+         * @param pos position of original text
+         * @return position of guarded text
+         */
+        int mapStart(int pos) {
+            advance(pos);
+
+            int delta = this.cursorDelta;
+            for (int idx = this.cursor; idx < this.size; idx++) {
+                int at = idx * FIELDS;
+                int editPos = this.data[at];
+                int removed = this.data[at + 1];
+                int inserted = this.data[at + 2];
+                if (pos < editPos) break;
+                if (pos < editPos + removed) return editPos + delta + inserted;
+                delta += inserted - removed;
+            }
+
+            return pos + delta;
+        }
+
+        /**
+         * Map span end position.
+         *
+         * <p>Chars inserted at the position follow mapped end.
+         * End within removed chars moves before inserted chars.
+         *
+         * @param pos position of original text
+         * @return position of guarded text
+         */
+        int mapEnd(int pos) {
+            advance(pos);
+
+            int delta = this.cursorDelta;
+            for (int idx = this.cursor; idx < this.size; idx++) {
+                int at = idx * FIELDS;
+                int editPos = this.data[at];
+                int removed = this.data[at + 1];
+                if (pos <= editPos) break;
+                if (pos <= editPos + removed) return editPos + delta;
+                delta += this.data[at + 2] - removed;
+            }
+
+            return pos + delta;
+        }
+
+    }
+
+}
@@ -0,0 +1,24 @@
+/*
+ * License : The MIT License
+ * Copyright(c) 2019 Olyutorskii
+ */
+
+package io.github.olyutorskii.quetexj;
+
+/**
+ * Treatment of line longer than max line length.
+ *
+ * @see SwingLogHandler#setMaxLineLength(int)
+ */
+public enum LongLinePolicy {
+
+    /** Line is split into several lines. Whole content is shown. */
+    SPLIT,
+
+    /**
+     * Line is cut and followed by placeholder.
+     * Whole content is kept in LongLineStore.
+     */
+    ELIDE,
+
+}
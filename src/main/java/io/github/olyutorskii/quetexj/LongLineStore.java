@@ -0,0 +1,165 @@
+/*
+ * License : The MIT License
+ * Copyright(c) 2019 Olyutorskii
+ */
+
+package io.github.olyutorskii.quetexj;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Side store of elided long lines.
+ *
+ * <p>Elided line in Document is followed by placeholder
+ * which contains line ID.
+ * Whole content can be retrieved by ID on demand.
+ *
+ * <p>Only recent lines are kept.
+ *
+ * <p>This is thread-safe.
+ *
+ * @see LongLinePolicy#ELIDE
+ */
+public class LongLineStore {
+
+    /** Default number of kept lines. */
+    public static final int DEF_LIMIT = 16;
+
+    private static final String PH_HEAD = " ...[elided ";
+    private static final String PH_MID = " chars, long line #";
+    private static final String PH_TAIL = "]";
+    private static final Pattern PH_PATTERN = Pattern.compile(
+            Pattern.quote(PH_HEAD) + "[0-9]+" + Pattern.quote(PH_MID)
+            + "([0-9]+)" + Pattern.quote(PH_TAIL));
+
+
+    private final Map<Integer, String> lines;
+    private int nextId = 1;
+
+
+    /**
+     * Constructor.
+     *
+     * <p>Default number of lines are kept.
+     */
+    public LongLineStore() {
+        this(DEF_LIMIT);
+        return;
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param limit number of kept lines
+     * @throws IllegalArgumentException non-positive limit
+     */
+    public LongLineStore(int limit) throws IllegalArgumentException {
+        super();
+
+        if (limit <= 0) throw new IllegalArgumentException();
+
+        this.lines = new LinkedHashMap<Integer, String>() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(
+                    Map.Entry<Integer, String> eldest) {
+                return size() > limit;
+            }
+        };
+
+        return;
+    }
+
+
+    /**
+     * Parse line ID from placeholder.
+     *
+     * @param text text which may contain placeholder
+     * @return line ID. -1 if no placeholder.
+     */
+    public static int parseId(CharSequence text) {
+        Matcher matcher = PH_PATTERN.matcher(text);
+        if (!matcher.find()) return -1;
+
+        int result;
+        try {
+            result = Integer.parseInt(matcher.group(1));
+        } catch (NumberFormatException e) {
+            result = -1;
+        }
+
+        return result;
+    }
+
+    /**
+     * Append placeholder.
+     *
+     * @param buf output
+     * @param elided number of elided chars
+     * @param id line ID
+     */
+    static void appendPlaceholder(StringBuilder buf, int elided, int id) {
+        buf.append(PH_HEAD).append(elided).
+                append(PH_MID).append(id).
+                append(PH_TAIL);
+        return;
+    }
+
+    /**
+     * Keep line.
+     *
+     * <p>Oldest line is discarded if over limit.
+     *
+     * @param line whole line
+     * @return line ID
+     */
+    synchronized int put(String line) {
+        int id = this.nextId++;
+        this.lines.put(id, line);
+        return id;
+    }
+
+    /**
+     * Return kept line.
+     *
+     * @param id line ID
+     * @return whole line. null if discarded or unknown.
+     */
+    public synchronized String get(int id) {
+        return this.lines.get(id);
+    }
+
+    /**
+     * Estimate retained heap bytes.
+     *
+     * @return bytes
+     * @see FootprintAnalyzer
+     */
+    synchronized long estimateBytes() {
+        // LinkedHashMap entry and boxed key of each line
+        long entryBytes = FootprintAnalyzer.objectBytes(
+                FootprintAnalyzer.REF * 6 + 4)
+                + FootprintAnalyzer.objectBytes(4);
+
+        long result = FootprintAnalyzer.arrayBytes(
+                this.lines.size() * 2, FootprintAnalyzer.REF);
+        for (String line : this.lines.values()) {
+            result += entryBytes + FootprintAnalyzer.stringBytes(line);
+        }
+
+        return result;
+    }
+
+    /**
+     * Discard all kept lines.
+     */
+    public synchronized void clear() {
+        this.lines.clear();
+        return;
+    }
+
+}
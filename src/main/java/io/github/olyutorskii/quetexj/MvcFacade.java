@@ -5,13 +5,21 @@
 
 package io.github.olyutorskii.quetexj;
 
+import java.awt.EventQueue;
+import java.awt.FontMetrics;
+import java.awt.Rectangle;
 import javax.swing.Action;
 import javax.swing.BoundedRangeModel;
 import javax.swing.DefaultBoundedRangeModel;
 import javax.swing.JTextArea;
 import javax.swing.JToggleButton.ToggleButtonModel;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+import javax.swing.text.BadLocationException;
 import javax.swing.text.DefaultCaret;
+import javax.swing.text.DefaultHighlighter;
 import javax.swing.text.Document;
+import javax.swing.text.Highlighter;
 import javax.swing.text.PlainDocument;
 
 /**
@@ -30,6 +38,12 @@ public class MvcFacade {
 
     private final Action clearAction;
 
+    private WarmTier warmTier;
+    private final ChangeListener restoreWatcher = ev -> {
+        checkRestore(ev);
+    };
+    private boolean restorePending;
+
 
     /**
      * Constructor.
@@ -152,6 +166,283 @@ public ToggleButtonModel getTrackSwitchButtonModel() {
         return this.trackSwitchButtonModel;
     }
 
+    /**
+     * Set ANSI style rendering of text area.
+     *
+     * <p>If enabled, color spans made by ANSI-aware SwingLogHandler
+     * are rendered.
+     * If disabled, UI of current Look&amp;Feel is restored,
+     * or UI consuming precomputed line breaks if enabled.
+     *
+     * <p>Changing Look&amp;Feel disables rendering.
+     *
+     * <p>(EDT only.)
+     *
+     * @param enabled true if enabled
+     * @see SwingLogHandler#setAnsiEnabled(boolean)
+     */
+    public void setAnsiRendering(boolean enabled) {
+        boolean precompute = LineBreakCache.get(this.document) != null;
+
+        if (enabled) {
+            this.textArea.setUI(new AnsiTextAreaUI());
+        } else if (precompute) {
+            this.textArea.setUI(new CachedWrapTextAreaUI());
+        } else {
+            this.textArea.updateUI();
+        }
+
+        if (precompute) {
+            LineBreakCache.attach(this.document);
+        }
+
+        return;
+    }
+
+    /**
+     * Set line break precomputation of text area.
+     *
+     * <p>If enabled, appended text is measured on ForkJoinPool
+     * for current wrap width and font,
+     * and wrapped view consumes precomputed breaks.
+     * If width or font changes,
+     * whole document is measured again in parallel.
+     *
+     * <p>Changing Look&amp;Feel stops consuming precomputed breaks.
+     *
+     * <p>(EDT only.)
+     *
+     * @param enabled true if enabled
+     */
+    public void setLineBreakPrecompute(boolean enabled) {
+        if (enabled) {
+            if (!(this.textArea.getUI() instanceof CachedWrapTextAreaUI)) {
+                this.textArea.setUI(new CachedWrapTextAreaUI());
+            }
+            // AbstractDocument notifies listeners added later first.
+            LineBreakCache.attach(this.document);
+        } else {
+            LineBreakCache.detach(this.document);
+        }
+
+        this.textArea.revalidate();
+
+        return;
+    }
+
+    /**
+     * Set pattern highlight rendering of text area.
+     *
+     * <p>If enabled, highlight spans made by SwingLogHandler
+     * with HighlightRules are painted.
+     * Only spans in visible region are painted.
+     *
+     * <p>(EDT only.)
+     *
+     * @param enabled true if enabled
+     * @see SwingLogHandler#setHighlightRules(HighlightRules)
+     */
+    public void setHighlightRendering(boolean enabled) {
+        Highlighter highlighter;
+        if (enabled) {
+            highlighter = new SpanHighlighter();
+        } else {
+            highlighter = new DefaultHighlighter();
+        }
+        this.textArea.setHighlighter(highlighter);
+        return;
+    }
+
+    /**
+     * Return snapshot store of document.
+     *
+     * <p>Store is attached at first call.
+     * After that, consistent snapshots of retained text
+     * can be taken by any thread without document lock.
+     *
+     * <p>(EDT only.)
+     *
+     * @return snapshot store
+     */
+    public SnapshotStore getSnapshotStore() {
+        return SnapshotStore.attach(this.document);
+    }
+
+    /**
+     * Scroll to first record at or after time.
+     *
+     * <p>Record times are indexed by SwingLogHandler
+     * and trimmed along with head chopping by HeightKeeper.
+     * Record is found by binary search.
+     *
+     * <p>Tracking mode is turned off so that the view stays.
+     *
+     * <p>(EDT only.)
+     *
+     * @param millis time millis
+     * @return false if no such record
+     */
+    @SuppressWarnings("deprecation")
+    public boolean jumpToTime(long millis) {
+        TimeIndex index = TimeIndex.get(this.document);
+        if (index == null) return false;
+
+        int offset = index.search(millis);
+        if (offset < 0) return false;
+
+        Rectangle rect;
+        try {
+            rect = this.textArea.modelToView(offset);
+        } catch (BadLocationException e) {
+            assert false;
+            return false;
+        }
+        if (rect == null) return false;
+
+        this.maxTracker.setTrackingMode(false);
+        this.vertRangeModel.setValue(rect.y);
+
+        return true;
+    }
+
+    /**
+     * Restore text from persistent ring file to document.
+     *
+     * <p>Restored text is appended to document.
+     * Only last lines which fit height limit of HeightKeeper are read,
+     * because each line takes at least one row.
+     * Excess head of wrapped text will be chopped by HeightKeeper.
+     *
+     * <p>(EDT only.)
+     *
+     * @param ring ring file
+     */
+    public void restoreText(ConsoleRingFile ring) {
+        FontMetrics metrics =
+                this.textArea.getFontMetrics(this.textArea.getFont());
+        int rowHeight = Integer.max(1, metrics.getHeight());
+        int maxLines = this.heightKeeper.getHeightLimit() / rowHeight + 1;
+
+        String text = ring.restoreTail(maxLines);
+        if (text.isEmpty()) return;
+
+        try {
+            this.document.insertString(this.document.getLength(), text, null);
+        } catch (BadLocationException e) {
+            assert false;
+        }
+
+        return;
+    }
+
+    /**
+     * Set warm tier of chopped text.
+     *
+     * <p>Text chopped by HeightKeeper is kept compressed in warm tier.
+     * When vertical scroll reaches the top without tracking,
+     * newest history is restored to head of document block by block.
+     * The view stays at the same text after restoring.
+     *
+     * <p>(EDT only.)
+     *
+     * @param tier warm tier. null if chopped text is discarded.
+     */
+    public void setWarmTier(WarmTier tier) {
+        this.warmTier = tier;
+        this.heightKeeper.setWarmTier(tier);
+
+        this.vertRangeModel.removeChangeListener(this.restoreWatcher);
+        if (tier != null) {
+            this.vertRangeModel.addChangeListener(this.restoreWatcher);
+        }
+
+        return;
+    }
+
+    /**
+     * Check vertical scroll and schedule restoring from warm tier.
+     *
+     * @param ev event
+     */
+    private void checkRestore(ChangeEvent ev) {
+        if (this.restorePending) return;
+
+        WarmTier tier = this.warmTier;
+        if (tier == null || tier.isEmpty()) return;
+
+        if (!isScrolledToTop()) return;
+        if (this.maxTracker.isTrackingMode()) return;
+
+        this.restorePending = true;
+        EventQueue.invokeLater(() -> {
+            restoreWarmTier();
+        });
+
+        return;
+    }
+
+    /**
+     * Return whether scrollable view rests at the top.
+     *
+     * @return true if at the top and not adjusting
+     */
+    private boolean isScrolledToTop() {
+        BoundedRangeModel model = this.vertRangeModel;
+        if (model.getValueIsAdjusting()) return false;
+        if (model.getValue() > model.getMinimum()) return false;
+
+        int span = model.getMaximum() - model.getMinimum();
+        boolean result = model.getExtent() < span;
+
+        return result;
+    }
+
+    /**
+     * Restore newest history from warm tier to head of document.
+     *
+     * <p>View is adjusted after text component is laid out again.
+     */
+    private void restoreWarmTier() {
+        WarmTier tier = this.warmTier;
+        if (tier == null) {
+            this.restorePending = false;
+            return;
+        }
+
+        int restored = tier.restoreTo(this.document);
+        this.textArea.revalidate();
+
+        EventQueue.invokeLater(() -> {
+            keepViewAfterRestore(restored);
+            this.restorePending = false;
+        });
+
+        return;
+    }
+
+    /**
+     * Scroll to text shown before restoring.
+     *
+     * @param restored restored length
+     */
+    @SuppressWarnings("deprecation")
+    private void keepViewAfterRestore(int restored) {
+        if (restored <= 0) return;
+
+        Rectangle rect;
+        try {
+            rect = this.textArea.modelToView(restored);
+        } catch (BadLocationException e) {
+            assert false;
+            return;
+        }
+        if (rect == null) return;
+
+        this.vertRangeModel.setValue(rect.y);
+
+        return;
+    }
+
     /**
      * Return clear document Action.
      *
@@ -0,0 +1,112 @@
+/*
+ * License : The MIT License
+ * Copyright(c) 2019 Olyutorskii
+ */
+
+package io.github.olyutorskii.quetexj;
+
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import javax.swing.text.PlainDocument;
+
+/**
+ * Small document of recent priority records.
+ *
+ * <p>Only last records are kept. Oldest record is removed when over limit.
+ *
+ * <p>This document is independent of HeightKeeper chopping.
+ *
+ * <p>EDT only supported.
+ */
+final class PinnedRecords {
+
+    /** Default number of pinned records. */
+    static final int DEF_LIMIT = 16;
+
+
+    private final Document document;
+
+    /** Ring of record lengths. */
+    private final int[] recLengths;
+    private int recHead;
+    private int recNum;
+
+
+    /**
+     * Constructor.
+     *
+     * @param limit max number of records
+     * @throws IllegalArgumentException non-positive limit
+     */
+    PinnedRecords(int limit) throws IllegalArgumentException {
+        super();
+
+        if (limit <= 0) throw new IllegalArgumentException();
+
+        this.document = new PlainDocument();
+        this.recLengths = new int[limit];
+        this.recHead = 0;
+        this.recNum = 0;
+
+        return;
+    }
+
+
+    /**
+     * Return pinned document.
+     *
+     * @return document
+     */
+    Document getDocument() {
+        return this.document;
+    }
+
+    /**
+     * Add record text.
+     *
+     * <p>If over limit, oldest record is removed.
+     *
+     * @param chunk record text
+     */
+    void add(TextChunk chunk) {
+        int len = chunk.length();
+        if (len <= 0) return;
+
+        int limit = this.recLengths.length;
+        if (this.recNum >= limit) {
+            removeOldest();
+        }
+
+        String text = new String(chunk.getBuffer(), 0, len);
+        try {
+            this.document.insertString(this.document.getLength(), text, null);
+        } catch (BadLocationException e) {
+            assert false;
+        }
+
+        int tail = (this.recHead + this.recNum) % limit;
+        this.recLengths[tail] = len;
+        this.recNum++;
+
+        return;
+    }
+
+    /**
+     * Remove oldest record.
+     */
+    private void removeOldest() {
+        int len = this.recLengths[this.recHead];
+        this.recHead = (this.recHead + 1) % this.recLengths.length;
+        this.recNum--;
+
+        int docLen = this.document.getLength();
+        try {
+            this.document.remove(0, Integer.min(len, docLen));
+        } catch (BadLocationException e) {
+            assert false;
+        }
+
+        return;
+    }
+
+}
@@ -0,0 +1,483 @@
+/*
+ * License : The MIT License
+ * Copyright(c) 2019 Olyutorskii
+ */
+
+package io.github.olyutorskii.quetexj;
+
+import java.awt.EventQueue;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+import javax.swing.event.EventListenerList;
+
+/**
+ * Columnar ring store of structured log records.
+ *
+ * <p>Each record is kept in primitive columns:
+ * time millis, level index, interned logger ID, thread ID
+ * and reference of formatted message.
+ * So memory per record is fixed, and sorting or filtering
+ * by level, logger or thread never parses strings.
+ *
+ * <p>Like HeightKeeper, if number of records reaches limit,
+ * oldest records are chopped until new size.
+ *
+ * <p>Each record has serial number (sequence).
+ * Sequence of chopped record is never reused.
+ *
+ * <p>ChangeListeners are notified on EDT.
+ * Notifications are coalesced.
+ *
+ * <p>This is thread-safe.
+ *
+ * @see SwingLogHandler#setRecordColumns(RecordColumns)
+ * @see RecordTableModel
+ */
+public class RecordColumns {
+
+    /** Default records limit. */
+    public static final int DEF_LIMIT   = 100_000;
+    /** Default new size when over limit. */
+    public static final int DEF_NEWSIZE = 80_000;
+
+    private static final int MAX_LEVELS = Byte.MAX_VALUE + 1;
+    private static final Level[] STD_LEVELS = {
+        Level.OFF,
+        Level.SEVERE,
+        Level.WARNING,
+        Level.INFO,
+        Level.CONFIG,
+        Level.FINE,
+        Level.FINER,
+        Level.FINEST,
+        Level.ALL,
+    };
+
+
+    private final int limit;
+    private final int newSize;
+
+    private final long[] millis;
+    private final byte[] levels;
+    private final int[] loggers;
+    private final int[] threads;
+    private final String[] messages;
+
+    private int head;
+    private int size;
+    private long headSeq;
+
+    private final List<Level> levelTbl = new ArrayList<>();
+    private final Map<Level, Integer> levelMap = new HashMap<>();
+    private final List<String> loggerTbl = new ArrayList<>();
+    private final Map<String, Integer> loggerMap = new HashMap<>();
+
+    private final EventListenerList listenerList = new EventListenerList();
+    private final ChangeEvent changeEvent = new ChangeEvent(this);
+    private final AtomicBoolean notifyScheduled = new AtomicBoolean();
+
+
+    /**
+     * Constructor.
+     *
+     * <p>Default limit and new size are used.
+     */
+    public RecordColumns() {
+        this(DEF_LIMIT, DEF_NEWSIZE);
+        return;
+    }
+
+    /**
+     * Constructor.
+     *
+     * <ul>
+     * <li>newSizeArg must be positive integer value.
+     * <li>newSizeArg must be smaller than limitArg.
+     * </ul>
+     *
+     * @param limitArg records limit
+     * @param newSizeArg new size when over limit
+     * @throws IllegalArgumentException illegal integer argument
+     */
+    public RecordColumns(int limitArg, int newSizeArg)
+            throws IllegalArgumentException {
+        super();
+
+        if (newSizeArg <= 0) {
+            throw new IllegalArgumentException();
+        }
+        if (limitArg <= newSizeArg) {
+            throw new IllegalArgumentException();
+        }
+
+        this.limit = limitArg;
+        this.newSize = newSizeArg;
+
+        this.millis   = new long[limitArg];
+        this.levels   = new byte[limitArg];
+        this.loggers  = new int[limitArg];
+        this.threads  = new int[limitArg];
+        this.messages = new String[limitArg];
+
+        for (Level level : STD_LEVELS) {
+            internLevel(level);
+        }
+
+        return;
+    }
+
+
+    /**
+     * Return records limit.
+     *
+     * @return records limit
+     */
+    public int getLimit() {
+        return this.limit;
+    }
+
+    /**
+     * Return new size when over limit.
+     *
+     * @return new size
+     */
+    public int getNewSize() {
+        return this.newSize;
+    }
+
+    /**
+     * Add change listener.
+     *
+     * <p>Listener is notified on EDT after records are added or chopped.
+     *
+     * @param listener listener
+     */
+    public void addChangeListener(ChangeListener listener) {
+        this.listenerList.add(ChangeListener.class, listener);
+        return;
+    }
+
+    /**
+     * Remove change listener.
+     *
+     * @param listener listener
+     */
+    public void removeChangeListener(ChangeListener listener) {
+        this.listenerList.remove(ChangeListener.class, listener);
+        return;
+    }
+
+    /**
+     * Schedule coalesced notification on EDT.
+     */
+    private void scheduleNotify() {
+        if (this.listenerList.getListenerCount() <= 0) return;
+        if (!this.notifyScheduled.compareAndSet(false, true)) return;
+
+        EventQueue.invokeLater(() -> {
+            this.notifyScheduled.set(false);
+            fireStateChanged();
+        });
+
+        return;
+    }
+
+    /**
+     * Notify listeners. (EDT only.)
+     */
+    private void fireStateChanged() {
+        for (ChangeListener listener
+                : this.listenerList.getListeners(ChangeListener.class)) {
+            listener.stateChanged(this.changeEvent);
+        }
+        return;
+    }
+
+    /**
+     * Intern level.
+     *
+     * <p>Standard levels precede custom levels in table.
+     * Custom levels over table capacity are regarded as
+     * nearest lower standard level.
+     *
+     * @param level level
+     * @return level index
+     */
+    private int internLevel(Level level) {
+        Integer idx = this.levelMap.get(level);
+        if (idx != null) return idx;
+
+        if (this.levelTbl.size() >= MAX_LEVELS) {
+            int value = level.intValue();
+            for (int stdIdx = 0; stdIdx < STD_LEVELS.length; stdIdx++) {
+                if (STD_LEVELS[stdIdx].intValue() <= value) return stdIdx;
+            }
+            return STD_LEVELS.length - 1;
+        }
+
+        int result = this.levelTbl.size();
+        this.levelTbl.add(level);
+        this.levelMap.put(level, result);
+
+        return result;
+    }
+
+    /**
+     * Intern logger name.
+     *
+     * @param name logger name. null is regarded as empty.
+     * @return logger ID
+     */
+    private int internLogger(String name) {
+        String key = name;
+        if (key == null) key = "";
+
+        Integer idx = this.loggerMap.get(key);
+        if (idx != null) return idx;
+
+        int result = this.loggerTbl.size();
+        this.loggerTbl.add(key);
+        this.loggerMap.put(key, result);
+
+        return result;
+    }
+
+    /**
+     * Add record.
+     *
+     * <p>Oldest records are chopped if reaching limit.
+     *
+     * @param logRec log record
+     * @param message formatted message
+     */
+    public void add(LogRecord logRec, String message) {
+        synchronized (this) {
+            if (this.size >= this.limit) {
+                chopHead(this.size - this.newSize + 1);
+            }
+
+            int pos = toIndex(this.size);
+            this.millis[pos] = logRec.getMillis();
+            this.levels[pos] = (byte) internLevel(logRec.getLevel());
+            this.loggers[pos] = internLogger(logRec.getLoggerName());
+            this.threads[pos] = logRec.getThreadID();
+            this.messages[pos] = message;
+            this.size++;
+        }
+
+        scheduleNotify();
+
+        return;
+    }
+
+    /**
+     * Chop oldest records.
+     *
+     * @param num number of chopped records
+     */
+    private void chopHead(int num) {
+        for (int ct = 0; ct < num; ct++) {
+            this.messages[toIndex(ct)] = null;
+        }
+        this.head = toIndex(num);
+        this.size -= num;
+        this.headSeq += num;
+        return;
+    }
+
+    /**
+     * Discard all records.
+     *
+     * <p>Sequences are never reused.
+     */
+    public void clear() {
+        synchronized (this) {
+            chopHead(this.size);
+        }
+        scheduleNotify();
+        return;
+    }
+
+    /**
+     * Estimate retained heap bytes.
+     *
+     * <p>Level and logger tables are not counted.
+     *
+     * @return bytes
+     * @see FootprintAnalyzer
+     */
+    synchronized long estimateBytes() {
+        long result = 0L;
+        result += FootprintAnalyzer.arrayBytes(this.limit, 8);
+        result += FootprintAnalyzer.arrayBytes(this.limit, 1);
+        result += FootprintAnalyzer.arrayBytes(this.limit, 4) * 2;
+        result += FootprintAnalyzer.arrayBytes(
+                this.limit, FootprintAnalyzer.REF);
+
+        for (int ct = 0; ct < this.size; ct++) {
+            String message = this.messages[toIndex(ct)];
+            result += FootprintAnalyzer.stringBytes(message);
+        }
+
+        return result;
+    }
+
+    /**
+     * Convert relative position from head to array index.
+     *
+     * @param rel relative position
+     * @return array index
+     */
+    private int toIndex(int rel) {
+        int result = this.head + rel;
+        if (result >= this.limit) result -= this.limit;
+        return result;
+    }
+
+    /**
+     * Convert sequence to array index.
+     *
+     * @param seq sequence
+     * @return array index. -1 if chopped or not yet added.
+     */
+    private int seqToIndex(long seq) {
+        long rel = seq - this.headSeq;
+        if (rel < 0 || rel >= this.size) return -1;
+        return toIndex((int) rel);
+    }
+
+    /**
+     * Return sequence of oldest record.
+     *
+     * @return sequence
+     */
+    public synchronized long getHeadSeq() {
+        return this.headSeq;
+    }
+
+    /**
+     * Return sequence of next added record.
+     *
+     * @return sequence
+     */
+    public synchronized long getTailSeq() {
+        return this.headSeq + this.size;
+    }
+
+    /**
+     * Return number of records.
+     *
+     * @return number of records
+     */
+    public synchronized int size() {
+        return this.size;
+    }
+
+    /**
+     * Return time of record.
+     *
+     * @param seq sequence
+     * @return time millis. -1 if chopped.
+     */
+    public synchronized long getMillis(long seq) {
+        int idx = seqToIndex(seq);
+        if (idx < 0) return -1L;
+        return this.millis[idx];
+    }
+
+    /**
+     * Return level index of record.
+     *
+     * <p>Level index is interned level ID, not level value.
+     *
+     * @param seq sequence
+     * @return level index. -1 if chopped.
+     * @see #getLevelOf(int)
+     */
+    public synchronized int getLevelIndex(long seq) {
+        int idx = seqToIndex(seq);
+        if (idx < 0) return -1;
+        return this.levels[idx];
+    }
+
+    /**
+     * Return level of level index.
+     *
+     * @param levelIndex level index
+     * @return level
+     * @throws IndexOutOfBoundsException unknown level index
+     */
+    public synchronized Level getLevelOf(int levelIndex)
+            throws IndexOutOfBoundsException {
+        return this.levelTbl.get(levelIndex);
+    }
+
+    /**
+     * Return level of record.
+     *
+     * @param seq sequence
+     * @return level. null if chopped.
+     */
+    public synchronized Level getLevel(long seq) {
+        int idx = seqToIndex(seq);
+        if (idx < 0) return null;
+        return this.levelTbl.get(this.levels[idx]);
+    }
+
+    /**
+     * Return logger ID of record.
+     *
+     * @param seq sequence
+     * @return logger ID. -1 if chopped.
+     * @see #getLoggerNameOf(int)
+     */
+    public synchronized int getLoggerId(long seq) {
+        int idx = seqToIndex(seq);
+        if (idx < 0) return -1;
+        return this.loggers[idx];
+    }
+
+    /**
+     * Return logger name of logger ID.
+     *
+     * @param loggerId logger ID
+     * @return interned logger name
+     * @throws IndexOutOfBoundsException unknown logger ID
+     */
+    public synchronized String getLoggerNameOf(int loggerId)
+            throws IndexOutOfBoundsException {
+        return this.loggerTbl.get(loggerId);
+    }
+
+    /**
+     * Return thread ID of record.
+     *
+     * @param seq sequence
+     * @return thread ID. -1 if chopped.
+     */
+    public synchronized int getThreadId(long seq) {
+        int idx = seqToIndex(seq);
+        if (idx < 0) return -1;
+        return this.threads[idx];
+    }
+
+    /**
+     * Return formatted message of record.
+     *
+     * @param seq sequence
+     * @return message. null if chopped.
+     */
+    public synchronized String getMessage(long seq) {
+        int idx = seqToIndex(seq);
+        if (idx < 0) return null;
+        return this.messages[idx];
+    }
+
+}
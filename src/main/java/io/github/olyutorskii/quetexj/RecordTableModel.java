@@ -0,0 +1,306 @@
+/*
+ * License : The MIT License
+ * Copyright(c) 2019 Olyutorskii
+ */
+
+package io.github.olyutorskii.quetexj;
+
+import java.util.Comparator;
+import java.util.logging.Level;
+import javax.swing.RowFilter;
+import javax.swing.event.ChangeListener;
+import javax.swing.table.AbstractTableModel;
+import javax.swing.table.TableRowSorter;
+
+/**
+ * Virtualized TableModel of RecordColumns.
+ *
+ * <p>Cells are rendered from columns directly.
+ * No per-record row object exists.
+ *
+ * <p>Model rows follow RecordColumns on EDT.
+ * Chopped head records are notified as deleted rows,
+ * and added records as inserted rows.
+ *
+ * <p>Level column is sorted by level value,
+ * and level filter compares level index column,
+ * so neither touches strings.
+ *
+ * <p>Access only via EDT.
+ */
+@SuppressWarnings("serial")
+public class RecordTableModel extends AbstractTableModel {
+
+    /** Column index of time millis. */
+    public static final int COL_TIME    = 0;
+    /** Column index of level. */
+    public static final int COL_LEVEL   = 1;
+    /** Column index of logger name. */
+    public static final int COL_LOGGER  = 2;
+    /** Column index of thread ID. */
+    public static final int COL_THREAD  = 3;
+    /** Column index of message. */
+    public static final int COL_MESSAGE = 4;
+
+    private static final String[] COL_NAMES = {
+        "Time", "Level", "Logger", "Thread", "Message",
+    };
+    private static final Class<?>[] COL_CLASSES = {
+        Long.class, Level.class, String.class, Integer.class, String.class,
+    };
+
+    private static final Comparator<Level> LEVEL_COMPARATOR =
+            Comparator.comparingInt(Level::intValue);
+
+
+    private final RecordColumns columns;
+    private final ChangeListener syncListener;
+
+    private long viewHeadSeq;
+    private long viewTailSeq;
+
+
+    /**
+     * Constructor.
+     *
+     * @param columns record columns
+     */
+    public RecordTableModel(RecordColumns columns) {
+        super();
+
+        this.columns = columns;
+        this.syncListener = ev -> {
+            sync();
+        };
+        this.columns.addChangeListener(this.syncListener);
+
+        this.viewHeadSeq = columns.getHeadSeq();
+        this.viewTailSeq = columns.getTailSeq();
+
+        return;
+    }
+
+
+    /**
+     * Return record columns.
+     *
+     * @return record columns
+     */
+    public RecordColumns getRecordColumns() {
+        return this.columns;
+    }
+
+    /**
+     * Stop following RecordColumns.
+     */
+    public void dispose() {
+        this.columns.removeChangeListener(this.syncListener);
+        return;
+    }
+
+    /**
+     * Follow chopping and adding of RecordColumns.
+     */
+    private void sync() {
+        long headSeq;
+        long tailSeq;
+        synchronized (this.columns) {
+            headSeq = this.columns.getHeadSeq();
+            tailSeq = this.columns.getTailSeq();
+        }
+
+        long oldHead = this.viewHeadSeq;
+        long oldTail = this.viewTailSeq;
+
+        if (oldTail > oldHead && headSeq >= oldTail) {
+            this.viewHeadSeq = headSeq;
+            this.viewTailSeq = tailSeq;
+            fireTableDataChanged();
+            return;
+        }
+
+        if (headSeq > oldHead) {
+            this.viewHeadSeq = headSeq;
+            if (oldTail < headSeq) {
+                this.viewTailSeq = headSeq;
+            } else {
+                fireTableRowsDeleted(0, (int) (headSeq - oldHead - 1));
+            }
+        }
+
+        if (tailSeq > this.viewTailSeq) {
+            int first = getRowCount();
+            this.viewTailSeq = tailSeq;
+            fireTableRowsInserted(first, getRowCount() - 1);
+        }
+
+        return;
+    }
+
+    /**
+     * Return sequence of row.
+     *
+     * @param row row index of model
+     * @return sequence
+     */
+    public long getSeqAt(int row) {
+        return this.viewHeadSeq + row;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return {@inheritDoc}
+     */
+    @Override
+    public int getRowCount() {
+        return (int) (this.viewTailSeq - this.viewHeadSeq);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return {@inheritDoc}
+     */
+    @Override
+    public int getColumnCount() {
+        return COL_NAMES.length;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param columnIndex {@inheritDoc}
+     * @return {@inheritDoc}
+     */
+    @Override
+    public String getColumnName(int columnIndex) {
+        return COL_NAMES[columnIndex];
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param columnIndex {@inheritDoc}
+     * @return {@inheritDoc}
+     */
+    @Override
+    public Class<?> getColumnClass(int columnIndex) {
+        return COL_CLASSES[columnIndex];
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Cell of record chopped after last notification is null.
+     *
+     * @param rowIndex {@inheritDoc}
+     * @param columnIndex {@inheritDoc}
+     * @return {@inheritDoc}
+     */
+    @Override
+    public Object getValueAt(int rowIndex, int columnIndex) {
+        long seq = getSeqAt(rowIndex);
+        RecordColumns cols = this.columns;
+
+        Object result;
+        switch (columnIndex) {
+        case COL_TIME:
+            long millis = cols.getMillis(seq);
+            if (millis < 0) return null;
+            result = millis;
+            break;
+        case COL_LEVEL:
+            result = cols.getLevel(seq);
+            break;
+        case COL_LOGGER:
+            int loggerId = cols.getLoggerId(seq);
+            if (loggerId < 0) return null;
+            result = cols.getLoggerNameOf(loggerId);
+            break;
+        case COL_THREAD:
+            int threadId = cols.getThreadId(seq);
+            if (threadId < 0) return null;
+            result = threadId;
+            break;
+        case COL_MESSAGE:
+            result = cols.getMessage(seq);
+            break;
+        default:
+            throw new IndexOutOfBoundsException();
+        }
+
+        return result;
+    }
+
+    /**
+     * Create row sorter of this model.
+     *
+     * <p>Level column is sorted by level value.
+     *
+     * @return row sorter
+     */
+    public TableRowSorter<RecordTableModel> createRowSorter() {
+        TableRowSorter<RecordTableModel> result = new TableRowSorter<>(this);
+        result.setComparator(COL_LEVEL, LEVEL_COMPARATOR);
+        return result;
+    }
+
+    /**
+     * Create row filter of minimum level.
+     *
+     * <p>Level index column is compared. Strings are never touched.
+     *
+     * @param minLevel minimum level
+     * @return row filter
+     */
+    public RowFilter<RecordTableModel, Integer> createLevelFilter(
+            Level minLevel) {
+        RowFilter<RecordTableModel, Integer> result =
+                new LevelFilter(this.columns, minLevel.intValue());
+        return result;
+    }
+
+
+    /**
+     * Row filter of minimum level.
+     */
+    private static final class LevelFilter
+            extends RowFilter<RecordTableModel, Integer> {
+
+        private final RecordColumns columns;
+        private final int minValue;
+
+
+        /**
+         * Constructor.
+         *
+         * @param columns record columns
+         * @param minValue minimum level value
+         */
+        LevelFilter(RecordColumns columns, int minValue) {
+            super();
+            this.columns = columns;
+            this.minValue = minValue;
+            return;
+        }
+
+
+        /**
+         * {@inheritDoc}
+         *
+         * @param entry {@inheritDoc}
+         * @return {@inheritDoc}
+         */
+        @Override
+        public boolean include(
+                Entry<? extends RecordTableModel, ? extends Integer> entry) {
+            long seq = entry.getModel().getSeqAt(entry.getIdentifier());
+            int levelIdx = this.columns.getLevelIndex(seq);
+            if (levelIdx < 0) return false;
+            return this.columns.getLevelOf(levelIdx).intValue() >= this.minValue;
+        }
+
+    }
+
+}
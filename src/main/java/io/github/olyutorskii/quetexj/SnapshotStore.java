@@ -0,0 +1,508 @@
+/*
+ * License : The MIT License
+ * Copyright(c) 2019 Olyutorskii
+ */
+
+package io.github.olyutorskii.quetexj;
+
+import java.util.Arrays;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+
+/**
+ * Source of consistent read-only snapshots of append-only Document.
+ *
+ * <p>Retained text is mirrored as ring of immutable chunks.
+ * Appended text becomes new chunk without copying.
+ * Only when ring is full, adjacent small chunks are merged,
+ * and ring grows if merging frees few slots.
+ * Chunks entirely chopped from head are dropped.
+ *
+ * <p>Taking snapshot copies only chunk references under short lock,
+ * so background threads can read retained text
+ * without Document read lock,
+ * while EDT keeps appending and chopping.
+ *
+ * <p>Insertion at head of Document, such as restoring chopped text,
+ * prepends chunk and moves head position back.
+ * Insertion elsewhere except at the end of Document,
+ * or removal except from head of Document,
+ * rebuilds chunks from whole Document text.
+ *
+ * <p>Store is attached to Document as its property.
+ *
+ * @see MvcFacade#getSnapshotStore()
+ */
+public final class SnapshotStore {
+
+    /** Document property key of snapshot store. */
+    static final String STORE_KEY = "io.github.olyutorskii.quetexj.snapshots";
+
+    private static final int DEF_CAPACITY = 64;
+    private static final int MERGE_LIMIT = 4 * 1024;
+
+
+    /** Guarded by this. */
+    private String[] chunks;
+    /** Absolute start positions of chunks. Guarded by this. */
+    private long[] starts;
+    private int head;
+    private int size;
+    private long headPos;
+    private long tailPos;
+
+    /** Text offered before insertion. (EDT only.) */
+    private String offered;
+
+    private final Watcher watcher = new Watcher();
+
+
+    /**
+     * Constructor.
+     */
+    private SnapshotStore() {
+        super();
+
+        this.chunks = new String[DEF_CAPACITY];
+        this.starts = new long[DEF_CAPACITY];
+
+        return;
+    }
+
+
+    /**
+     * Return snapshot store attached to Document.
+     *
+     * @param doc document
+     * @return snapshot store. null if none.
+     */
+    static SnapshotStore get(Document doc) {
+        Object prop = doc.getProperty(STORE_KEY);
+        if (prop instanceof SnapshotStore) {
+            return (SnapshotStore) prop;
+        }
+        return null;
+    }
+
+    /**
+     * Return snapshot store attached to Document.
+     *
+     * <p>If none, new store is attached,
+     * which mirrors current text of Document.
+     *
+     * <p>(EDT only.)
+     *
+     * @param doc document
+     * @return snapshot store
+     */
+    public static SnapshotStore attach(Document doc) {
+        SnapshotStore result = get(doc);
+        if (result != null) return result;
+
+        result = new SnapshotStore();
+        result.reload(doc);
+        doc.addDocumentListener(result.watcher);
+        doc.putProperty(STORE_KEY, result);
+
+        return result;
+    }
+
+    /**
+     * Take snapshot of retained text.
+     *
+     * <p>This is thread-safe.
+     *
+     * @return snapshot
+     */
+    public LogSnapshot snapshot() {
+        String[] snapChunks;
+        long[] snapStarts;
+        long snapHead;
+        long snapTail;
+
+        synchronized (this) {
+            snapHead = this.headPos;
+            snapTail = this.tailPos;
+
+            if (this.size <= 0) {
+                return new LogSnapshot(LogSnapshot.NO_CHUNKS, LogSnapshot.NO_STARTS,
+                        snapHead, snapTail);
+            }
+
+            snapChunks = new String[this.size];
+            snapStarts = new long[this.size];
+            int firstLen = Integer.min(this.size, this.chunks.length - this.head);
+            System.arraycopy(this.chunks, this.head, snapChunks, 0, firstLen);
+            System.arraycopy(this.chunks, 0,
+                    snapChunks, firstLen, this.size - firstLen);
+            System.arraycopy(this.starts, this.head, snapStarts, 0, firstLen);
+            System.arraycopy(this.starts, 0,
+                    snapStarts, firstLen, this.size - firstLen);
+        }
+
+        LogSnapshot result =
+                new LogSnapshot(snapChunks, snapStarts, snapHead, snapTail);
+
+        return result;
+    }
+
+    /**
+     * Offer text about to be appended to Document.
+     *
+     * <p>Offered text is used as chunk as is,
+     * instead of copying it from Document.
+     *
+     * <p>(EDT only.)
+     *
+     * @param text text
+     */
+    void offer(String text) {
+        this.offered = text;
+        return;
+    }
+
+    /**
+     * Convert chunk index to ring slot.
+     *
+     * @param idx chunk index
+     * @return slot
+     */
+    private int slot(int idx) {
+        int result = this.head + idx;
+        if (result >= this.chunks.length) result -= this.chunks.length;
+        return result;
+    }
+
+    /**
+     * Append text chunk.
+     *
+     * <p>Text is kept as is.
+     * If ring is full, small chunks are merged first,
+     * and ring grows if more than half of slots are still used.
+     *
+     * @param text text
+     */
+    private synchronized void append(String text) {
+        int textLen = text.length();
+        if (textLen <= 0) return;
+
+        if (this.size >= this.chunks.length) {
+            merge();
+            if (this.size > this.chunks.length / 2) grow();
+        }
+
+        int tail = slot(this.size);
+        this.chunks[tail] = text;
+        this.starts[tail] = this.tailPos;
+        this.size++;
+        this.tailPos += textLen;
+
+        return;
+    }
+
+    /**
+     * Merge runs of adjacent small chunks.
+     *
+     * <p>Merged chunk does not exceed merge limit.
+     * Each run is copied once.
+     */
+    private void merge() {
+        StringBuilder run = new StringBuilder();
+        int runLen = 0;
+        int dst = 0;
+
+        for (int idx = 0; idx < this.size; idx++) {
+            int src = slot(idx);
+            String chunk = this.chunks[src];
+            this.chunks[src] = null;
+
+            int chunkLen = chunk.length();
+            if (dst > 0 && runLen + chunkLen <= MERGE_LIMIT) {
+                if (run.length() <= 0) run.append(this.chunks[slot(dst - 1)]);
+                run.append(chunk);
+                runLen += chunkLen;
+                continue;
+            }
+
+            if (run.length() > 0) {
+                this.chunks[slot(dst - 1)] = run.toString();
+                run.setLength(0);
+            }
+
+            int to = slot(dst);
+            this.chunks[to] = chunk;
+            this.starts[to] = this.starts[src];
+            dst++;
+            runLen = chunkLen;
+        }
+
+        if (run.length() > 0) {
+            this.chunks[slot(dst - 1)] = run.toString();
+        }
+
+        this.size = dst;
+
+        return;
+    }
+
+    /**
+     * Double ring capacity.
+     */
+    private void grow() {
+        int newCap = this.chunks.length * 2;
+        int firstLen = Integer.min(this.size, this.chunks.length - this.head);
+
+        String[] newChunks = new String[newCap];
+        System.arraycopy(this.chunks, this.head, newChunks, 0, firstLen);
+        System.arraycopy(this.chunks, 0, newChunks, firstLen, this.size - firstLen);
+        this.chunks = newChunks;
+
+        long[] newStarts = new long[newCap];
+        System.arraycopy(this.starts, this.head, newStarts, 0, firstLen);
+        System.arraycopy(this.starts, 0, newStarts, firstLen, this.size - firstLen);
+        this.starts = newStarts;
+
+        this.head = 0;
+
+        return;
+    }
+
+    /**
+     * Chop chars from head.
+     *
+     * <p>Chunks entirely chopped are dropped.
+     *
+     * @param len chopped length
+     */
+    private synchronized void chopHead(int len) {
+        this.headPos += len;
+
+        while (this.size > 0) {
+            String chunk = this.chunks[this.head];
+            if (this.starts[this.head] + chunk.length() > this.headPos) break;
+            this.chunks[this.head] = null;
+            this.head = slot(1);
+            this.size--;
+        }
+
+        return;
+    }
+
+    /**
+     * Prepend text chunk to head.
+     *
+     * <p>Chopped part of first chunk is trimmed,
+     * then head position moves back by text length.
+     *
+     * @param text text
+     */
+    private synchronized void prepend(String text) {
+        int textLen = text.length();
+        if (textLen <= 0) return;
+
+        if (this.size > 0) {
+            String first = this.chunks[this.head];
+            long firstStart = this.starts[this.head];
+            if (firstStart < this.headPos) {
+                int cut = (int) (this.headPos - firstStart);
+                this.chunks[this.head] = first.substring(cut);
+                this.starts[this.head] = this.headPos;
+            }
+        }
+
+        if (this.size >= this.chunks.length) {
+            merge();
+            if (this.size > this.chunks.length / 2) grow();
+        }
+
+        this.head--;
+        if (this.head < 0) this.head += this.chunks.length;
+        this.headPos -= textLen;
+        this.chunks[this.head] = text;
+        this.starts[this.head] = this.headPos;
+        this.size++;
+
+        return;
+    }
+
+    /**
+     * Mirror text inserted at head of Document.
+     *
+     * @param doc document
+     * @param len inserted length
+     */
+    private void mirrorUnchop(Document doc, int len) {
+        String text;
+        try {
+            text = doc.getText(0, len);
+        } catch (BadLocationException e) {
+            assert false;
+            return;
+        }
+
+        prepend(text);
+
+        return;
+    }
+
+    /**
+     * Rebuild chunks from whole Document text.
+     *
+     * <p>Stream position continues.
+     *
+     * @param doc document
+     */
+    private void reload(Document doc) {
+        String text;
+        try {
+            text = doc.getText(0, doc.getLength());
+        } catch (BadLocationException e) {
+            assert false;
+            text = "";
+        }
+
+        synchronized (this) {
+            Arrays.fill(this.chunks, null);
+            if (this.chunks.length > DEF_CAPACITY) {
+                this.chunks = new String[DEF_CAPACITY];
+                this.starts = new long[DEF_CAPACITY];
+            }
+            this.head = 0;
+            this.size = 0;
+            this.headPos = this.tailPos;
+
+            if (!text.isEmpty()) {
+                this.chunks[0] = text;
+                this.starts[0] = this.tailPos;
+                this.size = 1;
+                this.tailPos += text.length();
+            }
+        }
+
+        return;
+    }
+
+    /**
+     * Mirror text appended to Document.
+     *
+     * @param doc document
+     * @param offset inserted offset
+     * @param len inserted length
+     */
+    private void mirrorInsert(Document doc, int offset, int len) {
+        String text = this.offered;
+        this.offered = null;
+
+        if (text == null || text.length() != len) {
+            try {
+                text = doc.getText(offset, len);
+            } catch (BadLocationException e) {
+                assert false;
+                return;
+            }
+        }
+
+        append(text);
+
+        return;
+    }
+
+    /**
+     * Estimate retained heap bytes.
+     *
+     * <p>Chunks shared with taken snapshots are counted.
+     *
+     * @return bytes
+     * @see FootprintAnalyzer
+     */
+    long estimateBytes() {
+        long result = FootprintAnalyzer.objectBytes(
+                FootprintAnalyzer.REF * 4 + 4 * 2 + 8 * 2);
+        result += FootprintAnalyzer.stringBytes(this.offered);
+
+        synchronized (this) {
+            result += FootprintAnalyzer.arrayBytes(
+                    this.chunks.length, FootprintAnalyzer.REF);
+            result += FootprintAnalyzer.arrayBytes(this.starts.length, 8);
+            for (String chunk : this.chunks) {
+                result += FootprintAnalyzer.stringBytes(chunk);
+            }
+        }
+
+        return result;
+    }
+
+
+    /**
+     * Document modification watcher.
+     */
+    private class Watcher implements DocumentListener {
+
+        /**
+         * Constructor.
+         */
+        Watcher() {
+            super();
+            return;
+        }
+
+
+        /**
+         * {@inheritDoc}
+         *
+         * <p>Insertion at head prepends chunk.
+         * Insertion elsewhere except at the end rebuilds chunks.
+         *
+         * @param ev {@inheritDoc}
+         */
+        @Override
+        public void insertUpdate(DocumentEvent ev) {
+            Document doc = ev.getDocument();
+            int offset = ev.getOffset();
+            int len = ev.getLength();
+
+            if (offset + len == doc.getLength()) {
+                mirrorInsert(doc, offset, len);
+            } else if (offset == 0) {
+                SnapshotStore.this.offered = null;
+                mirrorUnchop(doc, len);
+            } else {
+                SnapshotStore.this.offered = null;
+                reload(doc);
+            }
+
+            return;
+        }
+
+        /**
+         * {@inheritDoc}
+         *
+         * <p>Removal except from head rebuilds chunks.
+         *
+         * @param ev {@inheritDoc}
+         */
+        @Override
+        public void removeUpdate(DocumentEvent ev) {
+            if (ev.getOffset() == 0) {
+                chopHead(ev.getLength());
+            } else {
+                reload(ev.getDocument());
+            }
+            return;
+        }
+
+        /**
+         * {@inheritDoc}
+         *
+         * @param ev {@inheritDoc}
+         */
+        @Override
+        public void changedUpdate(DocumentEvent ev) {
+            return;
+        }
+
+    }
+
+}
@@ -0,0 +1,195 @@
+/*
+ * License : The MIT License
+ * Copyright(c) 2019 Olyutorskii
+ */
+
+package io.github.olyutorskii.quetexj;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Insets;
+import java.awt.Point;
+import java.awt.Rectangle;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.DefaultHighlighter;
+import javax.swing.text.JTextComponent;
+
+/**
+ * Highlighter which paints pattern highlight spans.
+ *
+ * <p>Spans are read from SpanRing attached to Document
+ * by SwingLogHandler.
+ * Only spans intersecting clip region are painted.
+ * They are found by binary search, so painting cost
+ * does not depend on number of spans in Document.
+ *
+ * <p>Ordinary highlights such as selection are painted over spans.
+ *
+ * @see HighlightRules
+ */
+@SuppressWarnings("serial")
+class SpanHighlighter extends DefaultHighlighter {
+
+    private JTextComponent host;
+
+    private Color lastColor = Color.WHITE;
+    private final Point cornerPt = new Point();
+
+
+    /**
+     * Constructor.
+     */
+    SpanHighlighter() {
+        super();
+        return;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param comp {@inheritDoc}
+     */
+    @Override
+    public void install(JTextComponent comp) {
+        super.install(comp);
+        this.host = comp;
+        return;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param comp {@inheritDoc}
+     */
+    @Override
+    public void deinstall(JTextComponent comp) {
+        super.deinstall(comp);
+        this.host = null;
+        return;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Spans in clip region are painted first.
+     *
+     * @param gr {@inheritDoc}
+     */
+    @Override
+    public void paint(Graphics gr) {
+        paintSpans(gr);
+        super.paint(gr);
+        return;
+    }
+
+    /**
+     * Return color of tag.
+     *
+     * <p>Last color is cached.
+     *
+     * @param tag span tag
+     * @return color
+     */
+    private Color toColor(int tag) {
+        int rgb = HighlightRules.toRgb(tag);
+        if ((this.lastColor.getRGB() & 0xffffff) != rgb) {
+            this.lastColor = new Color(rgb);
+        }
+        return this.lastColor;
+    }
+
+    /**
+     * Convert view point to Document offset.
+     *
+     * @param xpos x
+     * @param ypos y
+     * @return offset
+     */
+    @SuppressWarnings("deprecation")
+    private int toOffset(int xpos, int ypos) {
+        this.cornerPt.setLocation(xpos, ypos);
+        int result = this.host.viewToModel(this.cornerPt);
+        return result;
+    }
+
+    /**
+     * Paint spans intersecting clip region.
+     *
+     * @param gr graphics
+     */
+    private void paintSpans(Graphics gr) {
+        JTextComponent comp = this.host;
+        if (comp == null) return;
+
+        SpanRing spans =
+                SpanRing.get(comp.getDocument(), HighlightRules.SPANS_KEY);
+        if (spans == null || spans.size() <= 0) return;
+
+        Rectangle clip = gr.getClipBounds();
+        if (clip == null) clip = comp.getVisibleRect();
+
+        int p0 = toOffset(clip.x, clip.y);
+        int p1 = toOffset(clip.x + clip.width, clip.y + clip.height);
+        int docLen = comp.getDocument().getLength();
+
+        Rectangle alloc = comp.getBounds();
+        Insets insets = comp.getInsets();
+        alloc.x = insets.left;
+        alloc.width -= insets.left + insets.right;
+
+        int spanNum = spans.size();
+        for (int idx = spans.search(p0); idx < spanNum; idx++) {
+            int start = spans.getStart(idx);
+            if (start > p1) break;
+            int end = Integer.min(spans.getEnd(idx), docLen);
+            if (end <= start) continue;
+
+            gr.setColor(toColor(spans.getTag(idx)));
+            try {
+                paintSpan(gr, start, end, alloc);
+            } catch (BadLocationException e) {
+                assert false;
+            }
+        }
+
+        return;
+    }
+
+    /**
+     * Paint one span.
+     *
+     * <p>Span may continue over several rows.
+     *
+     * @param gr graphics
+     * @param start start offset
+     * @param end end offset (exclusive)
+     * @param alloc area inside insets
+     * @throws BadLocationException illegal offset
+     */
+    @SuppressWarnings("deprecation")
+    private void paintSpan(Graphics gr, int start, int end, Rectangle alloc)
+            throws BadLocationException {
+        Rectangle r0 = this.host.modelToView(start);
+        Rectangle r1 = this.host.modelToView(end);
+        if (r0 == null || r1 == null) return;
+
+        if (r0.y == r1.y) {
+            gr.fillRect(r0.x, r0.y, r1.x - r0.x, r0.height);
+            return;
+        }
+
+        int right = alloc.x + alloc.width;
+        gr.fillRect(r0.x, r0.y, right - r0.x, r0.height);
+
+        int midTop = r0.y + r0.height;
+        if (midTop < r1.y) {
+            gr.fillRect(alloc.x, midTop, alloc.width, r1.y - midTop);
+        }
+
+        gr.fillRect(alloc.x, r1.y, r1.x - alloc.x, r1.height);
+
+        return;
+    }
+
+}
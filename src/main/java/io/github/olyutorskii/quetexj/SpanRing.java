@@ -0,0 +1,399 @@
+/*
+ * License : The MIT License
+ * Copyright(c) 2019 Olyutorskii
+ */
+
+package io.github.olyutorskii.quetexj;
+
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.Document;
+
+/**
+ * Ring of tagged text spans of append-only Document.
+ *
+ * <p>Each span has start and end position, and int tag.
+ * Spans are sorted and not overlapped.
+ * Text outside spans has no tag.
+ *
+ * <p>Positions are kept as absolute stream positions,
+ * which count chars chopped from head of Document.
+ * So head chopping never rewrites spans.
+ * Spans entirely chopped are dropped from ring head
+ * in O(1) amortized time.
+ *
+ * <p>Insertion at head of Document restores chopped positions,
+ * so inserted text has no spans.
+ * Other insertion except at the end of Document,
+ * or removal except from head of Document, clears all spans.
+ *
+ * <p>Ring is attached to Document as its property.
+ *
+ * <p>(EDT only.)
+ */
+final class SpanRing {
+
+    private static final int DEF_CAPACITY = 256;
+
+
+    private long[] starts;
+    private long[] ends;
+    private int[] tags;
+
+    private int head;
+    private int size;
+
+    private long chopped;
+
+    private final Watcher watcher = new Watcher();
+
+
+    /**
+     * Constructor.
+     */
+    SpanRing() {
+        super();
+
+        this.starts = new long[DEF_CAPACITY];
+        this.ends = new long[DEF_CAPACITY];
+        this.tags = new int[DEF_CAPACITY];
+
+        return;
+    }
+
+
+    /**
+     * Return span ring attached to Document.
+     *
+     * @param doc document
+     * @param key property key
+     * @return span ring. null if none.
+     */
+    static SpanRing get(Document doc, Object key) {
+        Object prop = doc.getProperty(key);
+        if (prop instanceof SpanRing) {
+            return (SpanRing) prop;
+        }
+        return null;
+    }
+
+    /**
+     * Return span ring attached to Document.
+     *
+     * <p>If none, new ring is attached.
+     *
+     * @param doc document
+     * @param key property key
+     * @return span ring
+     */
+    static SpanRing obtain(Document doc, Object key) {
+        SpanRing result = get(doc, key);
+        if (result != null) return result;
+
+        result = new SpanRing();
+        doc.addDocumentListener(result.watcher);
+        doc.putProperty(key, result);
+
+        return result;
+    }
+
+    /**
+     * Return number of chars chopped from head of Document.
+     *
+     * @return number of chars
+     */
+    long getChopped() {
+        return this.chopped;
+    }
+
+    /**
+     * Convert Document offset to absolute position.
+     *
+     * @param offset Document offset
+     * @return absolute position
+     */
+    long toAbsolute(int offset) {
+        return this.chopped + offset;
+    }
+
+    /**
+     * Return number of spans.
+     *
+     * @return number of spans
+     */
+    int size() {
+        return this.size;
+    }
+
+    /**
+     * Convert span index to ring slot.
+     *
+     * @param idx span index
+     * @return slot
+     */
+    private int slot(int idx) {
+        int result = this.head + idx;
+        if (result >= this.tags.length) result -= this.tags.length;
+        return result;
+    }
+
+    /**
+     * Return start offset of span in Document.
+     *
+     * <p>Chopped part is clipped to 0.
+     *
+     * @param idx span index
+     * @return start offset
+     */
+    int getStart(int idx) {
+        long result = this.starts[slot(idx)] - this.chopped;
+        if (result < 0) result = 0;
+        return (int) result;
+    }
+
+    /**
+     * Return end offset of span in Document.
+     *
+     * @param idx span index
+     * @return end offset (exclusive)
+     */
+    int getEnd(int idx) {
+        long result = this.ends[slot(idx)] - this.chopped;
+        return (int) result;
+    }
+
+    /**
+     * Return tag of span.
+     *
+     * @param idx span index
+     * @return tag
+     */
+    int getTag(int idx) {
+        return this.tags[slot(idx)];
+    }
+
+    /**
+     * Search first span whose end is after Document offset.
+     *
+     * <p>Binary search.
+     *
+     * @param offset Document offset
+     * @return span index. size() if none.
+     */
+    int search(int offset) {
+        long abs = toAbsolute(offset);
+
+        int low = 0;
+        int high = this.size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (this.ends[slot(mid)] <= abs) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+
+        return low;
+    }
+
+    /**
+     * Add span at the end of ring.
+     *
+     * <p>Span adjacent to last span with same tag is merged.
+     * Empty span is ignored.
+     *
+     * @param absStart absolute start position
+     * @param absEnd absolute end position (exclusive)
+     * @param tag tag
+     */
+    void add(long absStart, long absEnd, int tag) {
+        if (absEnd <= absStart) return;
+
+        if (this.size > 0) {
+            int last = slot(this.size - 1);
+            assert this.ends[last] <= absStart;
+            if (this.ends[last] == absStart && this.tags[last] == tag) {
+                this.ends[last] = absEnd;
+                return;
+            }
+        }
+
+        if (this.size >= this.tags.length) grow();
+
+        int tail = slot(this.size);
+        this.starts[tail] = absStart;
+        this.ends[tail] = absEnd;
+        this.tags[tail] = tag;
+        this.size++;
+
+        return;
+    }
+
+    /**
+     * Double ring capacity.
+     */
+    private void grow() {
+        int oldCap = this.tags.length;
+        int newCap = oldCap * 2;
+
+        this.starts = unwrap(this.starts, newCap);
+        this.ends = unwrap(this.ends, newCap);
+
+        int[] newTags = new int[newCap];
+        int firstLen = Integer.min(this.size, oldCap - this.head);
+        System.arraycopy(this.tags, this.head, newTags, 0, firstLen);
+        System.arraycopy(this.tags, 0, newTags, firstLen, this.size - firstLen);
+        this.tags = newTags;
+
+        this.head = 0;
+
+        return;
+    }
+
+    /**
+     * Copy ring array to larger array from head.
+     *
+     * @param ring ring array
+     * @param newCap new capacity
+     * @return new array
+     */
+    private long[] unwrap(long[] ring, int newCap) {
+        long[] result = new long[newCap];
+        int firstLen = Integer.min(this.size, ring.length - this.head);
+        System.arraycopy(ring, this.head, result, 0, firstLen);
+        System.arraycopy(ring, 0, result, firstLen, this.size - firstLen);
+        return result;
+    }
+
+    /**
+     * Notify chars chopped from head of Document.
+     *
+     * <p>Spans entirely chopped are dropped.
+     *
+     * @param len chopped length
+     */
+    void chopHead(int len) {
+        this.chopped += len;
+
+        while (this.size > 0 && this.ends[this.head] <= this.chopped) {
+            this.head = slot(1);
+            this.size--;
+        }
+
+        return;
+    }
+
+    /**
+     * Notify chars inserted at head of Document.
+     *
+     * <p>Positions of spans are kept.
+     * Absolute position may become negative.
+     *
+     * @param len inserted length
+     */
+    void unchopHead(int len) {
+        this.chopped -= len;
+        return;
+    }
+
+    /**
+     * Remove all spans.
+     *
+     * <p>Over-grown arrays are released.
+     */
+    void clear() {
+        this.head = 0;
+        this.size = 0;
+
+        if (this.tags.length > DEF_CAPACITY) {
+            this.starts = new long[DEF_CAPACITY];
+            this.ends = new long[DEF_CAPACITY];
+            this.tags = new int[DEF_CAPACITY];
+        }
+
+        return;
+    }
+
+    /**
+     * Estimate retained heap bytes.
+     *
+     * @return bytes
+     * @see FootprintAnalyzer
+     */
+    long estimateBytes() {
+        long result = FootprintAnalyzer.objectBytes(
+                FootprintAnalyzer.REF * 4 + 4 * 2 + 8);
+        result += FootprintAnalyzer.arrayBytes(this.starts.length, 8);
+        result += FootprintAnalyzer.arrayBytes(this.ends.length, 8);
+        result += FootprintAnalyzer.arrayBytes(this.tags.length, 4);
+        return result;
+    }
+
+
+    /**
+     * Document modification watcher.
+     */
+    private class Watcher implements DocumentListener {
+
+        /**
+         * Constructor.
+         */
+        Watcher() {
+            super();
+            return;
+        }
+
+
+        /**
+         * {@inheritDoc}
+         *
+         * <p>Insertion at the head unchops positions.
+         * Other insertion except at the end clears all spans.
+         *
+         * @param ev {@inheritDoc}
+         */
+        @Override
+        public void insertUpdate(DocumentEvent ev) {
+            int insEnd = ev.getOffset() + ev.getLength();
+            if (insEnd == ev.getDocument().getLength()) return;
+
+            if (ev.getOffset() == 0) {
+                unchopHead(ev.getLength());
+            } else {
+                clear();
+            }
+
+            return;
+        }
+
+        /**
+         * {@inheritDoc}
+         *
+         * <p>Removal except from head clears all spans.
+         *
+         * @param ev {@inheritDoc}
+         */
+        @Override
+        public void removeUpdate(DocumentEvent ev) {
+            if (ev.getOffset() == 0) {
+                chopHead(ev.getLength());
+            } else {
+                clear();
+            }
+            return;
+        }
+
+        /**
+         * {@inheritDoc}
+         *
+         * @param ev {@inheritDoc}
+         */
+        @Override
+        public void changedUpdate(DocumentEvent ev) {
+            return;
+        }
+
+    }
+
+}
@@ -6,14 +6,17 @@
 package io.github.olyutorskii.quetexj;
 
 import java.awt.EventQueue;
+import java.util.ArrayDeque;
+import java.util.Arrays;
 import java.util.Objects;
-import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Formatter;
 import java.util.logging.Handler;
 import java.util.logging.Level;
 import java.util.logging.LogRecord;
-import java.util.logging.SimpleFormatter;
 import javax.swing.text.BadLocationException;
 import javax.swing.text.Document;
 import javax.swing.text.PlainDocument;
@@ -22,119 +25,1042 @@
  * Log handler for Swing text component model(Document).
  *
  * <p>Logging is supported from both EDT(Event-Dispatch-Thread) and non-EDT.
+ *
+ * <p>Pre-formatted text can be appended directly without LogRecord.
+ * Text is copied into recycled buffers,
+ * so no allocation happens per call in steady state.
+ *
+ * <p>Optional LogRateLimiter drops records of noisy loggers
+ * before formatting.
+ *
+ * <p>Records at or above priority level (SEVERE by default)
+ * go through separate priority lane.
+ * They are exempt from rate limiting, transferred before other records,
+ * and also kept in small pinned document of recent priority records.
+ * Pinned document is never chopped by HeightKeeper.
+ *
+ * <p>Producers that care about Swing side lag can use
+ * {@link #tryPublish(LogRecord)} or
+ * {@link #publish(LogRecord, long, TimeUnit)}.
+ * They are rejected or blocked while queued records reach backlog limit.
+ * Handler#publish(LogRecord) is never rejected.
+ *
+ * <p>{@link #flush()} waits until queued records are transferred
+ * to Document, with timeout. {@link #close()} drains queue
+ * and releases resources.
+ *
+ * <p>Optional ConsoleRingFile captures all text transferred to Document.
+ *
+ * <p>EDT responsiveness is probed by periodic marker events.
+ * Queued records are transferred in batches whose size adapts
+ * to keep EDT lag below latency target while maximizing throughput.
+ * If records remain after a batch, next batch is scheduled
+ * on later EventQueue turn, so user input is dispatched between batches.
+ *
+ * <p>In optional ANSI-aware mode, SGR escape sequences are parsed
+ * and stripped by producer thread, and colors are kept as style spans
+ * attached to Document.
+ * They are rendered by {@link MvcFacade#setAnsiRendering(boolean)}.
+ *
+ * <p>Optional HighlightRules are also matched by producer thread,
+ * and matches are kept as highlight spans attached to Document.
+ * They are painted by {@link MvcFacade#setHighlightRendering(boolean)}.
+ *
+ * <p>Formatted text is preprocessed (ANSI parsing, long line guard
+ * and highlight matching) outside handler lock,
+ * so producer threads preprocess in parallel.
+ * Text published on EDT is preprocessed
+ * by shared background thread instead, and never on EDT.
+ *
+ * <p>End-to-end latency of each record, from publishing
+ * to insertion into Document, is recorded in LatencyHistogram.
+ *
+ * <p>Line longer than max line length is split or elided
+ * by producer thread, so one huge line never freezes wrapped layout.
+ *
+ * <p>In structured mode, records are also kept in RecordColumns,
+ * which can be viewed by RecordTableModel.
  */
 public class SwingLogHandler extends Handler {
 
-    private final Document document;
-    private final Queue<String> msgQueue;
-    private final LogTransferTask transferTask;
+    /** Default backlog limit (records). */
+    public static final int DEF_BACKLOG_LIMIT = 10_000;
+    /** Default flush timeout (msec). */
+    public static final long DEF_FLUSH_TIMEOUT = 1_000L;
+    /** Default EDT latency target (msec). */
+    public static final long DEF_EDT_LATENCY_TARGET = 50L;
+    /** Default max line length (chars). */
+    public static final int DEF_MAX_LINE_LENGTH = 10_000;
+
+    private static final ThreadLocal<AnsiSgrParser> ANSI_PARSERS =
+            ThreadLocal.withInitial(AnsiSgrParser::new);
+
+    /** Preprocessor of text published on EDT. */
+    private static final Executor EDT_OFFLOADER =
+            Executors.newSingleThreadExecutor(task -> {
+                Thread thread = new Thread(task, "SwingLogHandler-offload");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    private final Document document;
+    private final ChunkQueue msgQueue;
+    private final LogTransferTask transferTask;
+
+    private final AtomicBoolean transferScheduled = new AtomicBoolean();
+
+    /** Formatting buffer. Guarded by this. */
+    private final StringBuilder recBuf = new StringBuilder();
+    /** Rate limit summary buffer. Guarded by this. */
+    private final StringBuilder summaryBuf = new StringBuilder();
+
+    private volatile LogRateLimiter rateLimiter;
+    private volatile Level priorityLevel = Level.SEVERE;
+    private volatile int backlogLimit = DEF_BACKLOG_LIMIT;
+    private volatile long flushTimeout = DEF_FLUSH_TIMEOUT;
+
+    private final PinnedRecords pinned;
+
+    private volatile ConsoleRingFile ringFile;
+
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    private final EdtLagProbe lagProbe =
+            new EdtLagProbe(EdtLagProbe.DEF_PERIOD);
+    private volatile long edtLatencyTarget = DEF_EDT_LATENCY_TARGET;
+
+    private volatile boolean ansiEnabled;
+    private volatile HighlightRules highlightRules;
+
+    private final LongLineStore longLines = new LongLineStore();
+    /** Guard of long line. null if disabled. */
+    private volatile LongLineGuard lineGuard = new LongLineGuard(
+            DEF_MAX_LINE_LENGTH, LongLinePolicy.SPLIT, this.longLines);
+    /** Treatment of long line. Guarded by this. */
+    private LongLinePolicy longLinePolicy = LongLinePolicy.SPLIT;
+
+    private volatile RecordColumns recordColumns;
+
+
+    /**
+     * Constructor.
+     *
+     * <p>PlainDocument is prepared.
+     */
+    public SwingLogHandler() {
+        this(new PlainDocument());
+        return;
+    }
+
+    /**
+     * Constructor.
+     *
+     * <p>Do not access document via non-EDT.
+     *
+     * <p>FastSimpleFormatter is used as default formatter.
+     * If custom SimpleFormatter format property is configured,
+     * SimpleFormatter is used instead.
+     *
+     * @param document Document model of Swing text component.
+     * @see FastSimpleFormatter
+     */
+    public SwingLogHandler(Document document) {
+        super();
+
+        Objects.requireNonNull(document);
+        this.document = document;
+
+        this.msgQueue = new ChunkQueue(ChunkQueue.DEF_PREALLOC);
+        this.pinned = new PinnedRecords(PinnedRecords.DEF_LIMIT);
+        this.transferTask =
+                new LogTransferTask(this.msgQueue);
+
+        Formatter formatter = FastSimpleFormatter.buildDefaultFormatter();
+        setFormatter(formatter);
+
+        return;
+    }
+
+
+    /**
+     * Return associated document.
+     *
+     * <p>Do not access document via non-EDT.
+     *
+     * @return document
+     */
+    public Document getDocument() {
+        return this.document;
+    }
+
+    /**
+     * Return pinned document of recent priority records.
+     *
+     * <p>Do not access document via non-EDT.
+     *
+     * @return pinned document
+     */
+    public Document getPinnedDocument() {
+        return this.pinned.getDocument();
+    }
+
+    /**
+     * Return persistent ring file.
+     *
+     * @return ring file. null if none.
+     */
+    public ConsoleRingFile getRingFile() {
+        return this.ringFile;
+    }
+
+    /**
+     * Set persistent ring file.
+     *
+     * <p>All text transferred to Document is also written to ring file.
+     *
+     * <p>Ring file is not closed by this handler.
+     *
+     * @param ring ring file. null if none.
+     */
+    public void setRingFile(ConsoleRingFile ring) {
+        this.ringFile = ring;
+        return;
+    }
+
+    /**
+     * Return latency histogram.
+     *
+     * <p>Each record's time from publishing (or appending)
+     * to insertion into Document is recorded.
+     * Time spent in formatting and queueing is included.
+     * Repaint of view after insertion is not included.
+     *
+     * <p>This is thread-safe.
+     *
+     * @return latency histogram
+     */
+    public LatencyHistogram getLatencyHistogram() {
+        return this.latency;
+    }
+
+    /**
+     * Return whether ANSI-aware mode is enabled.
+     *
+     * @return true if enabled
+     */
+    public boolean isAnsiEnabled() {
+        return this.ansiEnabled;
+    }
+
+    /**
+     * Set ANSI-aware mode.
+     *
+     * <p>If enabled, escape sequences are stripped from queued text,
+     * and SGR colors are kept as style spans of Document.
+     * Spans are trimmed along with head chopping by HeightKeeper.
+     * Pinned document and ring file receive stripped text.
+     *
+     * <p>If disabled, escape sequences are transferred as is.
+     *
+     * @param enabled true if enabled
+     * @see MvcFacade#setAnsiRendering(boolean)
+     */
+    public void setAnsiEnabled(boolean enabled) {
+        this.ansiEnabled = enabled;
+        return;
+    }
+
+    /**
+     * Return highlight rules.
+     *
+     * @return highlight rules. null if none.
+     */
+    public HighlightRules getHighlightRules() {
+        return this.highlightRules;
+    }
+
+    /**
+     * Set highlight rules.
+     *
+     * <p>Rules are matched against queued text by producer thread.
+     * Matches are kept as highlight spans of Document,
+     * and trimmed along with head chopping by HeightKeeper.
+     *
+     * @param rules highlight rules. null if none.
+     * @see MvcFacade#setHighlightRendering(boolean)
+     */
+    public void setHighlightRules(HighlightRules rules) {
+        this.highlightRules = rules;
+        return;
+    }
+
+    /**
+     * Return max line length.
+     *
+     * @return max line length (chars). 0 if unlimited.
+     */
+    public int getMaxLineLength() {
+        LongLineGuard guard = this.lineGuard;
+        if (guard == null) return 0;
+        return guard.getMaxLength();
+    }
+
+    /**
+     * Set max line length.
+     *
+     * <p>Line longer than this is treated by LongLinePolicy
+     * before queueing.
+     * Line length is counted in chars, excluding line separator.
+     * If ANSI-aware mode is enabled, length is counted
+     * after stripping escape sequences.
+     * Style spans are shifted to guarded text,
+     * and only spans within elided part are dropped.
+     *
+     * @param len max line length (chars). 0 if unlimited.
+     * @throws IllegalArgumentException negative length
+     * @see #setLongLinePolicy(LongLinePolicy)
+     */
+    public synchronized void setMaxLineLength(int len)
+            throws IllegalArgumentException {
+        if (len < 0) throw new IllegalArgumentException();
+
+        if (len == 0) {
+            this.lineGuard = null;
+        } else {
+            this.lineGuard = new LongLineGuard(
+                    len, this.longLinePolicy, this.longLines);
+        }
+
+        return;
+    }
+
+    /**
+     * Return treatment of long line.
+     *
+     * @return policy
+     */
+    public synchronized LongLinePolicy getLongLinePolicy() {
+        return this.longLinePolicy;
+    }
+
+    /**
+     * Set treatment of long line.
+     *
+     * <p>Default policy is SPLIT.
+     *
+     * @param policy policy
+     * @throws NullPointerException null argument
+     * @see #getLongLineStore()
+     */
+    public synchronized void setLongLinePolicy(LongLinePolicy policy)
+            throws NullPointerException {
+        Objects.requireNonNull(policy);
+
+        this.longLinePolicy = policy;
+        LongLineGuard guard = this.lineGuard;
+        if (guard != null) {
+            this.lineGuard = new LongLineGuard(
+                    guard.getMaxLength(), policy, this.longLines);
+        }
+
+        return;
+    }
+
+    /**
+     * Return side store of elided long lines.
+     *
+     * <p>Placeholder of elided line in Document contains line ID.
+     * Use {@link LongLineStore#parseId(CharSequence)} to get it.
+     *
+     * @return side store
+     * @see LongLinePolicy#ELIDE
+     */
+    public LongLineStore getLongLineStore() {
+        return this.longLines;
+    }
+
+    /**
+     * Return record columns of structured mode.
+     *
+     * @return record columns. null if structured mode is disabled.
+     */
+    public RecordColumns getRecordColumns() {
+        return this.recordColumns;
+    }
+
+    /**
+     * Set record columns of structured mode.
+     *
+     * <p>Published records passing level, filter and rate limit
+     * are also added to record columns by producer thread.
+     * Message is formatted by {@link Formatter#formatMessage(LogRecord)}.
+     *
+     * <p>Appended text is not added.
+     *
+     * @param columns record columns. null if structured mode is disabled.
+     * @see RecordTableModel
+     */
+    public void setRecordColumns(RecordColumns columns) {
+        this.recordColumns = columns;
+        return;
+    }
+
+    /**
+     * Return EDT latency target.
+     *
+     * @return latency target (msec)
+     */
+    public long getEdtLatencyTarget() {
+        return this.edtLatencyTarget;
+    }
+
+    /**
+     * Set EDT latency target.
+     *
+     * <p>Transfer batch shrinks while EDT lag exceeds this target,
+     * and grows while EDT is responsive.
+     *
+     * @param msec latency target (msec)
+     * @throws IllegalArgumentException non-positive target
+     */
+    public void setEdtLatencyTarget(long msec)
+            throws IllegalArgumentException {
+        if (msec <= 0) throw new IllegalArgumentException();
+        this.edtLatencyTarget = msec;
+        return;
+    }
+
+    /**
+     * Return smoothed EDT lag measured by marker events.
+     *
+     * <p>Probing starts when records are first queued from non-EDT.
+     *
+     * <p>This is thread-safe.
+     *
+     * @return EDT lag (msec)
+     */
+    public long getEdtLagMillis() {
+        return this.lagProbe.getLagMillis();
+    }
+
+    /**
+     * Return current transfer batch limit.
+     *
+     * <p>This is thread-safe.
+     *
+     * @return max number of records per batch
+     */
+    public int getDrainBatchLimit() {
+        return this.transferTask.batchLimit;
+    }
+
+    /**
+     * Return priority level.
+     *
+     * @return priority level
+     */
+    public Level getPriorityLevel() {
+        return this.priorityLevel;
+    }
+
+    /**
+     * Set priority level.
+     *
+     * <p>Records at or above this level go through priority lane.
+     *
+     * @param level priority level. Level.OFF disables priority lane.
+     * @throws NullPointerException null argument
+     */
+    public void setPriorityLevel(Level level) throws NullPointerException {
+        Objects.requireNonNull(level);
+        this.priorityLevel = level;
+        return;
+    }
+
+    /**
+     * Return whether log record goes through priority lane.
+     *
+     * @param logRec log record
+     * @return true if priority
+     */
+    private boolean isPriority(LogRecord logRec) {
+        int prior = this.priorityLevel.intValue();
+        if (prior == Level.OFF.intValue()) return false;
+
+        boolean result = logRec.getLevel().intValue() >= prior;
+
+        return result;
+    }
+
+    /**
+     * Return rate limiter.
+     *
+     * @return rate limiter. null if unlimited.
+     */
+    public LogRateLimiter getRateLimiter() {
+        return this.rateLimiter;
+    }
+
+    /**
+     * Set rate limiter.
+     *
+     * <p>Records are checked by limiter before formatting.
+     *
+     * @param limiter rate limiter. null if unlimited.
+     */
+    public void setRateLimiter(LogRateLimiter limiter) {
+        this.rateLimiter = limiter;
+        return;
+    }
+
+    /**
+     * Return backlog limit.
+     *
+     * @return backlog limit (records)
+     */
+    public int getBacklogLimit() {
+        return this.backlogLimit;
+    }
+
+    /**
+     * Set backlog limit.
+     *
+     * <p>Limit affects tryPublish and publish with timeout only.
+     *
+     * @param records backlog limit (records)
+     * @throws IllegalArgumentException non-positive limit
+     */
+    public void setBacklogLimit(int records) throws IllegalArgumentException {
+        if (records <= 0) throw new IllegalArgumentException();
+        this.backlogLimit = records;
+        return;
+    }
+
+    /**
+     * Return number of records waiting for transfer to Document.
+     *
+     * <p>This is thread-safe.
+     *
+     * @return number of records
+     */
+    public int getLagRecords() {
+        return this.msgQueue.size();
+    }
+
+    /**
+     * Return waiting time of oldest record for transfer to Document.
+     *
+     * <p>This is thread-safe.
+     *
+     * @return waiting time (msec). 0 if no record is waiting.
+     */
+    public long getLagMillis() {
+        long now = System.nanoTime();
+        long oldest = this.msgQueue.oldestEnqueueNanos(now);
+        long result = TimeUnit.NANOSECONDS.toMillis(now - oldest);
+        return result;
+    }
+
+    /**
+     * Return number of chunks offered to queue since created.
+     *
+     * <p>This is thread-safe.
+     *
+     * @return number of chunks
+     */
+    long getOfferedNum() {
+        return this.msgQueue.getOfferedNum();
+    }
+
+    /**
+     * Return number of chunks transferred to Document since created.
+     *
+     * <p>This is thread-safe.
+     *
+     * @return number of chunks
+     */
+    long getTransferredNum() {
+        return this.msgQueue.getTransferredNum();
+    }
+
+    /**
+     * Estimate retained heap bytes of queued and pooled chunks.
+     *
+     * @return bytes
+     * @see FootprintAnalyzer
+     */
+    long estimateQueueBytes() {
+        return this.msgQueue.estimateBytes();
+    }
+
+    /**
+     * Return whether backlog of normal lane reaches limit.
+     *
+     * <p>Backlog is never full on EDT,
+     * because EDT must not wait for itself.
+     *
+     * @return true if full
+     */
+    private boolean isBacklogFull() {
+        if (EventQueue.isDispatchThread()) return false;
+        boolean result = this.msgQueue.normalSize() >= this.backlogLimit;
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This is thread-safe.
+     *
+     * <p>Record is never rejected by backlog limit.
+     *
+     * @param logRec {@inheritDoc}
+     */
+    @Override
+    public void publish(LogRecord logRec) {
+        publishImpl(logRec, false);
+        return;
+    }
+
+    /**
+     * Publish log record.
+     *
+     * <p>If backlog reaches limit, wait until backlog decreases.
+     * Priority records are never blocked.
+     *
+     * <p>Records filtered by level, filter or rate limiter
+     * are regarded as accepted.
+     *
+     * <p>On EDT, record is always accepted without blocking.
+     *
+     * <p>This is thread-safe.
+     *
+     * @param logRec log record
+     * @param timeout timeout
+     * @param unit time unit of timeout
+     * @return false if timeout
+     * @throws InterruptedException interrupted while waiting
+     */
+    public boolean publish(LogRecord logRec, long timeout, TimeUnit unit)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+
+        for (;;) {
+            if (tryPublish(logRec)) return true;
+
+            long remain = deadline - System.nanoTime();
+            if (remain <= 0) return false;
+
+            boolean room = this.msgQueue.awaitRoom(this.backlogLimit, remain);
+            if (!room) return false;
+        }
+    }
+
+    /**
+     * Publish log record without blocking.
+     *
+     * <p>If backlog reaches limit, record is rejected.
+     * Priority records are never rejected.
+     *
+     * <p>Records filtered by level, filter or rate limiter
+     * are regarded as accepted.
+     *
+     * <p>This is thread-safe.
+     *
+     * @param logRec log record
+     * @return false if rejected by backlog limit
+     */
+    public boolean tryPublish(LogRecord logRec) {
+        boolean result = publishImpl(logRec, true);
+        return result;
+    }
+
+    /**
+     * Publish log record.
+     *
+     * <p>Only formatting holds handler lock.
+     *
+     * @param logRec log record
+     * @param checkBacklog true if rejected by backlog limit
+     * @return false if rejected by backlog limit
+     */
+    private boolean publishImpl(LogRecord logRec, boolean checkBacklog) {
+        if (logRec == null) return true;
+
+        if (!isLoggable(logRec)) {
+            return true;
+        }
+
+        final long startNanos = System.nanoTime();
+
+        boolean priority = isPriority(logRec);
+        if (!priority) {
+            if (checkBacklog && isBacklogFull()) return false;
+            if (!checkRateLimit(logRec)) return true;
+        }
 
+        TextChunk chunk = formatRecord(logRec);
+        if (chunk != null) {
+            chunk.setEnqueueNanos(startNanos);
+            chunk.setRecordMillis(logRec.getMillis());
+            enqueue(chunk, priority);
+        }
+
+        return true;
+    }
 
     /**
-     * Constructor.
+     * Format log record into chunk.
      *
-     * <p>PlainDocument is prepared.
+     * <p>Record is also added to RecordColumns, if any.
+     *
+     * @param logRec log record
+     * @return filled chunk. null if empty or handler level is OFF
      */
-    public SwingLogHandler() {
-        this(new PlainDocument());
+    private synchronized TextChunk formatRecord(LogRecord logRec) {
+        Formatter formatter = getFormatter();
+
+        RecordColumns columns = this.recordColumns;
+        if (columns != null) {
+            columns.add(logRec, formatter.formatMessage(logRec));
+        }
+
+        StringBuilder buf = this.recBuf;
+        buf.setLength(0);
+        formatTo(formatter, logRec, buf);
+
+        TextChunk result = null;
+        if (buf.length() > 0 && !isClosedLevel()) {
+            result = this.msgQueue.obtain();
+            result.append(buf, 0, buf.length());
+        }
+
+        if (buf.capacity() > TextChunk.RETAIN_CAPACITY) {
+            buf.setLength(0);
+            buf.trimToSize();
+        }
+
+        return result;
+    }
+
+    /**
+     * Format log record into buffer.
+     *
+     * <p>FastSimpleFormatter writes into buffer directly.
+     *
+     * @param formatter formatter
+     * @param logRec log record
+     * @param buf output
+     */
+    private static void formatTo(Formatter formatter, LogRecord logRec,
+                                 StringBuilder buf) {
+        if (formatter instanceof FastSimpleFormatter) {
+            ((FastSimpleFormatter) formatter).formatTo(logRec, buf);
+        } else {
+            buf.append(formatter.format(logRec));
+        }
         return;
     }
 
     /**
-     * Constructor.
+     * Check rate limit of log record.
      *
-     * <p>Do not access document via non-EDT.
+     * <p>Summary of suppressed records is appended if its interval elapsed.
      *
-     * @param document Document model of Swing text component.
+     * @param logRec log record
+     * @return true if permitted
      */
-    public SwingLogHandler(Document document) {
-        super();
+    private boolean checkRateLimit(LogRecord logRec) {
+        LogRateLimiter limiter = this.rateLimiter;
+        if (limiter == null) return true;
 
-        Objects.requireNonNull(document);
-        this.document = document;
+        long nowNanos = System.nanoTime();
 
-        this.msgQueue = new ConcurrentLinkedQueue<>();
-        this.transferTask =
-                new LogTransferTask(this.msgQueue);
+        TextChunk summary = null;
+        synchronized (this) {
+            StringBuilder buf = this.summaryBuf;
+            buf.setLength(0);
+            if (limiter.pollSummary(nowNanos, buf) && !isClosedLevel()) {
+                summary = this.msgQueue.obtain();
+                summary.append(buf, 0, buf.length());
+            }
+        }
 
-        Formatter formatter = new SimpleFormatter();
-        setFormatter(formatter);
+        if (summary != null) {
+            summary.setEnqueueNanos(nowNanos);
+            summary.setRecordMillis(System.currentTimeMillis());
+            enqueue(summary, false);
+        }
 
-        return;
+        boolean result = limiter.tryAcquire(logRec.getLoggerName(), nowNanos);
+
+        return result;
     }
 
+    /**
+     * Append pre-formatted text.
+     *
+     * <p>Text is copied. Document model will be updated later.
+     *
+     * <p>If handler level is OFF, do nothing.
+     *
+     * <p>This is thread-safe.
+     *
+     * @param text text
+     * @throws NullPointerException null argument
+     */
+    public void append(CharSequence text) throws NullPointerException {
+        append(text, 0, text.length());
+        return;
+    }
 
     /**
-     * Return associated document.
+     * Append pre-formatted text.
      *
-     * <p>Do not access document via non-EDT.
+     * <p>Text is copied. Document model will be updated later.
      *
-     * @return document
+     * <p>If handler level is OFF, do nothing.
+     *
+     * <p>This is thread-safe.
+     *
+     * @param text text
+     * @param start start position
+     * @param end end position (exclusive)
+     * @throws IndexOutOfBoundsException illegal range
      */
-    public Document getDocument() {
-        return this.document;
+    public void append(CharSequence text, int start, int end)
+            throws IndexOutOfBoundsException {
+        if (start < 0 || end < start || text.length() < end) {
+            throw new IndexOutOfBoundsException();
+        }
+        enqueueText(text, start, end, false,
+                System.nanoTime(), System.currentTimeMillis());
+        return;
     }
 
     /**
-     * {@inheritDoc}
+     * Append pre-formatted text.
+     *
+     * <p>Text is copied. Document model will be updated later.
+     *
+     * <p>If handler level is OFF, do nothing.
      *
      * <p>This is thread-safe.
      *
-     * @param logRec {@inheritDoc}
+     * @param text text
+     * @param offset start position
+     * @param length text length
+     * @throws IndexOutOfBoundsException illegal range
      */
-    @Override
-    public synchronized void publish(LogRecord logRec) {
-        if (logRec == null) return;
+    public void append(char[] text, int offset, int length)
+            throws IndexOutOfBoundsException {
+        if (offset < 0 || length < 0 || text.length - offset < length) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (length == 0) return;
+        if (isClosedLevel()) return;
 
-        if (!isLoggable(logRec)) {
-            return;
+        long startNanos = System.nanoTime();
+        TextChunk chunk = this.msgQueue.obtain();
+        chunk.append(text, offset, length);
+        chunk.setEnqueueNanos(startNanos);
+        chunk.setRecordMillis(System.currentTimeMillis());
+        enqueue(chunk, false);
+
+        return;
+    }
+
+    /**
+     * Return whether handler level is OFF.
+     *
+     * @return true if OFF
+     */
+    private boolean isClosedLevel() {
+        boolean result = getLevel().intValue() == Level.OFF.intValue();
+        return result;
+    }
+
+    /**
+     * Enqueue text.
+     *
+     * <p>If handler level is OFF, do nothing.
+     *
+     * @param text text
+     * @param start start position
+     * @param end end position (exclusive)
+     * @param priority true if priority lane
+     * @param startNanos publishing start time by System.nanoTime()
+     * @param millis record time millis
+     */
+    private void enqueueText(CharSequence text, int start, int end,
+            boolean priority, long startNanos, long millis) {
+        if (start == end) return;
+        if (isClosedLevel()) return;
+
+        TextChunk chunk = this.msgQueue.obtain();
+        chunk.append(text, start, end);
+        chunk.setEnqueueNanos(startNanos);
+        chunk.setRecordMillis(millis);
+        enqueue(chunk, priority);
+
+        return;
+    }
+
+    /**
+     * Preprocess filled chunk by producer thread.
+     *
+     * <p>ANSI escape sequences are stripped,
+     * long lines are guarded,
+     * and highlight rules are matched.
+     *
+     * <p>Never called on EDT nor with handler lock.
+     *
+     * @param chunk text chunk
+     */
+    private void preprocess(TextChunk chunk) {
+        if (this.ansiEnabled) {
+            ANSI_PARSERS.get().parse(chunk);
         }
 
-        Formatter formatter = getFormatter();
-        String message = formatter.format(logRec);
+        LongLineGuard guard = this.lineGuard;
+        if (guard != null) {
+            guard.guard(chunk);
+        }
 
-        publish(message);
+        HighlightRules rules = this.highlightRules;
+        if (rules != null) {
+            rules.match(chunk);
+        }
 
         return;
     }
 
     /**
-     * Publish a log message.
+     * Enqueue filled chunk.
      *
      * <p>Document model will be updated later.
      *
-     * @param message log message
+     * <p>On EDT, chunk is preprocessed and offered
+     * by background thread later.
+     *
+     * @param chunk text chunk
+     * @param priority true if priority lane
      */
-    private void publish(String message) {
-        boolean offered = this.msgQueue.offer(message);
-        assert offered;
-
+    private void enqueue(TextChunk chunk, boolean priority) {
         if (EventQueue.isDispatchThread()) {
-            this.transferTask.transferQueueToDoc();
+            EDT_OFFLOADER.execute(() -> offer(chunk, priority));
         } else {
+            offer(chunk, priority);
+        }
+        return;
+    }
+
+    /**
+     * Preprocess and offer filled chunk, then schedule transfer.
+     *
+     * @param chunk text chunk
+     * @param priority true if priority lane
+     */
+    private void offer(TextChunk chunk, boolean priority) {
+        preprocess(chunk);
+        this.msgQueue.offer(chunk, priority);
+        scheduleTransfer();
+        return;
+    }
+
+    /**
+     * Schedule transfer task to EDT.
+     *
+     * <p>If already scheduled, do nothing.
+     */
+    private void scheduleTransfer() {
+        if (this.transferScheduled.compareAndSet(false, true)) {
+            this.lagProbe.start();
             EventQueue.invokeLater(this.transferTask);
         }
+        return;
+    }
+
+    /**
+     * Return flush timeout.
+     *
+     * @return flush timeout (msec)
+     */
+    public long getFlushTimeout() {
+        return this.flushTimeout;
+    }
 
+    /**
+     * Set flush timeout.
+     *
+     * @param msec flush timeout (msec)
+     * @throws IllegalArgumentException negative timeout
+     */
+    public void setFlushTimeout(long msec) throws IllegalArgumentException {
+        if (msec < 0) throw new IllegalArgumentException();
+        this.flushTimeout = msec;
         return;
     }
 
     /**
      * {@inheritDoc}
+     *
+     * <p>Wait until records queued before are transferred to Document.
+     * Waiting is bounded by flush timeout.
+     *
+     * <p>On EDT, records queued before are transferred immediately
+     * without waiting.
+     * Records published on EDT and still being preprocessed
+     * by background thread are transferred later.
+     *
+     * <p>If interrupted while waiting, interrupt status is kept
+     * and this returns.
      */
     @Override
     public void flush() {
+        if (EventQueue.isDispatchThread()) {
+            this.transferTask.transferQueueToDoc(true);
+            return;
+        }
+
+        long target = this.msgQueue.getOfferedNum();
+        if (this.msgQueue.getTransferredNum() >= target) return;
+
+        scheduleTransfer();
+
+        long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(this.flushTimeout);
+        try {
+            this.msgQueue.awaitTransferred(target, timeoutNanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
         return;
     }
 
     /**
      * {@inheritDoc}
      *
+     * <p>Further records are ignored.
+     * Queued records are flushed, then resources are released.
+     *
+     * <p>Ring file, if any, is forced to storage device but not closed.
+     *
      * @throws SecurityException {@inheritDoc}
      */
     @Override
     public void close() throws SecurityException {
         setLevel(Level.OFF);
         flush();
+        this.lagProbe.stop();
+        this.msgQueue.releasePool();
+        this.rateLimiter = null;
+
+        ConsoleRingFile ring = this.ringFile;
+        if (ring != null) {
+            ring.force();
+        }
+
         return;
     }
 
@@ -146,8 +1072,29 @@ public void close() throws SecurityException {
      */
     private class LogTransferTask implements Runnable {
 
-        private final Queue<String> queue;
-        private final StringBuilder msgBuf;
+        private static final int MSGBUF_RETAIN = 64 * 1024;
+        private static final int DEF_STAMPS = 256;
+
+        private static final int MIN_BATCH = 16;
+        private static final int MAX_BATCH = 64 * 1024;
+        private static final int DEF_BATCH = 1024;
+
+        private final ChunkQueue queue;
+        private ArrayDeque<TextChunk> spare;
+        private ArrayDeque<TextChunk> priorSpare;
+        private StringBuilder msgBuf;
+        private long[] stamps;
+        private boolean inTransfer;
+
+        private SpanRing styleRing;
+        private long styleBase;
+        private SpanRing markRing;
+        private long markBase;
+        private TimeIndex timeIndex;
+        private long timeBase;
+
+        /** Max number of normal chunks per batch. Written by EDT only. */
+        private volatile int batchLimit = DEF_BATCH;
 
 
         /**
@@ -155,11 +1102,15 @@ private class LogTransferTask implements Runnable {
          *
          * @param queue log message queue
          */
-        LogTransferTask(Queue<String> queue) {
+        LogTransferTask(ChunkQueue queue) {
             super();
 
             this.queue = queue;
+            this.spare = new ArrayDeque<>();
+            this.priorSpare = new ArrayDeque<>();
             this.msgBuf = new StringBuilder();
+            this.stamps = new long[DEF_STAMPS];
+            this.inTransfer = false;
 
             return;
         }
@@ -170,32 +1121,267 @@ private class LogTransferTask implements Runnable {
          */
         @Override
         public void run() {
-            transferQueueToDoc();
+            SwingLogHandler.this.transferScheduled.set(false);
+            transferQueueToDoc(false);
             return;
         }
 
         /**
          * Transfer message from Queue to Document.
+         *
+         * <p>Re-entrant call from DocumentListener is postponed
+         * to next EventQueue turn.
+         *
+         * <p>If not all, one batch is transferred
+         * and rest is postponed to next EventQueue turn.
+         *
+         * <p>If all, chunks offered before this call are transferred.
+         * Chunks offered after are postponed to scheduled transfer,
+         * so that fast producers never keep EDT here.
+         *
+         * @param all true if whole queue offered before is transferred
          */
-        void transferQueueToDoc() {
-            int queueSize = this.queue.size();
-            if (queueSize == 1) {   // common case
-                String msg = this.queue.poll();
-                appendToDocument(msg);
-                return;
-            } else if (queueSize <= 0) {
+        void transferQueueToDoc(boolean all) {
+            if (this.inTransfer) {
+                scheduleTransfer();
                 return;
             }
 
-            this.msgBuf.setLength(0);
+            this.inTransfer = true;
+            try {
+                if (all) {
+                    transferUntil(this.queue.getOfferedNum());
+                } else {
+                    transferBatch();
+                }
+            } finally {
+                this.inTransfer = false;
+            }
+
+            return;
+        }
+
+        /**
+         * Transfer chunks until transferred count reaches target.
+         *
+         * <p>Remaining chunks are postponed to scheduled transfer.
+         *
+         * @param target offered count to be transferred
+         */
+        private void transferUntil(long target) {
+            for (;;) {
+                long rest = target - this.queue.getTransferredNum();
+                if (rest <= 0) break;
+                if (this.queue.size() <= 0) break;
+                int limit = (int) Long.min(rest, Integer.MAX_VALUE);
+                transferImpl(limit);
+            }
+
+            if (this.queue.size() > 0) scheduleTransfer();
+
+            return;
+        }
+
+        /**
+         * Transfer one batch, then adapt batch size.
+         *
+         * <p>Batch shrinks by half if EDT lag or batch duration
+         * exceeds latency target.
+         * Otherwise batch grows gradually while records remain.
+         */
+        private void transferBatch() {
+            int limit = this.batchLimit;
+
+            long start = System.nanoTime();
+            transferImpl(limit);
+            long elapsed = System.nanoTime() - start;
+
+            boolean remain = this.queue.size() > 0;
+
+            long target = TimeUnit.MILLISECONDS.toNanos(
+                    SwingLogHandler.this.edtLatencyTarget);
+            long lag = SwingLogHandler.this.lagProbe.getLagNanos();
+
+            if (lag > target || elapsed > target / 2) {
+                limit = Integer.max(MIN_BATCH, limit / 2);
+            } else if (remain) {
+                limit = Integer.min(MAX_BATCH, limit + limit / 4);
+            }
+            this.batchLimit = limit;
+
+            if (remain) {
+                scheduleTransfer();
+            }
+
+            return;
+        }
+
+        /**
+         * Keep enqueued time of chunk.
+         *
+         * @param idx index
+         * @param chunk chunk
+         */
+        private void keepStamp(int idx, TextChunk chunk) {
+            if (idx >= this.stamps.length) {
+                this.stamps = Arrays.copyOf(this.stamps, idx * 2);
+            }
+            this.stamps[idx] = chunk.getEnqueueNanos();
+            return;
+        }
+
+        /**
+         * Forget span rings of previous transfer.
+         */
+        private void resetRings() {
+            this.styleRing = null;
+            this.markRing = null;
+            this.timeIndex = null;
+            return;
+        }
+
+        /**
+         * Return ANSI style span ring for this transfer.
+         *
+         * @return span ring
+         */
+        private SpanRing getStyleRing() {
+            if (this.styleRing == null) {
+                Document doc = getDocument();
+                this.styleRing = SpanRing.obtain(doc, AnsiSgrParser.SPANS_KEY);
+                this.styleBase = this.styleRing.toAbsolute(doc.getLength());
+            }
+            return this.styleRing;
+        }
+
+        /**
+         * Return highlight span ring for this transfer.
+         *
+         * @return span ring
+         */
+        private SpanRing getMarkRing() {
+            if (this.markRing == null) {
+                Document doc = getDocument();
+                this.markRing = SpanRing.obtain(doc, HighlightRules.SPANS_KEY);
+                this.markBase = this.markRing.toAbsolute(doc.getLength());
+            }
+            return this.markRing;
+        }
+
+        /**
+         * Return time index for this transfer.
+         *
+         * @return time index
+         */
+        private TimeIndex getTimeIndex() {
+            if (this.timeIndex == null) {
+                Document doc = getDocument();
+                this.timeIndex = TimeIndex.obtain(doc);
+                this.timeBase = this.timeIndex.toAbsolute(doc.getLength());
+            }
+            return this.timeIndex;
+        }
+
+        /**
+         * Append chunk text to message buffer.
+         *
+         * <p>Spans of chunk are copied to span rings of Document.
+         * Record time is added to time index of Document.
+         *
+         * @param chunk chunk
+         */
+        private void appendChunk(TextChunk chunk) {
+            StringBuilder buf = this.msgBuf;
+            int offset = buf.length();
+
+            ChunkSpans styles = chunk.getStyles();
+            if (styles.size() > 0) {
+                SpanRing ring = getStyleRing();
+                styles.copyTo(ring, this.styleBase + offset);
+            }
+
+            ChunkSpans marks = chunk.getMarks();
+            if (marks.size() > 0) {
+                SpanRing ring = getMarkRing();
+                marks.copyTo(ring, this.markBase + offset);
+            }
+
+            getTimeIndex().add(this.timeBase + offset, chunk.getRecordMillis());
 
-            while (!this.queue.isEmpty()) {
-                String msg = this.queue.poll();
-                if (msg == null) break;
-                this.msgBuf.append(msg);
+            chunk.appendTo(buf);
+
+            return;
+        }
+
+        /**
+         * Record latency of transferred chunks.
+         *
+         * @param chunkNum number of chunks
+         */
+        private void recordLatency(int chunkNum) {
+            LatencyHistogram histogram = SwingLogHandler.this.latency;
+            long now = System.nanoTime();
+            for (int idx = 0; idx < chunkNum; idx++) {
+                histogram.recordNanos(now - this.stamps[idx]);
+            }
+
+            if (this.stamps.length > MSGBUF_RETAIN) {
+                this.stamps = new long[DEF_STAMPS];
+            }
+
+            return;
+        }
+
+        /**
+         * Transfer message from Queue to Document.
+         *
+         * <p>Pending chunks are concatenated and inserted at once.
+         * Priority chunks precede others, are never limited,
+         * and are also added to pinned document.
+         *
+         * @param limit max number of normal chunks
+         */
+        private void transferImpl(int limit) {
+            StringBuilder buf = this.msgBuf;
+            buf.setLength(0);
+
+            int chunkNum = 0;
+            resetRings();
+
+            ArrayDeque<TextChunk> prior =
+                    this.queue.swapPending(this.priorSpare, true);
+            for (TextChunk chunk : prior) {
+                appendChunk(chunk);
+                keepStamp(chunkNum++, chunk);
+                SwingLogHandler.this.pinned.add(chunk);
+            }
+            this.queue.recycle(prior);
+            this.priorSpare = prior;
+
+            ArrayDeque<TextChunk> batch =
+                    this.queue.takePending(this.spare, limit);
+            for (TextChunk chunk : batch) {
+                appendChunk(chunk);
+                keepStamp(chunkNum++, chunk);
+            }
+            this.queue.recycle(batch);
+            this.spare = batch;
+
+            if (chunkNum <= 0) return;
+
+            String str = buf.toString();
+            if (buf.capacity() > MSGBUF_RETAIN) {
+                this.msgBuf = new StringBuilder();
             }
 
-            appendToDocument(this.msgBuf);
+            appendToDocument(str);
+            recordLatency(chunkNum);
+            this.queue.markTransferred(chunkNum);
+
+            ConsoleRingFile ring = SwingLogHandler.this.ringFile;
+            if (ring != null) {
+                ring.write(str);
+            }
 
             return;
         }
@@ -204,19 +1390,29 @@ void transferQueueToDoc() {
          * Append text to last pos of Document.
          *
          * <p>DocumentEvent will happen from Document.
+         * Text is shared with SnapshotStore and LineBreakCache if attached.
          *
          * @param logMessage text
          */
-        private void appendToDocument(CharSequence logMessage) {
+        private void appendToDocument(String logMessage) {
             if (logMessage == null) return;
             if (logMessage.length() <= 0) return;
 
             Document doc = getDocument();
-            String str = logMessage.toString();
             int insertPt = doc.getLength();
 
+            SnapshotStore snapshots = SnapshotStore.get(doc);
+            if (snapshots != null) {
+                snapshots.offer(logMessage);
+            }
+
+            LineBreakCache breaks = LineBreakCache.get(doc);
+            if (breaks != null) {
+                breaks.offer(doc, logMessage);
+            }
+
             try {
-                doc.insertString(insertPt, str, null);
+                doc.insertString(insertPt, logMessage, null);
             } catch (BadLocationException e) {
                 assert false;
             }
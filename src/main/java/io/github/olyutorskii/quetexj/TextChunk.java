@@ -0,0 +1,296 @@
+/*
+ * License : The MIT License
+ * Copyright(c) 2019 Olyutorskii
+ */
+
+package io.github.olyutorskii.quetexj;
+
+/**
+ * Recyclable char buffer of queued log text.
+ *
+ * <p>Chunk is also CharSequence view of its text,
+ * so regex Matcher can be reset to it without copying.
+ *
+ * <p>Chunk carries ANSI style spans and highlight spans
+ * found by producer thread.
+ *
+ * <p>Not thread-safe.
+ */
+final class TextChunk implements CharSequence {
+
+    /** Default capacity. */
+    static final int DEF_CAPACITY = 256;
+    /** Capacity limit to keep buffer when recycled. */
+    static final int RETAIN_CAPACITY = 16 * 1024;
+
+
+    private char[] chars;
+    private int length;
+
+    private long enqueueNanos;
+    private long recordMillis;
+
+    private final ChunkSpans styles = new ChunkSpans();
+    private final ChunkSpans marks = new ChunkSpans();
+
+
+    /**
+     * Constructor.
+     */
+    TextChunk() {
+        super();
+        this.chars = new char[DEF_CAPACITY];
+        this.length = 0;
+        return;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return {@inheritDoc}
+     */
+    @Override
+    public int length() {
+        return this.length;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param index {@inheritDoc}
+     * @return {@inheritDoc}
+     * @throws IndexOutOfBoundsException {@inheritDoc}
+     */
+    @Override
+    public char charAt(int index) throws IndexOutOfBoundsException {
+        if (index < 0 || this.length <= index) {
+            throw new IndexOutOfBoundsException();
+        }
+        return this.chars[index];
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>New String is returned.
+     *
+     * @param start {@inheritDoc}
+     * @param end {@inheritDoc}
+     * @return {@inheritDoc}
+     * @throws IndexOutOfBoundsException {@inheritDoc}
+     */
+    @Override
+    public CharSequence subSequence(int start, int end)
+            throws IndexOutOfBoundsException {
+        if (start < 0 || end < start || this.length < end) {
+            throw new IndexOutOfBoundsException();
+        }
+        return new String(this.chars, start, end - start);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return new String(this.chars, 0, this.length);
+    }
+
+    /**
+     * Return ANSI style spans.
+     *
+     * @return style spans
+     */
+    ChunkSpans getStyles() {
+        return this.styles;
+    }
+
+    /**
+     * Return highlight spans.
+     *
+     * @return highlight spans
+     */
+    ChunkSpans getMarks() {
+        return this.marks;
+    }
+
+    /**
+     * Return buffer capacity.
+     *
+     * @return capacity
+     */
+    int capacity() {
+        return this.chars.length;
+    }
+
+    /**
+     * Return internal buffer.
+     *
+     * <p>Valid chars are from 0 to length.
+     *
+     * @return buffer
+     */
+    char[] getBuffer() {
+        return this.chars;
+    }
+
+    /**
+     * Return enqueued time.
+     *
+     * <p>For log record, this is the time when publishing started.
+     *
+     * @return enqueued time by System.nanoTime()
+     */
+    long getEnqueueNanos() {
+        return this.enqueueNanos;
+    }
+
+    /**
+     * Set enqueued time.
+     *
+     * @param nanos enqueued time by System.nanoTime()
+     */
+    void setEnqueueNanos(long nanos) {
+        this.enqueueNanos = nanos;
+        return;
+    }
+
+    /**
+     * Return record time.
+     *
+     * <p>For log record, this is LogRecord time.
+     * For appended text, this is the time when appended.
+     *
+     * @return time millis
+     */
+    long getRecordMillis() {
+        return this.recordMillis;
+    }
+
+    /**
+     * Set record time.
+     *
+     * @param millis time millis
+     */
+    void setRecordMillis(long millis) {
+        this.recordMillis = millis;
+        return;
+    }
+
+    /**
+     * Reset text and spans.
+     *
+     * <p>Over-grown buffer is released.
+     */
+    void clear() {
+        this.length = 0;
+        this.styles.clear();
+        this.marks.clear();
+        if (this.chars.length > RETAIN_CAPACITY) {
+            this.chars = new char[DEF_CAPACITY];
+        }
+        return;
+    }
+
+    /**
+     * Truncate text.
+     *
+     * @param len new length. Must not exceed current length.
+     */
+    void truncate(int len) {
+        assert 0 <= len && len <= this.length;
+        this.length = len;
+        return;
+    }
+
+    /**
+     * Ensure free space of buffer.
+     *
+     * @param addLen length to be appended
+     */
+    private void ensureRoom(int addLen) {
+        int need = this.length + addLen;
+        if (need <= this.chars.length) return;
+
+        int newCap = Integer.max(need, this.chars.length * 2);
+        char[] newChars = new char[newCap];
+        System.arraycopy(this.chars, 0, newChars, 0, this.length);
+        this.chars = newChars;
+
+        return;
+    }
+
+    /**
+     * Append chars.
+     *
+     * @param src source
+     * @param offset start position of source
+     * @param len length
+     */
+    void append(char[] src, int offset, int len) {
+        ensureRoom(len);
+        System.arraycopy(src, offset, this.chars, this.length, len);
+        this.length += len;
+        return;
+    }
+
+    /**
+     * Append chars.
+     *
+     * <p>String, StringBuilder and StringBuffer are copied in bulk.
+     *
+     * @param src source
+     * @param start start position of source
+     * @param end end position of source (exclusive)
+     */
+    void append(CharSequence src, int start, int end) {
+        int len = end - start;
+        ensureRoom(len);
+
+        if (src instanceof String) {
+            ((String) src).getChars(start, end, this.chars, this.length);
+        } else if (src instanceof StringBuilder) {
+            ((StringBuilder) src).getChars(start, end, this.chars, this.length);
+        } else if (src instanceof StringBuffer) {
+            ((StringBuffer) src).getChars(start, end, this.chars, this.length);
+        } else {
+            int pos = this.length;
+            for (int idx = start; idx < end; idx++) {
+                this.chars[pos++] = src.charAt(idx);
+            }
+        }
+
+        this.length += len;
+
+        return;
+    }
+
+    /**
+     * Append text to StringBuilder.
+     *
+     * @param buf output
+     */
+    void appendTo(StringBuilder buf) {
+        buf.append(this.chars, 0, this.length);
+        return;
+    }
+
+    /**
+     * Estimate retained heap bytes.
+     *
+     * @return bytes
+     * @see FootprintAnalyzer
+     */
+    long estimateBytes() {
+        long result = FootprintAnalyzer.objectBytes(
+                FootprintAnalyzer.REF * 3 + 4 + 8 * 2);
+        result += FootprintAnalyzer.arrayBytes(this.chars.length, 2);
+        result += this.styles.estimateBytes();
+        result += this.marks.estimateBytes();
+        return result;
+    }
+
+}
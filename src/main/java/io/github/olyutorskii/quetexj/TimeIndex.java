@@ -0,0 +1,374 @@
+/*
+ * License : The MIT License
+ * Copyright(c) 2019 Olyutorskii
+ */
+
+package io.github.olyutorskii.quetexj;
+
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.Document;
+
+/**
+ * Time index of append-only Document.
+ *
+ * <p>Each entry has start position of record text and its time.
+ * Times are kept monotonic:
+ * record older than previous one is regarded as same time.
+ * Record with same time as previous one adds no entry.
+ * So first record at or after any time is found by binary search.
+ *
+ * <p>Positions are kept as absolute stream positions,
+ * which count chars chopped from head of Document.
+ * Entries entirely chopped are dropped from ring head
+ * in O(1) amortized time.
+ * Entry of partially chopped record is kept,
+ * and its position is clipped to head of Document.
+ *
+ * <p>Insertion at head of Document restores chopped positions,
+ * so inserted text has no entries.
+ * Other insertion except at the end of Document,
+ * or removal except from head of Document, clears all entries.
+ *
+ * <p>Index is attached to Document as its property.
+ *
+ * <p>(EDT only.)
+ */
+final class TimeIndex {
+
+    /** Document property key of time index. */
+    static final String INDEX_KEY = "io.github.olyutorskii.quetexj.timeIndex";
+
+    private static final int DEF_CAPACITY = 256;
+
+
+    private long[] offsets;
+    private long[] times;
+
+    private int head;
+    private int size;
+
+    private long chopped;
+
+    private final Watcher watcher = new Watcher();
+
+
+    /**
+     * Constructor.
+     */
+    TimeIndex() {
+        super();
+
+        this.offsets = new long[DEF_CAPACITY];
+        this.times = new long[DEF_CAPACITY];
+
+        return;
+    }
+
+
+    /**
+     * Return time index attached to Document.
+     *
+     * @param doc document
+     * @return time index. null if none.
+     */
+    static TimeIndex get(Document doc) {
+        Object prop = doc.getProperty(INDEX_KEY);
+        if (prop instanceof TimeIndex) {
+            return (TimeIndex) prop;
+        }
+        return null;
+    }
+
+    /**
+     * Return time index attached to Document.
+     *
+     * <p>If none, new index is attached.
+     *
+     * @param doc document
+     * @return time index
+     */
+    static TimeIndex obtain(Document doc) {
+        TimeIndex result = get(doc);
+        if (result != null) return result;
+
+        result = new TimeIndex();
+        doc.addDocumentListener(result.watcher);
+        doc.putProperty(INDEX_KEY, result);
+
+        return result;
+    }
+
+    /**
+     * Convert Document offset to absolute position.
+     *
+     * @param offset Document offset
+     * @return absolute position
+     */
+    long toAbsolute(int offset) {
+        return this.chopped + offset;
+    }
+
+    /**
+     * Return number of entries.
+     *
+     * @return number of entries
+     */
+    int size() {
+        return this.size;
+    }
+
+    /**
+     * Return time of record at head of Document.
+     *
+     * @return time millis. -1 if no entry.
+     */
+    long getHeadMillis() {
+        if (this.size <= 0) return -1L;
+        return this.times[this.head];
+    }
+
+    /**
+     * Convert entry index to ring slot.
+     *
+     * @param idx entry index
+     * @return slot
+     */
+    private int slot(int idx) {
+        int result = this.head + idx;
+        if (result >= this.times.length) result -= this.times.length;
+        return result;
+    }
+
+    /**
+     * Search Document offset of first record at or after time.
+     *
+     * <p>Binary search.
+     *
+     * @param millis time millis
+     * @return Document offset. -1 if no such record.
+     */
+    int search(long millis) {
+        int low = 0;
+        int high = this.size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (this.times[slot(mid)] < millis) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+
+        if (low >= this.size) return -1;
+
+        long result = this.offsets[slot(low)] - this.chopped;
+        if (result < 0) result = 0;
+
+        return (int) result;
+    }
+
+    /**
+     * Add entry at the end of index.
+     *
+     * @param absOffset absolute start position of record
+     * @param millis time millis of record
+     */
+    void add(long absOffset, long millis) {
+        if (this.size > 0) {
+            int last = slot(this.size - 1);
+            assert this.offsets[last] <= absOffset;
+            if (this.times[last] >= millis) return;
+        }
+
+        if (this.size >= this.times.length) grow();
+
+        int tail = slot(this.size);
+        this.offsets[tail] = absOffset;
+        this.times[tail] = millis;
+        this.size++;
+
+        return;
+    }
+
+    /**
+     * Add entry at the head of index.
+     *
+     * <p>If head entry starts at or before position, do nothing.
+     * Time is kept monotonic.
+     *
+     * @param absOffset absolute start position of record
+     * @param millis time millis of record
+     */
+    void addHead(long absOffset, long millis) {
+        long headMillis = millis;
+        if (this.size > 0) {
+            if (this.offsets[this.head] <= absOffset) return;
+            headMillis = Long.min(headMillis, this.times[this.head]);
+        }
+
+        if (this.size >= this.times.length) grow();
+
+        this.head = slot(this.times.length - 1);
+        this.offsets[this.head] = absOffset;
+        this.times[this.head] = headMillis;
+        this.size++;
+
+        return;
+    }
+
+    /**
+     * Double ring capacity.
+     */
+    private void grow() {
+        int newCap = this.times.length * 2;
+        this.offsets = unwrap(this.offsets, newCap);
+        this.times = unwrap(this.times, newCap);
+        this.head = 0;
+        return;
+    }
+
+    /**
+     * Copy ring array to larger array from head.
+     *
+     * @param ring ring array
+     * @param newCap new capacity
+     * @return new array
+     */
+    private long[] unwrap(long[] ring, int newCap) {
+        long[] result = new long[newCap];
+        int firstLen = Integer.min(this.size, ring.length - this.head);
+        System.arraycopy(ring, this.head, result, 0, firstLen);
+        System.arraycopy(ring, 0, result, firstLen, this.size - firstLen);
+        return result;
+    }
+
+    /**
+     * Notify chars chopped from head of Document.
+     *
+     * <p>Entries entirely chopped are dropped.
+     *
+     * @param len chopped length
+     */
+    void chopHead(int len) {
+        this.chopped += len;
+
+        while (this.size > 1 && this.offsets[slot(1)] <= this.chopped) {
+            this.head = slot(1);
+            this.size--;
+        }
+
+        return;
+    }
+
+    /**
+     * Notify chars inserted at head of Document.
+     *
+     * <p>Positions of entries are kept.
+     * Absolute position may become negative.
+     *
+     * @param len inserted length
+     */
+    void unchopHead(int len) {
+        this.chopped -= len;
+        return;
+    }
+
+    /**
+     * Remove all entries.
+     *
+     * <p>Over-grown arrays are released.
+     */
+    void clear() {
+        this.head = 0;
+        this.size = 0;
+
+        if (this.times.length > DEF_CAPACITY) {
+            this.offsets = new long[DEF_CAPACITY];
+            this.times = new long[DEF_CAPACITY];
+        }
+
+        return;
+    }
+
+    /**
+     * Estimate retained heap bytes.
+     *
+     * @return bytes
+     * @see FootprintAnalyzer
+     */
+    long estimateBytes() {
+        long result = FootprintAnalyzer.objectBytes(
+                FootprintAnalyzer.REF * 3 + 4 * 2 + 8);
+        result += FootprintAnalyzer.arrayBytes(this.offsets.length, 8);
+        result += FootprintAnalyzer.arrayBytes(this.times.length, 8);
+        return result;
+    }
+
+
+    /**
+     * Document modification watcher.
+     */
+    private class Watcher implements DocumentListener {
+
+        /**
+         * Constructor.
+         */
+        Watcher() {
+            super();
+            return;
+        }
+
+
+        /**
+         * {@inheritDoc}
+         *
+         * <p>Insertion at the head unchops positions.
+         * Other insertion except at the end clears all entries.
+         *
+         * @param ev {@inheritDoc}
+         */
+        @Override
+        public void insertUpdate(DocumentEvent ev) {
+            int insEnd = ev.getOffset() + ev.getLength();
+            if (insEnd == ev.getDocument().getLength()) return;
+
+            if (ev.getOffset() == 0) {
+                unchopHead(ev.getLength());
+            } else {
+                clear();
+            }
+
+            return;
+        }
+
+        /**
+         * {@inheritDoc}
+         *
+         * <p>Removal except from head clears all entries.
+         *
+         * @param ev {@inheritDoc}
+         */
+        @Override
+        public void removeUpdate(DocumentEvent ev) {
+            if (ev.getOffset() == 0) {
+                chopHead(ev.getLength());
+            } else {
+                clear();
+            }
+            return;
+        }
+
+        /**
+         * {@inheritDoc}
+         *
+         * @param ev {@inheritDoc}
+         */
+        @Override
+        public void changedUpdate(DocumentEvent ev) {
+            return;
+        }
+
+    }
+
+}
@@ -0,0 +1,440 @@
+/*
+ * License : The MIT License
+ * Copyright(c) 2019 Olyutorskii
+ */
+
+package io.github.olyutorskii.quetexj;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+
+/**
+ * Compressed in-heap warm tier of chopped history.
+ *
+ * <p>Text chopped by HeightKeeper is packed into fixed-size blocks,
+ * which are compressed by Deflater.
+ * Each block is indexed by its first line number, line count
+ * and time of its earliest record.
+ * Line numbers count lines since the tier was created.
+ *
+ * <p>If compressed size exceeds capacity, oldest blocks are discarded.
+ *
+ * <p>Newest history is restored to head of Document on demand,
+ * block by block.
+ *
+ * <p>(EDT only.)
+ *
+ * @see HeightKeeper#setWarmTier(WarmTier)
+ * @see MvcFacade#setWarmTier(WarmTier)
+ */
+public class WarmTier {
+
+    /** Default block size (chars). */
+    public static final int DEF_BLOCK_CHARS = 64 * 1024;
+    /** Default capacity (compressed bytes). */
+    public static final long DEF_CAPACITY = 8L * 1024 * 1024;
+
+    private static final int MIN_BLOCK_CHARS = 1024;
+    private static final int WORK_SIZE = 16 * 1024;
+
+
+    private final int blockChars;
+    private final long capacity;
+
+    private final List<Block> blocks = new ArrayList<>();
+    private long compressedBytes;
+    private long keptBlockChars;
+
+    private final StringBuilder pending = new StringBuilder();
+    /** Start offsets in pending text and times of stored texts. */
+    private final Deque<long[]> pendingMarks = new ArrayDeque<>();
+    private long pendingFirstLine;
+
+    private int restoredChars;
+
+    private final Deflater deflater = new Deflater();
+    private final Inflater inflater = new Inflater();
+    private byte[] work = new byte[WORK_SIZE];
+
+
+    /**
+     * Constructor.
+     *
+     * <p>Default block size and capacity are used.
+     */
+    public WarmTier() {
+        this(DEF_BLOCK_CHARS, DEF_CAPACITY);
+        return;
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param blockChars block size (chars)
+     * @param capacity capacity (compressed bytes)
+     * @throws IllegalArgumentException too small argument
+     */
+    public WarmTier(int blockChars, long capacity)
+            throws IllegalArgumentException {
+        super();
+
+        if (blockChars < MIN_BLOCK_CHARS) throw new IllegalArgumentException();
+        if (capacity <= 0) throw new IllegalArgumentException();
+
+        this.blockChars = blockChars;
+        this.capacity = capacity;
+
+        return;
+    }
+
+
+    /**
+     * Return number of compressed blocks.
+     *
+     * @return number of blocks
+     */
+    public int getBlockCount() {
+        return this.blocks.size();
+    }
+
+    /**
+     * Return first line number of block.
+     *
+     * @param idx block index. 0 is oldest.
+     * @return line number
+     * @throws IndexOutOfBoundsException illegal index
+     */
+    public long getBlockFirstLine(int idx) throws IndexOutOfBoundsException {
+        return this.blocks.get(idx).firstLine;
+    }
+
+    /**
+     * Return number of lines in block.
+     *
+     * @param idx block index. 0 is oldest.
+     * @return number of lines
+     * @throws IndexOutOfBoundsException illegal index
+     */
+    public int getBlockLineCount(int idx) throws IndexOutOfBoundsException {
+        return this.blocks.get(idx).lines;
+    }
+
+    /**
+     * Return time of earliest record in block.
+     *
+     * @param idx block index. 0 is oldest.
+     * @return time millis. -1 if unknown.
+     * @throws IndexOutOfBoundsException illegal index
+     */
+    public long getBlockFirstMillis(int idx) throws IndexOutOfBoundsException {
+        return this.blocks.get(idx).firstMillis;
+    }
+
+    /**
+     * Return compressed size of all blocks.
+     *
+     * @return bytes
+     */
+    public long getCompressedBytes() {
+        return this.compressedBytes;
+    }
+
+    /**
+     * Return number of kept chars, including not yet compressed ones.
+     *
+     * @return number of chars
+     */
+    public long getKeptChars() {
+        return this.keptBlockChars + this.pending.length();
+    }
+
+    /**
+     * Return whether no history is kept.
+     *
+     * @return true if empty
+     */
+    public boolean isEmpty() {
+        return this.blocks.isEmpty() && this.pending.length() <= 0;
+    }
+
+    /**
+     * Return number of restored chars not yet chopped again.
+     *
+     * @return number of chars
+     */
+    int getRestoredChars() {
+        return this.restoredChars;
+    }
+
+    /**
+     * Estimate retained heap bytes.
+     *
+     * <p>Native memory of Deflater and Inflater is not counted.
+     *
+     * @return bytes
+     * @see FootprintAnalyzer
+     */
+    long estimateBytes() {
+        long blockBytes = FootprintAnalyzer.objectBytes(
+                FootprintAnalyzer.REF + 4 * 2 + 8 * 2);
+        long markBytes = FootprintAnalyzer.arrayBytes(2, 8)
+                + FootprintAnalyzer.REF;
+
+        long result = this.compressedBytes;
+        result += (blockBytes + FootprintAnalyzer.ARRAY_HEADER
+                + FootprintAnalyzer.REF) * this.blocks.size();
+        result += FootprintAnalyzer.arrayBytes(this.pending.capacity(), 2);
+        result += markBytes * this.pendingMarks.size();
+        result += FootprintAnalyzer.arrayBytes(this.work.length, 1);
+
+        return result;
+    }
+
+    /**
+     * Discard all history.
+     */
+    public void clear() {
+        this.blocks.clear();
+        this.compressedBytes = 0;
+        this.keptBlockChars = 0;
+        this.pending.setLength(0);
+        this.pending.trimToSize();
+        this.pendingMarks.clear();
+        this.restoredChars = 0;
+        return;
+    }
+
+    /**
+     * Store chopped text.
+     *
+     * @param text chopped text
+     * @param millis time of earliest record in text. -1 if unknown.
+     */
+    void store(CharSequence text, long millis) {
+        int len = text.length();
+        if (len <= 0) return;
+
+        this.restoredChars = Integer.max(0, this.restoredChars - len);
+
+        long[] mark = {this.pending.length(), millis};
+        this.pendingMarks.addLast(mark);
+        this.pending.append(text);
+
+        while (this.pending.length() >= this.blockChars) {
+            packBlock();
+        }
+
+        while (this.compressedBytes > this.capacity && !this.blocks.isEmpty()) {
+            Block oldest = this.blocks.remove(0);
+            this.compressedBytes -= oldest.data.length;
+            this.keptBlockChars -= oldest.chars;
+        }
+
+        return;
+    }
+
+    /**
+     * Compress head of pending text into block.
+     *
+     * <p>Block ends at line end if possible.
+     */
+    private void packBlock() {
+        int cut = this.blockChars;
+        int lastNl = this.pending.lastIndexOf("\n", cut - 1);
+        if (lastNl >= 0) cut = lastNl + 1;
+
+        String text = this.pending.substring(0, cut);
+        this.pending.delete(0, cut);
+
+        Block block = new Block();
+        block.data = deflate(text);
+        block.chars = text.length();
+        block.lines = countLines(text);
+        block.firstLine = this.pendingFirstLine;
+        block.firstMillis = this.pendingMarks.getFirst()[1];
+        shiftMarks(cut);
+
+        this.pendingFirstLine += block.lines;
+
+        this.blocks.add(block);
+        this.compressedBytes += block.data.length;
+        this.keptBlockChars += block.chars;
+
+        return;
+    }
+
+    /**
+     * Shift marks of pending text by packed length.
+     *
+     * <p>Mark containing new head of pending text is kept.
+     *
+     * @param cut packed length
+     */
+    private void shiftMarks(int cut) {
+        Deque<long[]> marks = this.pendingMarks;
+
+        while (marks.size() > 1) {
+            long[] next = marks.pollFirst();
+            if (marks.getFirst()[0] > cut) {
+                marks.addFirst(next);
+                break;
+            }
+        }
+
+        for (long[] mark : marks) {
+            mark[0] = Long.max(0L, mark[0] - cut);
+        }
+        if (this.pending.length() <= 0) marks.clear();
+
+        return;
+    }
+
+    /**
+     * Count line separators.
+     *
+     * @param text text
+     * @return number of lines
+     */
+    private static int countLines(String text) {
+        int result = 0;
+        int len = text.length();
+        for (int idx = 0; idx < len; idx++) {
+            if (text.charAt(idx) == '\n') result++;
+        }
+        return result;
+    }
+
+    /**
+     * Compress text.
+     *
+     * @param text text
+     * @return compressed bytes
+     */
+    private byte[] deflate(String text) {
+        byte[] input = text.getBytes(StandardCharsets.UTF_8);
+
+        Deflater def = this.deflater;
+        def.reset();
+        def.setInput(input);
+        def.finish();
+
+        int outLen = 0;
+        while (!def.finished()) {
+            if (outLen >= this.work.length) {
+                this.work = Arrays.copyOf(this.work, this.work.length * 2);
+            }
+            outLen += def.deflate(this.work, outLen, this.work.length - outLen);
+        }
+
+        byte[] result = Arrays.copyOf(this.work, outLen);
+        return result;
+    }
+
+    /**
+     * Decompress block.
+     *
+     * @param block block
+     * @return text
+     */
+    private String inflate(Block block) {
+        Inflater inf = this.inflater;
+        inf.reset();
+        inf.setInput(block.data);
+
+        int outLen = 0;
+        try {
+            while (!inf.finished()) {
+                if (outLen >= this.work.length) {
+                    this.work = Arrays.copyOf(this.work, this.work.length * 2);
+                }
+                int len = inf.inflate(this.work, outLen, this.work.length - outLen);
+                if (len == 0 && inf.needsInput()) break;
+                outLen += len;
+            }
+        } catch (DataFormatException e) {
+            assert false;
+        }
+
+        String result = new String(this.work, 0, outLen, StandardCharsets.UTF_8);
+        return result;
+    }
+
+    /**
+     * Restore newest history to head of Document.
+     *
+     * <p>Not yet compressed text is restored first,
+     * then newest block.
+     * Time of restored text is added to time index of Document.
+     *
+     * @param doc document
+     * @return restored length. 0 if empty.
+     */
+    int restoreTo(Document doc) {
+        String text;
+        long millis;
+
+        if (this.pending.length() > 0) {
+            text = this.pending.toString();
+            millis = this.pendingMarks.getFirst()[1];
+            this.pending.setLength(0);
+            this.pendingMarks.clear();
+        } else if (!this.blocks.isEmpty()) {
+            Block block = this.blocks.remove(this.blocks.size() - 1);
+            this.compressedBytes -= block.data.length;
+            this.keptBlockChars -= block.chars;
+            this.pendingFirstLine = block.firstLine;
+            text = inflate(block);
+            millis = block.firstMillis;
+        } else {
+            return 0;
+        }
+
+        try {
+            doc.insertString(0, text, null);
+        } catch (BadLocationException e) {
+            assert false;
+            return 0;
+        }
+
+        TimeIndex index = TimeIndex.get(doc);
+        if (index != null && millis >= 0) {
+            index.addHead(index.toAbsolute(0), millis);
+        }
+
+        this.restoredChars += text.length();
+
+        return text.length();
+    }
+
+
+    /**
+     * Compressed block.
+     */
+    private static final class Block {
+
+        private byte[] data;
+        private int chars;
+        private int lines;
+        private long firstLine;
+        private long firstMillis;
+
+        /**
+         * Constructor.
+         */
+        Block() {
+            super();
+            return;
+        }
+
+    }
+
+}
@@ -0,0 +1,132 @@
+/*
+ * License : The MIT License
+ * Copyright(c) 2019 Olyutorskii
+ */
+
+package io.github.olyutorskii.quetexj;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Test of AnsiSgrParser.
+ */
+public class AnsiSgrParserTest {
+
+    private static final int RED = AnsiSgrParser.FG_SET | 1;
+
+
+    /**
+     * Constructor.
+     */
+    public AnsiSgrParserTest() {
+        super();
+        return;
+    }
+
+
+    /**
+     * Parse text as one chunk.
+     *
+     * @param text text
+     * @return parsed chunk
+     */
+    private static TextChunk parse(String text) {
+        TextChunk chunk = new TextChunk();
+        chunk.append(text, 0, text.length());
+        new AnsiSgrParser().parse(chunk);
+        return chunk;
+    }
+
+    /**
+     * Copy style spans of chunk to ring.
+     *
+     * @param chunk chunk
+     * @return span ring
+     */
+    private static SpanRing spansOf(TextChunk chunk) {
+        SpanRing ring = new SpanRing();
+        chunk.getStyles().copyTo(ring, 0L);
+        return ring;
+    }
+
+    /**
+     * SGR color and reset.
+     */
+    @Test
+    public void testSgr() {
+        TextChunk chunk = parse("\u001b[31mred\u001b[m plain");
+        assertEquals("red plain", chunk.toString());
+
+        SpanRing ring = spansOf(chunk);
+        assertEquals(1, ring.size());
+        assertEquals(0, ring.getStart(0));
+        assertEquals(3, ring.getEnd(0));
+        assertEquals(RED, ring.getTag(0));
+
+        return;
+    }
+
+    /**
+     * Escape sequence with intermediate byte, as "tput sgr0" emits.
+     */
+    @Test
+    public void testIntermediate() {
+        TextChunk chunk = parse("\u001b[31mred\u001b(B\u001b[m plain");
+        assertEquals("red plain", chunk.toString());
+        assertEquals(1, spansOf(chunk).size());
+
+        chunk = parse("a\u001b#8b");
+        assertEquals("ab", chunk.toString());
+
+        chunk = parse("a\u001b(");
+        assertEquals("a", chunk.toString());
+
+        return;
+    }
+
+    /**
+     * Control strings terminated by BEL or ST.
+     */
+    @Test
+    public void testControlString() {
+        TextChunk chunk = parse("\u001b]0;title\u0007text");
+        assertEquals("text", chunk.toString());
+
+        chunk = parse("\u001b]8;;http://example.com\u001b\\link\u001b]8;;\u001b\\");
+        assertEquals("link", chunk.toString());
+
+        chunk = parse("a\u001bPq#0\u001b\\b\u001b_apc\u0007c\u001b^pm\u001b\\d");
+        assertEquals("abcd", chunk.toString());
+
+        chunk = parse("a\u001b]0;title\u001b[31mred");
+        assertEquals("ared", chunk.toString());
+        assertEquals(1, spansOf(chunk).size());
+
+        return;
+    }
+
+    /**
+     * Unterminated sequences are dropped.
+     */
+    @Test
+    public void testUnterminated() {
+        assertEquals("text", parse("text\u001b]0;title").toString());
+        assertEquals("text", parse("text\u001b]0;title\u001b").toString());
+        assertEquals("text", parse("text\u001b[31").toString());
+        assertEquals("text", parse("text\u001b").toString());
+        return;
+    }
+
+    /**
+     * Two-char escape sequence.
+     */
+    @Test
+    public void testTwoChars() {
+        assertEquals("ab", parse("a\u001b=b").toString());
+        assertEquals("ab", parse("a\u001bcb").toString());
+        return;
+    }
+
+}
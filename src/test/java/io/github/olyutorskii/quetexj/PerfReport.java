@@ -0,0 +1,253 @@
+/*
+ * License : The MIT License
+ * Copyright(c) 2019 Olyutorskii
+ */
+
+package io.github.olyutorskii.quetexj;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Machine-readable report of performance suite.
+ *
+ * <p>Each metric has measured value, unit and budget.
+ * Report is written as JSON file "perf-report.json"
+ * into directory specified by system property "quetexj.perf.reportDir",
+ * or "target/perf" by default.
+ *
+ * <p>Time budgets are multiplied by system property
+ * "quetexj.perf.budgetScale" (default 1.0) for slow machines.
+ */
+final class PerfReport {
+
+    /** System property of report directory. */
+    static final String PROP_DIR = "quetexj.perf.reportDir";
+    /** System property of time budget scale. */
+    static final String PROP_SCALE = "quetexj.perf.budgetScale";
+
+    private static final String DEF_DIR = "target/perf";
+    private static final String FILE_NAME = "perf-report.json";
+
+
+    private final List<Metric> metrics = new ArrayList<>();
+
+
+    /**
+     * Constructor.
+     */
+    PerfReport() {
+        super();
+        return;
+    }
+
+
+    /**
+     * Return time budget scale.
+     *
+     * @return scale
+     */
+    static double getBudgetScale() {
+        String prop = System.getProperty(PROP_SCALE);
+        if (prop == null || prop.trim().isEmpty()) return 1.0;
+        double result = Double.parseDouble(prop.trim());
+        return result;
+    }
+
+    /**
+     * Add metric whose value must not exceed budget.
+     *
+     * @param name metric name
+     * @param value measured value
+     * @param unit unit of value and budget
+     * @param budget upper budget
+     * @return true if within budget
+     */
+    synchronized boolean addUpper(String name, double value, String unit,
+                                  double budget) {
+        Metric metric = new Metric(name, value, unit, budget, true);
+        this.metrics.add(metric);
+        return metric.pass;
+    }
+
+    /**
+     * Add metric whose value must not fall below budget.
+     *
+     * @param name metric name
+     * @param value measured value
+     * @param unit unit of value and budget
+     * @param budget lower budget
+     * @return true if within budget
+     */
+    synchronized boolean addLower(String name, double value, String unit,
+                                  double budget) {
+        Metric metric = new Metric(name, value, unit, budget, false);
+        this.metrics.add(metric);
+        return metric.pass;
+    }
+
+    /**
+     * Write report file.
+     *
+     * @return report file
+     * @throws IOException output error
+     */
+    synchronized Path write() throws IOException {
+        Path dir = Paths.get(System.getProperty(PROP_DIR, DEF_DIR));
+        Files.createDirectories(dir);
+        Path file = dir.resolve(FILE_NAME);
+
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write(toJson());
+        }
+
+        return file;
+    }
+
+    /**
+     * Return report as JSON text.
+     *
+     * @return JSON text
+     */
+    synchronized String toJson() {
+        StringBuilder buf = new StringBuilder();
+
+        buf.append("{\n");
+        buf.append("  \"java\": ");
+        appendString(buf, System.getProperty("java.version"));
+        buf.append(",\n");
+        buf.append("  \"budgetScale\": ");
+        appendNumber(buf, getBudgetScale());
+        buf.append(",\n");
+        buf.append("  \"metrics\": [");
+
+        boolean first = true;
+        for (Metric metric : this.metrics) {
+            if (!first) buf.append(',');
+            first = false;
+            buf.append("\n    ");
+            metric.appendJson(buf);
+        }
+
+        buf.append("\n  ]\n");
+        buf.append("}\n");
+
+        return buf.toString();
+    }
+
+    /**
+     * Append JSON string.
+     *
+     * @param buf buffer
+     * @param text text
+     */
+    private static void appendString(StringBuilder buf, String text) {
+        buf.append('"');
+        int len = text.length();
+        for (int idx = 0; idx < len; idx++) {
+            char ch = text.charAt(idx);
+            if (ch == '"' || ch == '\\') {
+                buf.append('\\').append(ch);
+            } else if (ch < 0x20) {
+                buf.append(String.format(Locale.ROOT, "\\u%04x", (int) ch));
+            } else {
+                buf.append(ch);
+            }
+        }
+        buf.append('"');
+        return;
+    }
+
+    /**
+     * Append JSON number.
+     *
+     * @param buf buffer
+     * @param val value
+     */
+    private static void appendNumber(StringBuilder buf, double val) {
+        if (Double.isNaN(val) || Double.isInfinite(val)) {
+            buf.append("null");
+        } else {
+            buf.append(String.format(Locale.ROOT, "%.3f", val));
+        }
+        return;
+    }
+
+
+    /**
+     * Measured metric.
+     */
+    private static final class Metric {
+
+        private final String name;
+        private final double value;
+        private final String unit;
+        private final double budget;
+        private final boolean upper;
+        private final boolean pass;
+
+
+        /**
+         * Constructor.
+         *
+         * @param name metric name
+         * @param value measured value
+         * @param unit unit
+         * @param budget budget
+         * @param upper true if budget is upper bound
+         */
+        Metric(String name, double value, String unit, double budget,
+               boolean upper) {
+            super();
+
+            this.name = name;
+            this.value = value;
+            this.unit = unit;
+            this.budget = budget;
+            this.upper = upper;
+
+            if (upper) {
+                this.pass = value <= budget;
+            } else {
+                this.pass = value >= budget;
+            }
+
+            return;
+        }
+
+
+        /**
+         * Append metric as JSON object.
+         *
+         * @param buf buffer
+         */
+        void appendJson(StringBuilder buf) {
+            buf.append("{\"name\": ");
+            appendString(buf, this.name);
+            buf.append(", \"value\": ");
+            appendNumber(buf, this.value);
+            buf.append(", \"unit\": ");
+            appendString(buf, this.unit);
+            buf.append(", \"budget\": ");
+            appendNumber(buf, this.budget);
+            buf.append(", \"bound\": ");
+            if (this.upper) {
+                appendString(buf, "upper");
+            } else {
+                appendString(buf, "lower");
+            }
+            buf.append(", \"pass\": ").append(this.pass);
+            buf.append('}');
+            return;
+        }
+
+    }
+
+}
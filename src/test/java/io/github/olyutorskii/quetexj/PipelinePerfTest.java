@@ -0,0 +1,567 @@
+/*
+ * License : The MIT License
+ * Copyright(c) 2019 Olyutorskii
+ */
+
+package io.github.olyutorskii.quetexj;
+
+import java.awt.EventQueue;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationTargetException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import javax.swing.JTextArea;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Headless performance regression suite of logging pipeline.
+ *
+ * <p>MvcFacade is driven with fixed workloads,
+ * and budgets are asserted on allocation bytes per record and per append,
+ * chop time versus retained size, drain throughput,
+ * and flush latency under running producers.
+ *
+ * <p>Run by "mvn -Pperf verify".
+ * Results are written by PerfReport.
+ *
+ * @see PerfReport
+ */
+@Tag("perf")
+public class PipelinePerfTest {
+
+    private static final long SEED = 0x5155455445584aL;
+
+    private static final int ALLOC_WARMUP = 20_000;
+    private static final int ALLOC_RECORDS = 50_000;
+    private static final double BUDGET_ALLOC_PRODUCER = 1536.0;
+    private static final double BUDGET_ALLOC_EDT = 16384.0;
+
+    private static final int APPEND_WARMUP = 20_000;
+    private static final int APPEND_NUM = 100_000;
+    private static final int APPEND_BATCH = ChunkQueue.POOL_MAX / 2;
+    private static final double BUDGET_ALLOC_APPEND = 2.0;
+
+    private static final int[] CHOP_LINES = {2_000, 8_000, 32_000};
+    private static final int CHOP_TRIES = 5;
+    private static final int TEXT_WIDTH = 800;
+    private static final double BUDGET_CHOP_MAX = 50.0;
+    private static final double BUDGET_CHOP_GROWTH = 4.0;
+
+    private static final int DRAIN_RECORDS = 100_000;
+    private static final double BUDGET_DRAIN = 10_000.0;
+
+    private static final int FLUSH_PRODUCERS = 2;
+    private static final int FLUSH_BURST = 10;
+    private static final int FLUSH_TRIES = 20;
+    private static final long FLUSH_INTERVAL = 10L;  // msec
+
+    private static final long NANO_PER_MS = 1_000_000L;
+
+    private static PerfReport report;
+
+
+    /**
+     * Constructor.
+     */
+    public PipelinePerfTest() {
+        super();
+        return;
+    }
+
+
+    /**
+     * Prepare report.
+     */
+    @BeforeAll
+    public static void setUpClass() {
+        System.setProperty("java.awt.headless", "true");
+        report = new PerfReport();
+        return;
+    }
+
+    /**
+     * Write report.
+     *
+     * @throws Exception output error
+     */
+    @AfterAll
+    public static void tearDownClass() throws Exception {
+        report.write();
+        return;
+    }
+
+    /**
+     * Build fixed workload of log records.
+     *
+     * @param num number of records
+     * @param seed random seed
+     * @return records
+     */
+    private static LogRecord[] buildRecords(int num, long seed) {
+        Random rnd = new Random(seed);
+        LogRecord[] result = new LogRecord[num];
+
+        StringBuilder buf = new StringBuilder();
+        for (int idx = 0; idx < num; idx++) {
+            buf.setLength(0);
+            buf.append("record ").append(idx).append(' ');
+            int words = 4 + rnd.nextInt(12);
+            for (int word = 0; word < words; word++) {
+                int wordLen = 2 + rnd.nextInt(8);
+                for (int ct = 0; ct < wordLen; ct++) {
+                    buf.append((char) ('a' + rnd.nextInt(26)));
+                }
+                buf.append(' ');
+            }
+
+            Level level = Level.INFO;
+            if (rnd.nextInt(50) == 0) level = Level.WARNING;
+
+            LogRecord logRec = new LogRecord(level, buf.toString());
+            logRec.setLoggerName("perf");
+            logRec.setSourceClassName("perf.Workload");
+            logRec.setSourceMethodName("run");
+            logRec.setMillis(1_500_000_000_000L + idx);
+            result[idx] = logRec;
+        }
+
+        return result;
+    }
+
+    /**
+     * Build fixed text of lines.
+     *
+     * @param lines number of lines
+     * @return text
+     */
+    private static String buildLines(int lines) {
+        Random rnd = new Random(SEED);
+        StringBuilder buf = new StringBuilder();
+
+        for (int idx = 0; idx < lines; idx++) {
+            buf.append("line ").append(idx).append(' ');
+            int len = 20 + rnd.nextInt(100);
+            for (int ct = 0; ct < len; ct++) {
+                buf.append((char) ('a' + rnd.nextInt(26)));
+                if (rnd.nextInt(8) == 0) buf.append(' ');
+            }
+            buf.append('\n');
+        }
+
+        return buf.toString();
+    }
+
+    /**
+     * Run task on EDT and wait.
+     *
+     * @param task task
+     * @throws Exception error on EDT
+     */
+    private static void onEdt(Runnable task) throws Exception {
+        try {
+            EventQueue.invokeAndWait(task);
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) throw (Exception) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw e;
+        }
+        return;
+    }
+
+    /**
+     * Return thread allocation MXBean.
+     *
+     * @return MXBean. null if not supported.
+     */
+    private static com.sun.management.ThreadMXBean getAllocBean() {
+        Object bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) return null;
+
+        com.sun.management.ThreadMXBean result =
+                (com.sun.management.ThreadMXBean) bean;
+        if (!result.isThreadAllocatedMemorySupported()) return null;
+        if (!result.isThreadAllocatedMemoryEnabled()) {
+            result.setThreadAllocatedMemoryEnabled(true);
+        }
+
+        return result;
+    }
+
+    /**
+     * Resize text area to its preferred height after modification,
+     * as JViewport does.
+     *
+     * <p>HeightKeeper chops Document on resize.
+     *
+     * @param textArea text area
+     */
+    private static void trackPreferredHeight(JTextArea textArea) {
+        textArea.setSize(TEXT_WIDTH, 1);
+
+        boolean[] scheduled = new boolean[1];
+        Runnable resize = () -> {
+            scheduled[0] = false;
+            int height = textArea.getPreferredSize().height;
+            textArea.setSize(TEXT_WIDTH, height);
+        };
+
+        textArea.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent ev) {
+                if (scheduled[0]) return;
+                scheduled[0] = true;
+                EventQueue.invokeLater(resize);
+                return;
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent ev) {
+                return;
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent ev) {
+                return;
+            }
+        });
+
+        return;
+    }
+
+    /**
+     * Build facade and handler on EDT.
+     *
+     * @return handler whose Document is of facade
+     * @throws Exception error on EDT
+     */
+    private static SwingLogHandler buildHandler() throws Exception {
+        SwingLogHandler[] result = new SwingLogHandler[1];
+        onEdt(() -> {
+            MvcFacade facade = new MvcFacade();
+            trackPreferredHeight(facade.getTextArea());
+            result[0] = new SwingLogHandler(facade.getDocument());
+            result[0].setFlushTimeout(TimeUnit.MINUTES.toMillis(1));
+        });
+        return result[0];
+    }
+
+    /**
+     * Publish records and wait for drain.
+     *
+     * @param handler handler
+     * @param records records
+     */
+    private static void publishAll(SwingLogHandler handler,
+                                   LogRecord[] records) {
+        for (LogRecord logRec : records) {
+            handler.publish(logRec);
+        }
+        handler.flush();
+        return;
+    }
+
+    /**
+     * Allocation bytes per record on producer thread and on EDT.
+     *
+     * @throws Exception error
+     */
+    @Test
+    public void allocationPerRecord() throws Exception {
+        com.sun.management.ThreadMXBean bean = getAllocBean();
+        assumeTrue(bean != null, "thread allocation not supported");
+
+        SwingLogHandler handler = buildHandler();
+        long[] edtId = new long[1];
+        onEdt(() -> {
+            edtId[0] = Thread.currentThread().getId();
+        });
+
+        publishAll(handler, buildRecords(ALLOC_WARMUP, SEED + 1));
+
+        LogRecord[] records = buildRecords(ALLOC_RECORDS, SEED);
+        long producerId = Thread.currentThread().getId();
+
+        long producer0 = bean.getThreadAllocatedBytes(producerId);
+        long edt0 = bean.getThreadAllocatedBytes(edtId[0]);
+        publishAll(handler, records);
+        long producer1 = bean.getThreadAllocatedBytes(producerId);
+        long edt1 = bean.getThreadAllocatedBytes(edtId[0]);
+
+        assertEquals(0, handler.getLagRecords());
+
+        double producer = (double) (producer1 - producer0) / ALLOC_RECORDS;
+        double edt = (double) (edt1 - edt0) / ALLOC_RECORDS;
+
+        boolean producerOk = report.addUpper("alloc.producer", producer,
+                "B/record", BUDGET_ALLOC_PRODUCER);
+        boolean edtOk = report.addUpper("alloc.edt", edt,
+                "B/record", BUDGET_ALLOC_EDT);
+
+        assertTrue(producerOk, "producer allocation " + producer + " B/record");
+        assertTrue(edtOk, "EDT allocation " + edt + " B/record");
+
+        return;
+    }
+
+    /**
+     * Append lines alternately as CharSequence and as char array.
+     *
+     * @param handler handler
+     * @param lines lines
+     * @param charLines lines as char array
+     * @param num number of appends
+     */
+    private static void appendAll(SwingLogHandler handler, String[] lines,
+                                  char[][] charLines, int num) {
+        for (int ct = 0; ct < num; ct++) {
+            int idx = ct % lines.length;
+            if (ct % 2 == 0) {
+                handler.append(lines[idx]);
+            } else {
+                char[] line = charLines[idx];
+                handler.append(line, 0, line.length);
+            }
+        }
+
+        return;
+    }
+
+    /**
+     * Allocation bytes per append of pre-formatted text on producer thread.
+     *
+     * <p>Text is copied into pooled chunks, so allocation must be near zero.
+     * Appends are flushed in batches smaller than chunk pool,
+     * and flushing is not measured.
+     *
+     * @throws Exception error
+     */
+    @Test
+    public void allocationPerAppend() throws Exception {
+        com.sun.management.ThreadMXBean bean = getAllocBean();
+        assumeTrue(bean != null, "thread allocation not supported");
+
+        SwingLogHandler handler = buildHandler();
+        String[] lines = buildLines(1_000).split("(?<=\n)");
+        char[][] charLines = new char[lines.length][];
+        for (int idx = 0; idx < lines.length; idx++) {
+            charLines[idx] = lines[idx].toCharArray();
+        }
+
+        appendAll(handler, lines, charLines, APPEND_WARMUP);
+        handler.flush();
+
+        long producerId = Thread.currentThread().getId();
+        long allocated = 0L;
+        for (int done = 0; done < APPEND_NUM; done += APPEND_BATCH) {
+            long producer0 = bean.getThreadAllocatedBytes(producerId);
+            appendAll(handler, lines, charLines, APPEND_BATCH);
+            long producer1 = bean.getThreadAllocatedBytes(producerId);
+            allocated += producer1 - producer0;
+            handler.flush();
+        }
+
+        assertEquals(0, handler.getLagRecords());
+
+        int appendNum = (APPEND_NUM + APPEND_BATCH - 1) / APPEND_BATCH * APPEND_BATCH;
+        double perAppend = (double) allocated / appendNum;
+        boolean ok = report.addUpper("alloc.append", perAppend,
+                "B/append", BUDGET_ALLOC_APPEND);
+
+        assertTrue(ok, "append allocation " + perAppend + " B/append");
+
+        return;
+    }
+
+    /**
+     * Measure chop time of half of Document.
+     *
+     * <p>Shortest time of several tries.
+     *
+     * @param text text of retained lines
+     * @return chop time (msec)
+     * @throws Exception error on EDT
+     */
+    private static double measureChop(String text) throws Exception {
+        long best = Long.MAX_VALUE;
+
+        for (int ct = 0; ct < CHOP_TRIES; ct++) {
+            long[] elapsed = new long[1];
+            onEdt(() -> {
+                MvcFacade facade = new MvcFacade();
+                HeightKeeper keeper = facade.getHeightKeeper();
+                keeper.setConditions(Integer.MAX_VALUE, Integer.MAX_VALUE - 1);
+
+                Document doc = facade.getDocument();
+                try {
+                    doc.insertString(0, text, null);
+                } catch (BadLocationException e) {
+                    throw new AssertionError(e);
+                }
+
+                JTextArea textArea = facade.getTextArea();
+                textArea.setSize(TEXT_WIDTH, 1);
+                int height = textArea.getPreferredSize().height;
+                textArea.setSize(TEXT_WIDTH, height);
+
+                int oldLength = doc.getLength();
+                long start = System.nanoTime();
+                keeper.setConditions(height - 1, height / 2);
+                elapsed[0] = System.nanoTime() - start;
+
+                keeper.setConditions(Integer.MAX_VALUE, Integer.MAX_VALUE - 1);
+                assertTrue(doc.getLength() < oldLength, "not chopped");
+            });
+            best = Long.min(best, elapsed[0]);
+        }
+
+        double result = (double) best / NANO_PER_MS;
+        return result;
+    }
+
+    /**
+     * Chop time versus retained size.
+     *
+     * <p>Chop time of largest Document must be within budget,
+     * and chop time per line must not grow much with retained size.
+     *
+     * @throws Exception error
+     */
+    @Test
+    public void chopTimeVersusRetainedSize() throws Exception {
+        double scale = PerfReport.getBudgetScale();
+
+        measureChop(buildLines(CHOP_LINES[0]));
+
+        double firstPerLine = 0.0;
+        double lastPerLine = 0.0;
+        double lastMs = 0.0;
+        for (int lines : CHOP_LINES) {
+            double ms = measureChop(buildLines(lines));
+            double perLine = ms * NANO_PER_MS / lines;
+            report.addUpper("chop.time." + lines + "lines", ms, "ms",
+                    BUDGET_CHOP_MAX * scale);
+
+            if (firstPerLine <= 0.0) firstPerLine = perLine;
+            lastPerLine = perLine;
+            lastMs = ms;
+        }
+
+        double growth = lastPerLine / firstPerLine;
+        boolean growthOk = report.addUpper("chop.growth.perLine", growth,
+                "ratio", BUDGET_CHOP_GROWTH);
+
+        assertTrue(lastMs <= BUDGET_CHOP_MAX * scale, "chop " + lastMs + " ms");
+        assertTrue(growthOk, "chop time per line grew " + growth + " times");
+
+        return;
+    }
+
+    /**
+     * Drain throughput from producer thread to Document.
+     *
+     * @throws Exception error
+     */
+    @Test
+    public void drainThroughput() throws Exception {
+        double scale = PerfReport.getBudgetScale();
+
+        SwingLogHandler handler = buildHandler();
+        publishAll(handler, buildRecords(ALLOC_WARMUP, SEED + 1));
+
+        LogRecord[] records = buildRecords(DRAIN_RECORDS, SEED);
+
+        long start = System.nanoTime();
+        publishAll(handler, records);
+        long elapsed = System.nanoTime() - start;
+
+        assertEquals(0, handler.getLagRecords());
+
+        double perSec = DRAIN_RECORDS / (elapsed / 1e9);
+        boolean ok = report.addLower("drain.throughput", perSec,
+                "records/s", BUDGET_DRAIN / scale);
+
+        assertTrue(ok, "drain " + perSec + " records/s");
+
+        return;
+    }
+
+    /**
+     * Flush latency while producer threads keep publishing.
+     *
+     * <p>Each producer publishes bursts of records every millisecond,
+     * below drain throughput.
+     * Each flush must finish before flush timeout,
+     * because only records published before it are awaited.
+     *
+     * @throws Exception error
+     */
+    @Test
+    public void flushLatencyUnderProducers() throws Exception {
+        SwingLogHandler handler = buildHandler();
+        handler.setFlushTimeout(SwingLogHandler.DEF_FLUSH_TIMEOUT);
+        double timeoutMs = handler.getFlushTimeout();
+
+        LogRecord[] records = buildRecords(ALLOC_WARMUP, SEED);
+        publishAll(handler, records);
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        Thread[] producers = new Thread[FLUSH_PRODUCERS];
+        for (int idx = 0; idx < FLUSH_PRODUCERS; idx++) {
+            producers[idx] = new Thread(() -> {
+                int ct = 0;
+                while (running.get()) {
+                    for (int burst = 0; burst < FLUSH_BURST; burst++) {
+                        handler.publish(records[ct]);
+                        ct = (ct + 1) % records.length;
+                    }
+                    try {
+                        Thread.sleep(1L);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }, "perf-producer-" + idx);
+            producers[idx].setDaemon(true);
+            producers[idx].start();
+        }
+
+        long worst = 0L;
+        try {
+            for (int ct = 0; ct < FLUSH_TRIES; ct++) {
+                Thread.sleep(FLUSH_INTERVAL);
+                long start = System.nanoTime();
+                handler.flush();
+                worst = Long.max(worst, System.nanoTime() - start);
+            }
+        } finally {
+            running.set(false);
+            for (Thread producer : producers) {
+                producer.join();
+            }
+        }
+
+        double worstMs = (double) worst / NANO_PER_MS;
+        boolean ok = report.addUpper("flush.latency", worstMs, "ms",
+                timeoutMs);
+
+        assertTrue(ok && worstMs < timeoutMs, "flush " + worstMs + " ms");
+
+        return;
+    }
+
+}
@@ -0,0 +1,159 @@
+/*
+ * License : The MIT License
+ * Copyright(c) 2019 Olyutorskii
+ */
+
+package test.harness;
+
+import io.github.olyutorskii.quetexj.Footprint;
+import io.github.olyutorskii.quetexj.FootprintAnalyzer;
+import io.github.olyutorskii.quetexj.MvcFacade;
+import io.github.olyutorskii.quetexj.SwingLogHandler;
+import java.awt.EventQueue;
+import java.awt.GridLayout;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.text.MessageFormat;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import javax.swing.JComponent;
+import javax.swing.JLabel;
+import javax.swing.SwingConstants;
+import javax.swing.Timer;
+
+/**
+ * Estimated heap footprint component.
+ *
+ * <p>Displays retained bytes per subsystem,
+ * and heap bytes per Document char and per visible char.
+ *
+ * <p>Footprint is analyzed again if clicked.
+ *
+ * @see FootprintAnalyzer
+ */
+@SuppressWarnings("serial")
+class FootprintMeter extends JComponent{
+
+    private static final int INTERVAL = 1999;  // msec (PRIME)
+    private static final MessageFormat FORM_BYTES =
+            new MessageFormat("{0,number,#,##0} B");
+    private static final MessageFormat FORM_TOTAL =
+            new MessageFormat("total {0,number,#,##0} KB");
+    private static final MessageFormat FORM_RATIO = new MessageFormat(
+            "{0,number,#,##0.0} B/char  {1,number,#,##0.0} B/visible char");
+    private static final String DMY_RATIO =
+            "9,999.9 B/char  99,999.9 B/visible char";
+    private static final String NA = "N/A";
+
+    private final MvcFacade facade;
+    private final SwingLogHandler handler;
+    private final Timer timer;
+    private final Map<Footprint.Part, JLabel> partLabels =
+            new EnumMap<>(Footprint.Part.class);
+    private final JLabel totalLabel = new JLabel();
+    private final JLabel ratioLabel = new JLabel(DMY_RATIO);
+    private final Object[] formatArgs = new Object[2];
+
+
+    /**
+     * Constructor.
+     *
+     * @param facade facade of text component
+     * @param handler log handler
+     */
+    FootprintMeter(MvcFacade facade, SwingLogHandler handler){
+        super();
+
+        this.facade = facade;
+        this.handler = handler;
+
+        design();
+
+        addMouseListener(new MouseAdapter(){
+            @Override
+            public void mouseClicked(MouseEvent ev){
+                updateFootprint();
+                return;
+            }
+        });
+
+        this.timer = new Timer(INTERVAL, ev -> {
+            updateFootprint();
+        });
+        this.timer.setRepeats(true);
+        this.timer.setCoalesce(true);
+        this.timer.start();
+
+        return;
+    }
+
+
+    /**
+     * Design layout.
+     *
+     * <p>Label width is fixed by dummy text.
+     */
+    private void design(){
+        GridLayout layout = new GridLayout(0, 2);
+        setLayout(layout);
+
+        for(Footprint.Part part : Footprint.Part.values()){
+            String name = part.name().toLowerCase(Locale.ROOT).replace('_', ' ');
+            JLabel valLabel = new JLabel("", SwingConstants.RIGHT);
+            this.partLabels.put(part, valLabel);
+            add(new JLabel(name));
+            add(valLabel);
+        }
+
+        this.ratioLabel.setPreferredSize(this.ratioLabel.getPreferredSize());
+        this.ratioLabel.setText("");
+
+        add(this.totalLabel);
+        add(this.ratioLabel);
+
+        return;
+    }
+
+    /**
+     * Replace unknown ratio with 0.
+     *
+     * @param ratio ratio. NaN if unknown.
+     * @return ratio. 0 if unknown.
+     */
+    private static double knownRatio(double ratio){
+        if(Double.isNaN(ratio)) return 0.0;
+        return ratio;
+    }
+
+    /**
+     * Analyze footprint and update labels.
+     */
+    private void updateFootprint(){
+        assert EventQueue.isDispatchThread();
+
+        Footprint footprint =
+                FootprintAnalyzer.analyze(this.facade, this.handler);
+
+        for(Footprint.Part part : Footprint.Part.values()){
+            JLabel valLabel = this.partLabels.get(part);
+            long bytes = footprint.getBytes(part);
+            if(bytes <= 0L){
+                valLabel.setText(NA);
+            }else{
+                this.formatArgs[0] = bytes;
+                valLabel.setText(FORM_BYTES.format(this.formatArgs));
+            }
+        }
+
+        this.formatArgs[0] = footprint.getTotalBytes() / 1024;
+        this.totalLabel.setText(FORM_TOTAL.format(this.formatArgs));
+
+        this.formatArgs[0] = knownRatio(footprint.getBytesPerDocumentChar());
+        this.formatArgs[1] = knownRatio(footprint.getBytesPerVisibleChar());
+        this.ratioLabel.setText(FORM_RATIO.format(this.formatArgs));
+
+        return;
+    }
+
+}
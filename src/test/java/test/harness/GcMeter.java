@@ -5,19 +5,34 @@
 
 package test.harness;
 
+import io.github.olyutorskii.quetexj.SwingLogHandler;
+import io.github.olyutorskii.quetexj.WarmTier;
 import java.awt.CardLayout;
 import java.awt.Component;
 import java.awt.EventQueue;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
 import java.text.MessageFormat;
+import java.util.List;
 import javax.swing.Box;
 import javax.swing.JComponent;
 import javax.swing.JLabel;
 import javax.swing.Timer;
 
 /**
- * Heap memory information component.
+ * Memory instrumentation component of logging pipeline.
+ *
+ * <p>Displays heap usage, allocated bytes per record
+ * on producer threads and on EDT, GC counts and pause times,
+ * retained Document size, and warm tier size.
+ *
+ * <p>Thread allocation is measured by com.sun.management.ThreadMXBean
+ * if available.
+ * Producer bytes per record are measured on load generator threads.
+ * EDT bytes per record include all EDT work (e.g. repaint)
+ * divided by records transferred to Document.
  *
  * <p>GC will happen if clicked.
  */
@@ -29,24 +44,71 @@ class GcMeter extends JComponent{
     private static final String GC_LABEL;
     private static final String DMY_LABEL;
     private static final MessageFormat FORM_LABEL;
+    private static final MessageFormat FORM_ALLOC;
+    private static final MessageFormat FORM_GC;
+    private static final MessageFormat FORM_DOC;
+    private static final String DMY_ALLOC;
+    private static final String DMY_GC;
+    private static final String DMY_DOC;
+    private static final MessageFormat FORM_WARM;
+    private static final String DMY_WARM;
+    private static final String NA_ALLOC = "alloc/rec : N/A";
 
     static{
         GC_LABEL  = "{0,number,##,##0.0} / {1,number,##,##0.0} MB";
         DMY_LABEL =           "99,999.9 / 99,999.9 MB";
         FORM_LABEL = new MessageFormat(GC_LABEL);
+
+        FORM_ALLOC = new MessageFormat(
+                "alloc/rec : producer {0,number,#,##0} B  EDT {1,number,#,##0} B");
+        DMY_ALLOC =  "alloc/rec : producer 9,999,999 B  EDT 9,999,999 B";
+        FORM_GC = new MessageFormat(
+                "GC : {0,number,#,##0} times  {1,number,#,##0} ms"
+                + "  (+{2,number,#,##0} / +{3,number,#,##0} ms)");
+        DMY_GC =  "GC : 9,999,999 times  9,999,999 ms  (+9,999 / +9,999 ms)";
+        FORM_DOC = new MessageFormat("Document : {0,number,#,##0} chars");
+        DMY_DOC =  "Document : 999,999,999 chars";
+        FORM_WARM = new MessageFormat(
+                "Warm tier : {0,number,#,##0} chars"
+                + " in {1,number,#,##0} KB ({2,number,#,##0} blocks)");
+        DMY_WARM =  "Warm tier : 999,999,999 chars in 999,999 KB (99,999 blocks)";
     }
 
     private final Timer timer;
     private final JLabel label = new JLabel();
-    private final Object[] formatArgs = new Object[2];
+    private final JLabel allocLabel = new JLabel();
+    private final JLabel gcLabel = new JLabel();
+    private final JLabel docLabel = new JLabel();
+    private final JLabel warmLabel = new JLabel();
+    private final Object[] formatArgs = new Object[4];
+
+    private final LoadEngine engine;
+    private final SwingLogHandler handler;
+    private final com.sun.management.ThreadMXBean threadBean;
+    private WarmTier warmTier;
+
+    private long lastProducerBytes;
+    private long lastProduced;
+    private List<Thread> lastProducers;
+    private long lastEdtBytes;
+    private long lastTransferred;
+    private long lastGcCount;
+    private long lastGcTime;
 
 
     /**
      * Constructor.
+     *
+     * @param engine load generator
+     * @param handler log handler
      */
-    GcMeter(){
+    GcMeter(LoadEngine engine, SwingLogHandler handler){
         super();
 
+        this.engine = engine;
+        this.handler = handler;
+        this.threadBean = getAllocBean();
+
         design();
 
         ClickWatcher watcher = new ClickWatcher();
@@ -55,6 +117,7 @@ class GcMeter extends JComponent{
         this.timer = buildTimer();
         timer.addActionListener(ev -> {
             updateMemInfo();
+            updatePipelineInfo();
         });
         this.timer.start();
 
@@ -79,6 +142,35 @@ private static Timer buildTimer(){
         return result;
     }
 
+    /**
+     * Return thread allocation MXBean.
+     *
+     * @return MXBean. null if unsupported.
+     */
+    private static com.sun.management.ThreadMXBean getAllocBean(){
+        Object bean = ManagementFactory.getThreadMXBean();
+        if(!(bean instanceof com.sun.management.ThreadMXBean)) return null;
+
+        com.sun.management.ThreadMXBean result =
+                (com.sun.management.ThreadMXBean) bean;
+        if(!result.isThreadAllocatedMemorySupported()) return null;
+        if(!result.isThreadAllocatedMemoryEnabled()){
+            result.setThreadAllocatedMemoryEnabled(true);
+        }
+
+        return result;
+    }
+
+
+    /**
+     * Set warm tier to be displayed.
+     *
+     * @param warmTier warm tier. null if none.
+     */
+    void setWarmTier(WarmTier warmTier){
+        this.warmTier = warmTier;
+        return;
+    }
 
     /**
      * Design layout.
@@ -89,14 +181,23 @@ private void design(){
         Box box = Box.createVerticalBox();
         this.label.setAlignmentX(Component.CENTER_ALIGNMENT);
         box.add(this.label);
+        box.add(this.allocLabel);
+        box.add(this.gcLabel);
+        box.add(this.docLabel);
+        box.add(this.warmLabel);
 
         CardLayout layout = new CardLayout();
         setLayout(layout);
 
-        JLabel dummyLabel = new JLabel(DMY_LABEL);
+        Box dummyBox = Box.createVerticalBox();
+        dummyBox.add(new JLabel(DMY_LABEL));
+        dummyBox.add(new JLabel(DMY_ALLOC));
+        dummyBox.add(new JLabel(DMY_GC));
+        dummyBox.add(new JLabel(DMY_DOC));
+        dummyBox.add(new JLabel(DMY_WARM));
 
         add(box);
-        add(dummyLabel);
+        add(dummyBox);
 
         return;
     }
@@ -137,6 +238,140 @@ private void updateMemInfo(double useMb, double totalMb){
         return;
     }
 
+    /**
+     * Update logging pipeline info.
+     */
+    private void updatePipelineInfo(){
+        assert EventQueue.isDispatchThread();
+
+        updateAllocInfo();
+        updateGcInfo();
+
+        this.formatArgs[0] = this.handler.getDocument().getLength();
+        this.docLabel.setText(FORM_DOC.format(this.formatArgs));
+
+        updateWarmInfo();
+
+        return;
+    }
+
+    /**
+     * Update warm tier size.
+     */
+    private void updateWarmInfo(){
+        WarmTier tier = this.warmTier;
+        if(tier == null) return;
+
+        this.formatArgs[0] = tier.getKeptChars();
+        this.formatArgs[1] = tier.getCompressedBytes() / 1024;
+        this.formatArgs[2] = tier.getBlockCount();
+        this.warmLabel.setText(FORM_WARM.format(this.formatArgs));
+
+        return;
+    }
+
+    /**
+     * Return sum of allocated bytes of threads.
+     *
+     * @param threads threads
+     * @return allocated bytes
+     */
+    private long sumAllocated(List<Thread> threads){
+        long[] ids = new long[threads.size()];
+        for(int idx = 0; idx < ids.length; idx++){
+            ids[idx] = threads.get(idx).getId();
+        }
+
+        long result = 0;
+        for(long bytes : this.threadBean.getThreadAllocatedBytes(ids)){
+            if(bytes > 0) result += bytes;
+        }
+
+        return result;
+    }
+
+    /**
+     * Return bytes per record.
+     *
+     * @param bytes allocated bytes
+     * @param records number of records
+     * @return bytes per record. 0 if no record.
+     */
+    private static long perRecord(long bytes, long records){
+        if(records <= 0) return 0L;
+        return bytes / records;
+    }
+
+    /**
+     * Update allocated bytes per record.
+     *
+     * <p>Interval when producer threads are replaced is skipped.
+     */
+    private void updateAllocInfo(){
+        if(this.threadBean == null){
+            this.allocLabel.setText(NA_ALLOC);
+            return;
+        }
+
+        List<Thread> producers = this.engine.getThreads();
+        long producerBytes = sumAllocated(producers);
+        long produced = this.engine.getProducedCount();
+
+        long producerPerRec = 0L;
+        if(producers.equals(this.lastProducers)){
+            producerPerRec = perRecord(
+                    producerBytes - this.lastProducerBytes,
+                    produced - this.lastProduced);
+        }
+        this.lastProducers = producers;
+        this.lastProducerBytes = producerBytes;
+        this.lastProduced = produced;
+
+        long edtBytes = this.threadBean.getThreadAllocatedBytes(
+                Thread.currentThread().getId());
+        long transferred = this.handler.getLatencyHistogram().getCount();
+
+        long edtPerRec = perRecord(
+                edtBytes - this.lastEdtBytes,
+                transferred - this.lastTransferred);
+        this.lastEdtBytes = edtBytes;
+        this.lastTransferred = transferred;
+
+        this.formatArgs[0] = producerPerRec;
+        this.formatArgs[1] = edtPerRec;
+        this.allocLabel.setText(FORM_ALLOC.format(this.formatArgs));
+
+        return;
+    }
+
+    /**
+     * Update GC counts and pause times.
+     *
+     * <p>Total and delta of last interval are displayed.
+     */
+    private void updateGcInfo(){
+        long count = 0;
+        long time = 0;
+        for(GarbageCollectorMXBean bean
+                : ManagementFactory.getGarbageCollectorMXBeans()){
+            long beanCount = bean.getCollectionCount();
+            long beanTime = bean.getCollectionTime();
+            if(beanCount > 0) count += beanCount;
+            if(beanTime > 0) time += beanTime;
+        }
+
+        this.formatArgs[0] = count;
+        this.formatArgs[1] = time;
+        this.formatArgs[2] = count - this.lastGcCount;
+        this.formatArgs[3] = time - this.lastGcTime;
+        this.gcLabel.setText(FORM_GC.format(this.formatArgs));
+
+        this.lastGcCount = count;
+        this.lastGcTime = time;
+
+        return;
+    }
+
 
     /**
      * Click watcher.
@@ -0,0 +1,85 @@
+/*
+ * License : The MIT License
+ * Copyright(c) 2019 Olyutorskii
+ */
+
+package test.harness;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Client process of LogIngestServer.
+ *
+ * <p>Usage: IngestClient port source lines
+ */
+public final class IngestClient{
+
+    private static final int LINES_PER_FRAME = 100;
+    private static final int OUT_BUF = 64 * 1024;
+
+
+    /**
+     * Hidden constructor.
+     */
+    private IngestClient(){
+        assert false;
+    }
+
+
+    /**
+     * Write one frame.
+     *
+     * @param out output
+     * @param text text
+     * @throws IOException I/O error
+     */
+    private static void writeFrame(DataOutputStream out, CharSequence text)
+            throws IOException{
+        byte[] bytes = text.toString().getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+        return;
+    }
+
+    /**
+     * Entry.
+     *
+     * @param args port, source name, number of lines
+     * @throws IOException I/O error
+     */
+    public static void main(String[] args) throws IOException{
+        int port = Integer.parseInt(args[0]);
+        String source = args[1];
+        int lines = Integer.parseInt(args[2]);
+
+        InetAddress loopback = InetAddress.getLoopbackAddress();
+        try(Socket socket = new Socket(loopback, port)){
+            DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(socket.getOutputStream(), OUT_BUF));
+
+            writeFrame(out, source);
+
+            StringBuilder buf = new StringBuilder();
+            for(int ct = 0; ct < lines; ct++){
+                buf.append("line ").append(ct).append(' ')
+                   .append(RandomLog.getParagraph(ct % RandomLog.getParagraphNum()))
+                   .append('\n');
+                if((ct + 1) % LINES_PER_FRAME == 0){
+                    writeFrame(out, buf);
+                    buf.setLength(0);
+                }
+            }
+            if(buf.length() > 0) writeFrame(out, buf);
+
+            out.flush();
+        }
+
+        return;
+    }
+
+}
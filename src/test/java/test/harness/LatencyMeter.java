@@ -0,0 +1,136 @@
+/*
+ * License : The MIT License
+ * Copyright(c) 2019 Olyutorskii
+ */
+
+package test.harness;
+
+import io.github.olyutorskii.quetexj.LatencyHistogram;
+import io.github.olyutorskii.quetexj.SwingLogHandler;
+import java.awt.EventQueue;
+import java.awt.GridLayout;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.text.MessageFormat;
+import javax.swing.JComponent;
+import javax.swing.JLabel;
+import javax.swing.Timer;
+
+/**
+ * Publish-to-Document latency percentile component.
+ *
+ * <p>EDT lag and transfer batch limit are also displayed.
+ *
+ * <p>Histogram is reset if clicked.
+ */
+@SuppressWarnings("serial")
+class LatencyMeter extends JComponent{
+
+    private static final int INTERVAL = 997;  // msec (PRIME)
+    private static final double NANO_PER_MSEC = 1.0e6;
+    private static final String LAT_LABEL;
+    private static final String DMY_LABEL;
+    private static final MessageFormat FORM_LABEL;
+    private static final MessageFormat FORM_EDT =
+            new MessageFormat("EDT lag {0,number,#,##0} ms  batch {1,number,#,##0}");
+
+    static{
+        LAT_LABEL = "p50 {0,number,#,##0.00}  p99 {1,number,#,##0.00}"
+                + "  p99.9 {2,number,#,##0.00}  max {3,number,#,##0.00} ms";
+        DMY_LABEL = "p50 9,999.99  p99 9,999.99  p99.9 9,999.99  max 9,999.99 ms";
+        FORM_LABEL = new MessageFormat(LAT_LABEL);
+    }
+
+    private final SwingLogHandler handler;
+    private final LatencyHistogram histogram;
+    private final Timer timer;
+    private final JLabel label = new JLabel(DMY_LABEL);
+    private final JLabel edtLabel = new JLabel();
+    private final Object[] formatArgs = new Object[4];
+    private final Object[] edtArgs = new Object[2];
+
+
+    /**
+     * Constructor.
+     *
+     * @param handler log handler
+     */
+    LatencyMeter(SwingLogHandler handler){
+        super();
+
+        this.handler = handler;
+        this.histogram = handler.getLatencyHistogram();
+
+        design();
+
+        this.label.addMouseListener(new MouseAdapter(){
+            @Override
+            public void mouseClicked(MouseEvent ev){
+                LatencyMeter.this.histogram.reset();
+                updateLatency();
+                return;
+            }
+        });
+
+        this.timer = new Timer(INTERVAL, ev -> {
+            updateLatency();
+        });
+        this.timer.setRepeats(true);
+        this.timer.setCoalesce(true);
+        this.timer.start();
+
+        return;
+    }
+
+
+    /**
+     * Convert nano sec to msec.
+     *
+     * @param nanos nano sec
+     * @return msec
+     */
+    private static double toMsec(long nanos){
+        return nanos / NANO_PER_MSEC;
+    }
+
+    /**
+     * Design layout.
+     *
+     * <p>Label width is fixed by dummy text.
+     */
+    private void design(){
+        GridLayout layout = new GridLayout(0, 1);
+        setLayout(layout);
+
+        this.label.setPreferredSize(this.label.getPreferredSize());
+        this.label.setText("");
+
+        add(this.label);
+        add(this.edtLabel);
+
+        return;
+    }
+
+    /**
+     * Update latency percentiles and EDT status.
+     */
+    private void updateLatency(){
+        assert EventQueue.isDispatchThread();
+
+        LatencyHistogram hist = this.histogram;
+        this.formatArgs[0] = toMsec(hist.getPercentile(50.0));
+        this.formatArgs[1] = toMsec(hist.getPercentile(99.0));
+        this.formatArgs[2] = toMsec(hist.getPercentile(99.9));
+        this.formatArgs[3] = toMsec(hist.getMax());
+
+        String result = FORM_LABEL.format(this.formatArgs);
+        this.label.setText(result);
+
+        this.edtArgs[0] = this.handler.getEdtLagMillis();
+        this.edtArgs[1] = this.handler.getDrainBatchLimit();
+        this.edtLabel.setText(FORM_EDT.format(this.edtArgs));
+
+        return;
+    }
+
+}
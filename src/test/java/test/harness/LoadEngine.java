@@ -0,0 +1,388 @@
+/*
+ * License : The MIT License
+ * Copyright(c) 2019 Olyutorskii
+ */
+
+package test.harness;
+
+import io.github.olyutorskii.quetexj.SwingLogHandler;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+/**
+ * Multi-threaded log load generator.
+ *
+ * <p>N producer threads emit records at target total rate.
+ * Burst profile emits same average rate within 100ms of each second.
+ * Virtual threads are used if requested and supported by JDK.
+ */
+class LoadEngine{
+
+    private static final Logger LOGGER = Logger.getGlobal();
+
+    private static final long NANO_PER_SEC = 1_000_000_000L;
+    private static final long IDLE_PARK = TimeUnit.MICROSECONDS.toNanos(100);
+    private static final long BURST_CYCLE = TimeUnit.MILLISECONDS.toNanos(1000);
+    private static final long BURST_ON    = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long PUBLISH_TIMEOUT = 100L;
+
+    private static final int SHORT_LEN = 40;
+    private static final int LONG_LEN = 64 * 1024;
+    private static final int LONG_RATIO = 1000;
+    private static final String SHORT_MSG;
+    private static final String SHORT_LINE;
+    private static final String[] TBL_LINES;
+
+    static{
+        StringBuilder buf = new StringBuilder();
+        for(int ct = 0; ct < SHORT_LEN; ct++){
+            buf.append((char)('0' + ct % 10));
+        }
+        SHORT_MSG = buf.toString();
+        SHORT_LINE = SHORT_MSG + '\n';
+
+        TBL_LINES = new String[RandomLog.getParagraphNum()];
+        for(int idx = 0; idx < TBL_LINES.length; idx++){
+            TBL_LINES[idx] = RandomLog.getParagraph(idx) + '\n';
+        }
+    }
+
+
+    private final SwingLogHandler handler;
+    private final List<Thread> threads = new ArrayList<>();
+    private volatile boolean running;
+
+    private final LongAdder produced = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+
+    /**
+     * Constructor.
+     *
+     * @param handler log handler
+     */
+    LoadEngine(SwingLogHandler handler){
+        super();
+        this.handler = handler;
+        return;
+    }
+
+
+    /**
+     * Return virtual thread factory by reflection.
+     *
+     * @return factory. null if unsupported
+     */
+    private static ThreadFactory virtualFactory(){
+        ThreadFactory result;
+        try{
+            Method ofVirtual = Thread.class.getMethod("ofVirtual");
+            Object builder = ofVirtual.invoke(null);
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            Method factory = builderType.getMethod("factory");
+            result = (ThreadFactory) factory.invoke(builder);
+        }catch(ReflectiveOperationException | RuntimeException e){
+            result = null;
+        }
+        return result;
+    }
+
+    /**
+     * Return whether virtual thread is supported.
+     *
+     * @return true if supported
+     */
+    static boolean isVirtualSupported(){
+        return virtualFactory() != null;
+    }
+
+    /**
+     * Return number of produced records.
+     *
+     * @return number of records
+     */
+    long getProducedCount(){
+        return this.produced.sum();
+    }
+
+    /**
+     * Return number of rejected or timed-out records.
+     *
+     * @return number of records
+     */
+    long getRejectedCount(){
+        return this.rejected.sum();
+    }
+
+    /**
+     * Return producer threads.
+     *
+     * @return threads. Empty if stopped.
+     */
+    synchronized List<Thread> getThreads(){
+        return new ArrayList<>(this.threads);
+    }
+
+    /**
+     * Return whether running.
+     *
+     * @return true if running
+     */
+    boolean isRunning(){
+        return this.running;
+    }
+
+    /**
+     * Start producers.
+     *
+     * <p>If already running, restart with new config.
+     *
+     * @param config load configuration
+     */
+    synchronized void start(Config config){
+        stop();
+
+        ThreadFactory factory = null;
+        if(config.virtual){
+            factory = virtualFactory();
+        }
+
+        this.running = true;
+        double perThread = (double) config.ratePerSec / config.threadNum;
+
+        for(int ct = 0; ct < config.threadNum; ct++){
+            Runnable task = () -> {
+                produce(config, perThread);
+            };
+
+            Thread thread;
+            if(factory != null){
+                thread = factory.newThread(task);
+            }else{
+                thread = new Thread(task);
+                thread.setDaemon(true);
+            }
+            thread.setName("load-" + ct);
+
+            this.threads.add(thread);
+        }
+
+        for(Thread thread : this.threads){
+            thread.start();
+        }
+
+        return;
+    }
+
+    /**
+     * Stop producers and wait for them.
+     */
+    synchronized void stop(){
+        this.running = false;
+
+        for(Thread thread : this.threads){
+            try{
+                thread.join();
+            }catch(InterruptedException e){
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        this.threads.clear();
+
+        return;
+    }
+
+    /**
+     * Producer loop.
+     *
+     * <p>Due records are emitted without sleeping,
+     * so high rate is achievable.
+     *
+     * @param config load configuration
+     * @param rate records per second of this thread
+     */
+    private void produce(Config config, double rate){
+        long start = System.nanoTime();
+        long emitted = 0;
+
+        while(this.running){
+            long now = System.nanoTime();
+            long elapsed = now - start;
+
+            long activeNanos = elapsed;
+            if(config.burst){
+                // same average rate, all emitted within ON window
+                long cycles = elapsed / BURST_CYCLE;
+                long inCycle = elapsed % BURST_CYCLE;
+                long onNanos = cycles * BURST_ON + Math.min(inCycle, BURST_ON);
+                activeNanos = onNanos * (BURST_CYCLE / BURST_ON);
+            }
+
+            long due = (long)(activeNanos * rate / NANO_PER_SEC) - emitted;
+            if(due <= 0){
+                LockSupport.parkNanos(IDLE_PARK);
+                continue;
+            }
+
+            for(long ct = 0; ct < due && this.running; ct++){
+                emit(config);
+                emitted++;
+            }
+        }
+
+        return;
+    }
+
+    /**
+     * Emit one record.
+     *
+     * @param config load configuration
+     */
+    private void emit(Config config){
+        boolean direct = config.path == EmitPath.APPEND;
+        String msg = pickMessage(config.sizeDist, direct);
+
+        switch(config.path){
+        case APPEND:
+            this.handler.append(msg);
+            break;
+        case BACKPRESSURE:
+            LogRecord logRec = new LogRecord(Level.INFO, msg);
+            logRec.setLoggerName(LOGGER.getName());
+            boolean accepted;
+            try{
+                accepted = this.handler.publish(
+                        logRec, PUBLISH_TIMEOUT, TimeUnit.MILLISECONDS);
+            }catch(InterruptedException e){
+                Thread.currentThread().interrupt();
+                accepted = false;
+            }
+            if(!accepted) this.rejected.increment();
+            break;
+        case LOGGER:
+        default:
+            LOGGER.info(msg);
+            break;
+        }
+
+        this.produced.increment();
+
+        return;
+    }
+
+    /**
+     * Pick message by size distribution.
+     *
+     * <p>Prepared messages are shared, so no allocation happens
+     * except rare long line.
+     *
+     * @param dist size distribution
+     * @param newline true if message ends with newline
+     * @return message
+     */
+    private static String pickMessage(SizeDist dist, boolean newline){
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+
+        if(dist == SizeDist.SHORT){
+            if(newline) return SHORT_LINE;
+            return SHORT_MSG;
+        }
+
+        if(dist == SizeDist.LONG_TAIL && rnd.nextInt(LONG_RATIO) == 0){
+            return longMessage(rnd, newline);
+        }
+
+        int idx = rnd.nextInt(TBL_LINES.length);
+        if(newline) return TBL_LINES[idx];
+        return RandomLog.getParagraph(idx);
+    }
+
+    /**
+     * Build long single-line message.
+     *
+     * @param rnd random
+     * @param newline true if message ends with newline
+     * @return message
+     */
+    private static String longMessage(ThreadLocalRandom rnd, boolean newline){
+        int len = rnd.nextInt(LONG_LEN / 2, LONG_LEN);
+        StringBuilder buf = new StringBuilder(len + 1);
+        while(buf.length() < len){
+            int idx = rnd.nextInt(RandomLog.getParagraphNum());
+            buf.append(RandomLog.getParagraph(idx)).append(' ');
+        }
+        buf.setLength(len);
+        if(newline) buf.append('\n');
+        return buf.toString();
+    }
+
+
+    /**
+     * Emission path.
+     */
+    enum EmitPath{
+        /** java.util.logging.Logger. */
+        LOGGER,
+        /** SwingLogHandler#append. */
+        APPEND,
+        /** SwingLogHandler#publish with timeout. */
+        BACKPRESSURE,
+    }
+
+    /**
+     * Message size distribution.
+     */
+    enum SizeDist{
+        /** Fixed short line. */
+        SHORT,
+        /** Random paragraph. */
+        PARAGRAPH,
+        /** Random paragraph with rare very long line. */
+        LONG_TAIL,
+    }
+
+    /**
+     * Load configuration.
+     */
+    static class Config{
+        final int threadNum;
+        final long ratePerSec;
+        final boolean burst;
+        final SizeDist sizeDist;
+        final EmitPath path;
+        final boolean virtual;
+
+        /**
+         * Constructor.
+         *
+         * @param threadNum number of threads
+         * @param ratePerSec total records per second
+         * @param burst true if burst profile
+         * @param sizeDist message size distribution
+         * @param path emission path
+         * @param virtual true if virtual threads
+         */
+        Config(int threadNum, long ratePerSec, boolean burst,
+                SizeDist sizeDist, EmitPath path, boolean virtual){
+            super();
+            this.threadNum = threadNum;
+            this.ratePerSec = ratePerSec;
+            this.burst = burst;
+            this.sizeDist = sizeDist;
+            this.path = path;
+            this.virtual = virtual;
+            return;
+        }
+    }
+
+}
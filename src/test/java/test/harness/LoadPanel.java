@@ -0,0 +1,212 @@
+/*
+ * License : The MIT License
+ * Copyright(c) 2019 Olyutorskii
+ */
+
+package test.harness;
+
+import java.awt.GridBagConstraints;
+import java.awt.GridBagLayout;
+import java.awt.Insets;
+import java.text.MessageFormat;
+import javax.swing.JCheckBox;
+import javax.swing.JComboBox;
+import javax.swing.JComponent;
+import javax.swing.JLabel;
+import javax.swing.JSpinner;
+import javax.swing.JToggleButton;
+import javax.swing.SpinnerNumberModel;
+import javax.swing.Timer;
+
+/**
+ * Load generator control GUI.
+ *
+ * <p>Achieved throughput is displayed live.
+ */
+@SuppressWarnings("serial")
+class LoadPanel extends JComponent{
+
+    private static final int INTERVAL = 500;  // msec
+    private static final int MAX_THREADS = 256;
+    private static final double MSEC_PER_SEC = 1000.0;
+
+    private static final Long[] TBL_RATES = {
+        100L, 1_000L, 10_000L, 100_000L, 1_000_000L, 5_000_000L,
+    };
+
+    private static final MessageFormat FORM_RATE =
+            new MessageFormat("{0,number,#,##0} rec/s  (rejected {1,number,#,##0})");
+    private static final String DMY_RATE = "9,999,999 rec/s  (rejected 9,999,999)";
+
+
+    private final LoadEngine engine;
+
+    private final JSpinner threadSpinner;
+    private final JComboBox<Long> rateCombo;
+    private final JComboBox<LoadEngine.SizeDist> sizeCombo;
+    private final JComboBox<LoadEngine.EmitPath> pathCombo;
+    private final JCheckBox burstCheck;
+    private final JCheckBox virtualCheck;
+    private final JToggleButton onOffButton;
+    private final JLabel rateLabel;
+
+    private final Timer timer;
+    private long lastCount;
+    private long lastNanos;
+    private final Object[] formatArgs = new Object[2];
+
+
+    /**
+     * Constructor.
+     *
+     * @param engine load engine
+     */
+    LoadPanel(LoadEngine engine){
+        super();
+
+        this.engine = engine;
+
+        SpinnerNumberModel threadModel =
+                new SpinnerNumberModel(4, 1, MAX_THREADS, 1);
+        this.threadSpinner = new JSpinner(threadModel);
+
+        this.rateCombo = new JComboBox<>(TBL_RATES);
+        this.rateCombo.setSelectedItem(10_000L);
+
+        this.sizeCombo = new JComboBox<>(LoadEngine.SizeDist.values());
+        this.sizeCombo.setSelectedItem(LoadEngine.SizeDist.PARAGRAPH);
+
+        this.pathCombo = new JComboBox<>(LoadEngine.EmitPath.values());
+
+        this.burstCheck = new JCheckBox("burst");
+        this.virtualCheck = new JCheckBox("virtual threads");
+        this.virtualCheck.setEnabled(LoadEngine.isVirtualSupported());
+
+        this.onOffButton = new JToggleButton("START");
+        this.onOffButton.addItemListener(ev -> {
+            eventOnOffSwitch();
+        });
+
+        this.rateLabel = new JLabel(DMY_RATE);
+
+        design();
+
+        this.timer = new Timer(INTERVAL, ev -> {
+            updateRate();
+        });
+        this.timer.setCoalesce(true);
+        this.timer.setRepeats(true);
+
+        this.rateLabel.setPreferredSize(this.rateLabel.getPreferredSize());
+        this.rateLabel.setText("");
+
+        return;
+    }
+
+
+    /**
+     * Design layout.
+     */
+    private void design(){
+        GridBagLayout layout = new GridBagLayout();
+        GridBagConstraints constraints = new GridBagConstraints();
+        setLayout(layout);
+
+        constraints.insets = new Insets(1, 3, 1, 3);
+        constraints.anchor = GridBagConstraints.LINE_START;
+
+        addRow("threads", this.threadSpinner, constraints);
+        addRow("rate", this.rateCombo, constraints);
+        addRow("size", this.sizeCombo, constraints);
+        addRow("path", this.pathCombo, constraints);
+
+        constraints.gridwidth = 1;
+        add(this.burstCheck, constraints);
+        constraints.gridwidth = GridBagConstraints.REMAINDER;
+        add(this.virtualCheck, constraints);
+
+        constraints.fill = GridBagConstraints.HORIZONTAL;
+        add(this.onOffButton, constraints);
+        add(this.rateLabel, constraints);
+
+        return;
+    }
+
+    /**
+     * Add captioned row.
+     *
+     * @param caption caption
+     * @param comp component
+     * @param constraints constraints
+     */
+    private void addRow(String caption, JComponent comp,
+            GridBagConstraints constraints){
+        constraints.gridwidth = 1;
+        add(new JLabel(caption), constraints);
+        constraints.gridwidth = GridBagConstraints.REMAINDER;
+        add(comp, constraints);
+        return;
+    }
+
+    /**
+     * Build configuration from GUI.
+     *
+     * @return configuration
+     */
+    private LoadEngine.Config buildConfig(){
+        int threadNum = (Integer) this.threadSpinner.getValue();
+        long rate = (Long) this.rateCombo.getSelectedItem();
+        LoadEngine.SizeDist size =
+                (LoadEngine.SizeDist) this.sizeCombo.getSelectedItem();
+        LoadEngine.EmitPath path =
+                (LoadEngine.EmitPath) this.pathCombo.getSelectedItem();
+
+        LoadEngine.Config result = new LoadEngine.Config(
+                threadNum, rate, this.burstCheck.isSelected(),
+                size, path, this.virtualCheck.isSelected());
+
+        return result;
+    }
+
+    /**
+     * Receive START/STOP button event.
+     */
+    private void eventOnOffSwitch(){
+        boolean isSelected = this.onOffButton.isSelected();
+
+        if(isSelected){
+            this.onOffButton.setText("STOP");
+            this.engine.start(buildConfig());
+            this.lastCount = this.engine.getProducedCount();
+            this.lastNanos = System.nanoTime();
+            this.timer.start();
+        }else{
+            this.onOffButton.setText("START");
+            this.engine.stop();
+            this.timer.stop();
+        }
+
+        return;
+    }
+
+    /**
+     * Update achieved throughput.
+     */
+    private void updateRate(){
+        long count = this.engine.getProducedCount();
+        long now = System.nanoTime();
+
+        double msec = (now - this.lastNanos) / 1.0e6;
+        double rate = (count - this.lastCount) * MSEC_PER_SEC / msec;
+
+        this.lastCount = count;
+        this.lastNanos = now;
+
+        this.formatArgs[0] = rate;
+        this.formatArgs[1] = this.engine.getRejectedCount();
+        this.rateLabel.setText(FORM_RATE.format(this.formatArgs));
+
+        return;
+    }
+
+}
@@ -0,0 +1,121 @@
+/*
+ * License : The MIT License
+ * Copyright(c) 2019 Olyutorskii
+ */
+
+package test.harness;
+
+import io.github.olyutorskii.quetexj.LongLineStore;
+import java.awt.Dimension;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import javax.swing.JDialog;
+import javax.swing.JScrollPane;
+import javax.swing.JTextArea;
+import javax.swing.SwingUtilities;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import javax.swing.text.Element;
+
+/**
+ * Opens whole content of elided long line.
+ *
+ * <p>Double-click placeholder line of text area.
+ */
+class LongLineViewer extends MouseAdapter{
+
+    private static final int CLICKS = 2;
+    private static final Dimension DIALOG_SIZE = new Dimension(600, 200);
+
+    private final LongLineStore store;
+
+
+    /**
+     * Constructor.
+     *
+     * @param store side store of elided lines
+     */
+    LongLineViewer(LongLineStore store){
+        super();
+        this.store = store;
+        return;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param ev {@inheritDoc}
+     */
+    @Override
+    public void mouseClicked(MouseEvent ev){
+        if(ev.getClickCount() != CLICKS) return;
+
+        JTextArea area = (JTextArea) ev.getComponent();
+        String line = clickedLine(area, area.getCaretPosition());
+        if(line == null) return;
+
+        int id = LongLineStore.parseId(line);
+        if(id < 0) return;
+
+        String whole = this.store.get(id);
+        if(whole == null){
+            whole = "(long line #" + id + " was discarded)";
+        }
+
+        openDialog(area, id, whole);
+
+        return;
+    }
+
+    /**
+     * Return text of line at offset.
+     *
+     * @param area text area
+     * @param offset offset
+     * @return line text. null if failed.
+     */
+    private static String clickedLine(JTextArea area, int offset){
+        Document doc = area.getDocument();
+        Element root = doc.getDefaultRootElement();
+        Element elem = root.getElement(root.getElementIndex(offset));
+
+        int start = elem.getStartOffset();
+        int end = Integer.min(elem.getEndOffset(), doc.getLength());
+
+        String result;
+        try{
+            result = doc.getText(start, end - start);
+        }catch(BadLocationException e){
+            result = null;
+        }
+
+        return result;
+    }
+
+    /**
+     * Open dialog of whole line.
+     *
+     * <p>Line is not wrapped.
+     *
+     * @param owner owner component
+     * @param id line ID
+     * @param whole whole line
+     */
+    private static void openDialog(JTextArea owner, int id, String whole){
+        JTextArea area = new JTextArea(whole);
+        area.setEditable(false);
+        area.setCaretPosition(0);
+
+        JDialog dialog = new JDialog(SwingUtilities.getWindowAncestor(owner));
+        dialog.setTitle("long line #" + id + " (" + whole.length() + " chars)");
+        dialog.setDefaultCloseOperation(JDialog.DISPOSE_ON_CLOSE);
+        dialog.add(new JScrollPane(area));
+        dialog.setSize(DIALOG_SIZE);
+        dialog.setLocationRelativeTo(owner);
+        dialog.setVisible(true);
+
+        return;
+    }
+
+}
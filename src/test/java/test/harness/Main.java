@@ -5,13 +5,23 @@
 
 package test.harness;
 
+import io.github.olyutorskii.quetexj.ConsoleRingFile;
+import io.github.olyutorskii.quetexj.HighlightRules;
+import io.github.olyutorskii.quetexj.LogIngestServer;
+import io.github.olyutorskii.quetexj.LongLinePolicy;
 import io.github.olyutorskii.quetexj.MvcFacade;
+import io.github.olyutorskii.quetexj.RecordColumns;
 import io.github.olyutorskii.quetexj.SwingLogHandler;
+import io.github.olyutorskii.quetexj.WarmTier;
+import java.awt.Color;
 import java.awt.Container;
 import java.awt.EventQueue;
 import java.awt.GridBagConstraints;
 import java.awt.GridBagLayout;
 import java.awt.event.ComponentListener;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Locale;
 import java.util.logging.Logger;
 import javax.swing.JComponent;
@@ -25,9 +35,33 @@
 
 /**
  * Test Harness GUI.
+ *
+ * <p>If system property "test.harness.ring" is specified,
+ * console text is persisted to the ring file and restored at startup.
+ *
+ * <p>If system property "test.harness.ingest" is specified,
+ * log text from other processes is received on the loopback port.
+ *
+ * <p>If system property "test.harness.record" is specified,
+ * records passed to global logger are recorded to the workload file.
+ *
+ * <p>If system property "test.harness.replay" is specified,
+ * records of the workload file are replayed.
+ * System property "test.harness.replay.speed" specifies
+ * speed factor such as "1", "10x" or "max". Default is "1".
+ *
+ * @see IngestClient
+ * @see WorkloadRecorder
+ * @see WorkloadReplayer
  */
 public final class Main {
 
+    private static final String PROP_RING = "test.harness.ring";
+    private static final String PROP_INGEST = "test.harness.ingest";
+    private static final String PROP_RECORD = "test.harness.record";
+    private static final String PROP_REPLAY = "test.harness.replay";
+    private static final String PROP_REPLAY_SPEED = "test.harness.replay.speed";
+
     private static final TimerPanel.IntervalTick[] TBL_TICKS = {
         new TimerPanel.IntervalTick(  10,  "10 ms"),
         new TimerPanel.IntervalTick( 125, "125 ms"),
@@ -58,7 +92,21 @@ private static JFrame buildTextFrame(){
         return frame;
     }
 
-    private static JFrame buildCntlPanel(JComponent dim, JComponent cntl){
+    private static JFrame buildRecordFrame(RecordColumns columns){
+        JFrame frame = new JFrame("records");
+
+        frame.setSize(600, 300);
+        frame.setLocationByPlatform(true);
+        frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+
+        frame.add(new RecordPane(columns));
+
+        return frame;
+    }
+
+    private static JFrame buildCntlPanel(JComponent dim, JComponent cntl,
+            JComponent load, JComponent latency, JComponent gc,
+            JComponent foot, JComponent jump){
         JFrame opt = new JFrame();
         opt.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
 
@@ -67,13 +115,24 @@ private static JFrame buildCntlPanel(JComponent dim, JComponent cntl){
         border = new TitledBorder("text area");
         dim.setBorder(border);
 
-        JComponent gc = new GcMeter();
         border = new EtchedBorder(EtchedBorder.RAISED);
         gc.setBorder(border);
 
         border = new TitledBorder("Timer Control");
         cntl.setBorder(border);
 
+        border = new TitledBorder("Load Generator");
+        load.setBorder(border);
+
+        border = new TitledBorder("Publish latency");
+        latency.setBorder(border);
+
+        border = new TitledBorder("Heap footprint (estimated)");
+        foot.setBorder(border);
+
+        border = new TitledBorder("Jump to time");
+        jump.setBorder(border);
+
         Container cont = opt.getContentPane();
         GridBagLayout layout = new GridBagLayout();
         cont.setLayout(layout);
@@ -90,11 +149,128 @@ private static JFrame buildCntlPanel(JComponent dim, JComponent cntl){
 
         constraints.weightx = 1.0;
         constraints.fill = GridBagConstraints.HORIZONTAL;
+        cont.add(load, constraints);
+        cont.add(latency, constraints);
         cont.add(gc, constraints);
+        cont.add(foot, constraints);
+        cont.add(jump, constraints);
 
         return opt;
     }
 
+    /**
+     * Build highlight rules.
+     *
+     * @return highlight rules
+     */
+    private static HighlightRules buildHighlightRules(){
+        HighlightRules rules = new HighlightRules();
+        rules.addRule("\\b(SEVERE|WARNING)\\b", new Color(0xffc0c0));
+        rules.addRule("\\bINFO\\b", new Color(0xd0f0d0));
+        rules.addRule("\\b\\w*q\\w*\\b", new Color(0xfff0a0));
+        return rules;
+    }
+
+    /**
+     * Open persistent ring file.
+     *
+     * @return ring file. null if not specified or failed.
+     */
+    private static ConsoleRingFile openRingFile(){
+        String ringPath = System.getProperty(PROP_RING);
+        if(ringPath == null) return null;
+
+        Path path = Paths.get(ringPath);
+        ConsoleRingFile result;
+        try{
+            result = ConsoleRingFile.open(path, ConsoleRingFile.DEF_CAPACITY);
+        }catch(IOException e){
+            e.printStackTrace();
+            return null;
+        }
+
+        return result;
+    }
+
+    /**
+     * Open ingestion server.
+     *
+     * @param handler log handler
+     * @return server. null if not specified or failed.
+     */
+    private static LogIngestServer openIngestServer(SwingLogHandler handler){
+        String port = System.getProperty(PROP_INGEST);
+        if(port == null) return null;
+
+        LogIngestServer result;
+        try{
+            result = LogIngestServer.open(handler, Integer.parseInt(port));
+        }catch(IOException | NumberFormatException e){
+            e.printStackTrace();
+            return null;
+        }
+
+        return result;
+    }
+
+    /**
+     * Open workload recorder.
+     *
+     * <p>Recorder is closed at shutdown.
+     *
+     * @return recorder. null if not specified or failed.
+     */
+    private static WorkloadRecorder openRecorder(){
+        String recPath = System.getProperty(PROP_RECORD);
+        if(recPath == null) return null;
+
+        WorkloadRecorder result;
+        try{
+            result = WorkloadRecorder.create(Paths.get(recPath));
+        }catch(IOException e){
+            e.printStackTrace();
+            return null;
+        }
+
+        Runtime.getRuntime().addShutdownHook(new Thread(result::close));
+
+        return result;
+    }
+
+    /**
+     * Start workload replayer.
+     *
+     * @param handler log handler
+     * @param logger logger of replay summary
+     * @return replayer. null if not specified or failed.
+     */
+    private static WorkloadReplayer startReplayer(SwingLogHandler handler,
+                                                  Logger logger){
+        String replayPath = System.getProperty(PROP_REPLAY);
+        if(replayPath == null) return null;
+
+        double speed;
+        try{
+            speed = WorkloadReplayer.parseSpeed(
+                    System.getProperty(PROP_REPLAY_SPEED, "1"));
+        }catch(NumberFormatException e){
+            e.printStackTrace();
+            return null;
+        }
+
+        WorkloadReplayer result = new WorkloadReplayer(
+                Paths.get(replayPath), handler, speed);
+        result.start(() -> {
+            logger.info(String.format(
+                    "replayed %d records in %d ms, max behind %d ms",
+                    result.getReplayedCount(),
+                    result.getElapsedNanos() / 1_000_000L,
+                    result.getMaxBehindNanos() / 1_000_000L));
+        });
+
+        return result;
+    }
+
     /**
      * Entry.
      *
@@ -115,16 +291,44 @@ public static void main(String[] args){
      */
     private static void kickSwing(){
         MvcFacade facade = new MvcFacade();
+        WarmTier warmTier = new WarmTier();
+        facade.setWarmTier(warmTier);
 
         Document doc = facade.getDocument();
 
         SwingLogHandler dh = new SwingLogHandler(doc);
+        dh.setAnsiEnabled(true);
+        facade.setAnsiRendering(true);
+        dh.setHighlightRules(buildHighlightRules());
+        facade.setHighlightRendering(true);
+        facade.setLineBreakPrecompute(true);
+        dh.setLongLinePolicy(LongLinePolicy.ELIDE);
+        RecordColumns columns = new RecordColumns();
+        dh.setRecordColumns(columns);
+
+        ConsoleRingFile ring = openRingFile();
+        if(ring != null){
+            facade.restoreText(ring);
+            dh.setRingFile(ring);
+        }
+
         Logger logger = Logger.getGlobal();
         logger.setUseParentHandlers(false);
         logger.addHandler(dh);
+        WorkloadRecorder recorder = openRecorder();
+        if(recorder != null){
+            logger.addHandler(recorder);
+        }
         logger.info("Let's start logging");
         logger.info("Let's start logging twice");
 
+        LogIngestServer ingest = openIngestServer(dh);
+        if(ingest != null){
+            logger.info("ingestion port " + ingest.getPort());
+        }
+
+        startReplayer(dh, logger);
+
         TimerPanel timerPanel = new TimerPanel(TBL_TICKS);
         Timer timer = timerPanel.getTimer();
         timer.addActionListener(ev -> {
@@ -134,20 +338,36 @@ private static void kickSwing(){
         DimDisp dimDisp = new DimDisp();
         ComponentListener resizeWatcher = dimDisp.getResizeWatcher();
 
-        TextPane tp = new TextPane(facade);
+        TextPane tp = new TextPane(facade, dh.getPinnedDocument());
         JTextArea textArea = facade.getTextArea();
         textArea.addComponentListener(resizeWatcher);
+        textArea.addMouseListener(new LongLineViewer(dh.getLongLineStore()));
 
         JFrame.setDefaultLookAndFeelDecorated(true);
 
         JFrame win = buildTextFrame();
         win.add(tp);
 
-        JFrame opt = buildCntlPanel(dimDisp, timerPanel);
+        LoadEngine loadEngine = new LoadEngine(dh);
+        LoadPanel loadPanel = new LoadPanel(loadEngine);
+
+        LatencyMeter latencyMeter = new LatencyMeter(dh);
+        GcMeter gcMeter = new GcMeter(loadEngine, dh);
+        gcMeter.setWarmTier(warmTier);
+
+        FootprintMeter footprintMeter = new FootprintMeter(facade, dh);
+
+        TimeJumper timeJumper = new TimeJumper(facade);
+
+        JFrame opt = buildCntlPanel(dimDisp, timerPanel, loadPanel,
+                latencyMeter, gcMeter, footprintMeter, timeJumper);
         opt.setLocationRelativeTo(win);
         opt.pack();
 
+        JFrame records = buildRecordFrame(columns);
+
         win.setVisible(true);
+        records.setVisible(true);
         opt.setVisible(true);
 
         return;
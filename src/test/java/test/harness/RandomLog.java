@@ -16,6 +16,14 @@ final class RandomLog {
     private static final Logger LOGGER = Logger.getGlobal();
     private static final Random RND;
     private static final String[] TBL_PARA = new String[1024];
+    private static final int SEVERE_RATIO = 50;
+    private static final int ANSI_RATIO = 10;
+    private static final String[] TBL_SGR = {
+        "\u001b[31m", "\u001b[32m", "\u001b[1;33m", "\u001b[4;34m",
+        "\u001b[38;5;208m", "\u001b[38;2;160;32;240m", "\u001b[7m",
+        "\u001b[30;46m",
+    };
+    private static final String SGR_RESET = "\u001b[0m";
 
     static{
         long seed = 135792468; //System.nanoTime();
@@ -142,6 +150,27 @@ private static void randomParagraph(StringBuilder txt){
         }
     }
 
+    /**
+     * Return number of prepared paragraphs.
+     *
+     * @return number of paragraphs
+     */
+    static int getParagraphNum(){
+        return TBL_PARA.length;
+    }
+
+    /**
+     * Return prepared paragraph.
+     *
+     * <p>Thread-safe.
+     *
+     * @param idx index
+     * @return paragraph
+     */
+    static String getParagraph(int idx){
+        return TBL_PARA[idx];
+    }
+
     /**
      * get random message with random words.
      *
@@ -153,11 +182,38 @@ static String getRandomMessage(){
         return result;
     }
 
+    /**
+     * Decorate message with random ANSI SGR color sometimes.
+     *
+     * @param msg message
+     * @return decorated message
+     */
+    private static String randomColor(String msg){
+        if(nextInt(1, ANSI_RATIO) != 1) return msg;
+
+        int idx = nextInt(0, TBL_SGR.length - 1);
+        int cut = msg.indexOf(' ');
+        if(cut < 0) cut = msg.length();
+
+        String result = TBL_SGR[idx] + msg.substring(0, cut) + SGR_RESET
+                + msg.substring(cut);
+
+        return result;
+    }
+
     /**
      * Logging random message.
+     *
+     * <p>SEVERE message is sometimes logged.
+     * Message is sometimes colored by ANSI escape sequence.
      */
     static void putRandomLog(){
-        LOGGER.info(getRandomMessage());
+        String msg = randomColor(getRandomMessage());
+        if(nextInt(1, SEVERE_RATIO) == 1){
+            LOGGER.severe(msg);
+        }else{
+            LOGGER.info(msg);
+        }
         return;
     }
 
@@ -0,0 +1,117 @@
+/*
+ * License : The MIT License
+ * Copyright(c) 2019 Olyutorskii
+ */
+
+package test.harness;
+
+import io.github.olyutorskii.quetexj.RecordColumns;
+import io.github.olyutorskii.quetexj.RecordTableModel;
+import java.awt.BorderLayout;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.logging.Level;
+import javax.swing.JComboBox;
+import javax.swing.JComponent;
+import javax.swing.JScrollPane;
+import javax.swing.JTable;
+import javax.swing.table.DefaultTableCellRenderer;
+import javax.swing.table.TableRowSorter;
+
+/**
+ * Structured record table with level filter.
+ */
+@SuppressWarnings("serial")
+class RecordPane extends JComponent{
+
+    private static final Level[] TBL_LEVELS = {
+        Level.ALL,
+        Level.INFO,
+        Level.WARNING,
+        Level.SEVERE,
+    };
+
+    private final RecordTableModel model;
+    private final TableRowSorter<RecordTableModel> sorter;
+    private final JTable table;
+    private final JComboBox<Level> levelBox = new JComboBox<>(TBL_LEVELS);
+
+
+    /**
+     * Constructor.
+     *
+     * @param columns record columns
+     */
+    RecordPane(RecordColumns columns){
+        super();
+
+        this.model = new RecordTableModel(columns);
+        this.sorter = this.model.createRowSorter();
+
+        this.table = new JTable(this.model);
+        this.table.setRowSorter(this.sorter);
+        this.table.setDefaultRenderer(Long.class, new TimeRenderer());
+        this.table.setAutoResizeMode(JTable.AUTO_RESIZE_LAST_COLUMN);
+
+        this.levelBox.addActionListener(ev -> {
+            updateFilter();
+        });
+
+        setLayout(new BorderLayout());
+        add(this.levelBox, BorderLayout.NORTH);
+        add(new JScrollPane(this.table), BorderLayout.CENTER);
+
+        return;
+    }
+
+
+    /**
+     * Update level filter.
+     */
+    private void updateFilter(){
+        Level level = (Level) this.levelBox.getSelectedItem();
+        if(level == null || level == Level.ALL){
+            this.sorter.setRowFilter(null);
+        }else{
+            this.sorter.setRowFilter(this.model.createLevelFilter(level));
+        }
+        return;
+    }
+
+
+    /**
+     * Renderer of time millis.
+     */
+    private static final class TimeRenderer extends DefaultTableCellRenderer{
+
+        private final SimpleDateFormat format =
+                new SimpleDateFormat("HH:mm:ss.SSS");
+        private final Date date = new Date();
+
+        /**
+         * Constructor.
+         */
+        TimeRenderer(){
+            super();
+            return;
+        }
+
+        /**
+         * {@inheritDoc}
+         *
+         * @param value {@inheritDoc}
+         */
+        @Override
+        protected void setValue(Object value){
+            if(value instanceof Long){
+                this.date.setTime((Long) value);
+                setText(this.format.format(this.date));
+            }else{
+                setText("");
+            }
+            return;
+        }
+
+    }
+
+}
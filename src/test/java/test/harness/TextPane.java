@@ -16,6 +16,8 @@
 import javax.swing.JScrollBar;
 import javax.swing.JScrollPane;
 import javax.swing.JTextArea;
+import javax.swing.border.TitledBorder;
+import javax.swing.text.Document;
 
 /**
  * Pseudo endless text component.
@@ -23,6 +25,9 @@
 @SuppressWarnings("serial")
 class TextPane extends JComponent{
 
+    private static final int PINNED_ROWS = 3;
+
+    private final JScrollPane pinnedPane;
     private final JScrollPane scrollPane;
     private final JButton clearBtn;
     private final JCheckBox trackBtn;
@@ -32,10 +37,17 @@ class TextPane extends JComponent{
      * Constructor.
      *
      * @param facade MVC
+     * @param pinnedDoc pinned document of recent errors
      */
-    TextPane(MvcFacade facade){
+    TextPane(MvcFacade facade, Document pinnedDoc){
         super();
 
+        JTextArea pinnedArea = new JTextArea(pinnedDoc);
+        pinnedArea.setEditable(false);
+        pinnedArea.setRows(PINNED_ROWS);
+        this.pinnedPane = new JScrollPane(pinnedArea);
+        this.pinnedPane.setBorder(new TitledBorder("recent errors"));
+
         JTextArea textArea = facade.getTextArea();
         this.scrollPane = new JScrollPane();
         this.scrollPane.setViewportView(textArea);
@@ -80,6 +92,7 @@ private void design(){
 
         layout = new BoxLayout(this, BoxLayout.PAGE_AXIS);
         setLayout(layout);
+        add(this.pinnedPane);
         add(pane);
         add(buttons);
 
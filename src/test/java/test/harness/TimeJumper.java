@@ -0,0 +1,88 @@
+/*
+ * License : The MIT License
+ * Copyright(c) 2019 Olyutorskii
+ */
+
+package test.harness;
+
+import io.github.olyutorskii.quetexj.MvcFacade;
+import java.awt.FlowLayout;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import javax.swing.JButton;
+import javax.swing.JComponent;
+import javax.swing.JLabel;
+import javax.swing.JTextField;
+
+/**
+ * Jump to time of today.
+ */
+@SuppressWarnings("serial")
+class TimeJumper extends JComponent{
+
+    private static final int COLUMNS = 8;
+    private static final DateTimeFormatter FORM_TIME =
+            DateTimeFormatter.ofPattern("HH:mm:ss");
+
+    private final MvcFacade facade;
+    private final JTextField timeField = new JTextField(COLUMNS);
+    private final JButton jumpBtn = new JButton("jump");
+    private final JLabel result = new JLabel();
+
+
+    /**
+     * Constructor.
+     *
+     * @param facade MVC
+     */
+    TimeJumper(MvcFacade facade){
+        super();
+
+        this.facade = facade;
+
+        this.timeField.setText(LocalTime.now().format(FORM_TIME));
+        this.timeField.addActionListener(ev -> {
+            jump();
+        });
+        this.jumpBtn.addActionListener(ev -> {
+            jump();
+        });
+
+        setLayout(new FlowLayout(FlowLayout.LEADING));
+        add(this.timeField);
+        add(this.jumpBtn);
+        add(this.result);
+
+        return;
+    }
+
+
+    /**
+     * Jump to time.
+     */
+    private void jump(){
+        LocalTime time;
+        try{
+            time = LocalTime.parse(this.timeField.getText().trim(), FORM_TIME);
+        }catch(DateTimeParseException e){
+            this.result.setText("HH:mm:ss ?");
+            return;
+        }
+
+        long millis = LocalDate.now().atTime(time)
+                .atZone(ZoneId.systemDefault())
+                .toInstant().toEpochMilli();
+
+        if(this.facade.jumpToTime(millis)){
+            this.result.setText("");
+        }else{
+            this.result.setText("not found");
+        }
+
+        return;
+    }
+
+}
@@ -0,0 +1,311 @@
+/*
+ * License : The MIT License
+ * Copyright(c) 2019 Olyutorskii
+ */
+
+package test.harness;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.ErrorManager;
+import java.util.logging.Formatter;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.SimpleFormatter;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Log handler which records LogRecord stream into workload file.
+ *
+ * <p>Each record keeps nanoseconds since previous record,
+ * level, logger name, source class and method names,
+ * thread ID, formatted message,
+ * and thrown Throwable chain with stack traces.
+ * Parameters are resolved by Formatter#formatMessage at recording.
+ *
+ * <p>File is GZIP-compressed stream of tagged entries.
+ * Integers are variable-length, and repeated names
+ * (levels, loggers, classes, methods, files) are written once
+ * and referred to by number after that.
+ *
+ * <p>Workload is replayed by WorkloadReplayer.
+ *
+ * @see WorkloadReplayer
+ */
+class WorkloadRecorder extends Handler{
+
+    /** File magic. */
+    static final int MAGIC = 0x51574c32;  // "QWL2"
+
+    /** Tag of record entry. */
+    static final int TAG_RECORD = 1;
+    /** Tag of end of stream. */
+    static final int TAG_END = 0;
+
+    /** Name reference of null. */
+    static final int REF_NULL = 0;
+    /** Name reference of new name, which follows. */
+    static final int REF_NEW = 1;
+    /** Name reference base of known names. */
+    static final int REF_BASE = 2;
+
+    private static final int OUT_BUF = 64 * 1024;
+
+
+    private final DataOutputStream out;
+    private final Formatter msgFormatter = new SimpleFormatter();
+    private final Map<String, Integer> names = new HashMap<>();
+
+    private long lastNanos;
+    private long recordCount;
+    private boolean closed;
+
+
+    /**
+     * Constructor.
+     *
+     * @param out output. Closed by this handler.
+     * @throws IOException output error
+     */
+    WorkloadRecorder(OutputStream out) throws IOException{
+        super();
+
+        this.out = new DataOutputStream(new GZIPOutputStream(
+                new BufferedOutputStream(out, OUT_BUF), OUT_BUF));
+        this.out.writeInt(MAGIC);
+
+        this.lastNanos = System.nanoTime();
+
+        return;
+    }
+
+
+    /**
+     * Create recorder to file.
+     *
+     * <p>Existing file is overwritten.
+     *
+     * @param path file path
+     * @return recorder
+     * @throws IOException output error
+     */
+    static WorkloadRecorder create(Path path) throws IOException{
+        OutputStream os = Files.newOutputStream(path);
+        WorkloadRecorder result;
+        try{
+            result = new WorkloadRecorder(os);
+        }catch(IOException e){
+            os.close();
+            throw e;
+        }
+        return result;
+    }
+
+    /**
+     * Write unsigned variable-length integer.
+     *
+     * <p>7 bits per byte, low bits first.
+     *
+     * @param dout output
+     * @param val value. Regarded as unsigned.
+     * @throws IOException output error
+     */
+    static void writeVarLong(DataOutputStream dout, long val)
+            throws IOException{
+        long rest = val;
+        while((rest & ~0x7fL) != 0L){
+            dout.writeByte((int)(rest & 0x7fL) | 0x80);
+            rest >>>= 7;
+        }
+        dout.writeByte((int) rest);
+        return;
+    }
+
+    /**
+     * Write signed variable-length integer by zigzag encoding.
+     *
+     * @param dout output
+     * @param val value
+     * @throws IOException output error
+     */
+    static void writeVarSigned(DataOutputStream dout, long val)
+            throws IOException{
+        writeVarLong(dout, (val << 1) ^ (val >> 63));
+        return;
+    }
+
+    /**
+     * Write string. null is allowed.
+     *
+     * <p>Length+1 (0 means null) and UTF-8 bytes.
+     *
+     * @param dout output
+     * @param text string
+     * @throws IOException output error
+     */
+    static void writeString(DataOutputStream dout, String text)
+            throws IOException{
+        if(text == null){
+            writeVarLong(dout, 0L);
+            return;
+        }
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(dout, bytes.length + 1L);
+        dout.write(bytes);
+        return;
+    }
+
+    /**
+     * Return number of recorded records.
+     *
+     * @return number of records
+     */
+    synchronized long getRecordCount(){
+        return this.recordCount;
+    }
+
+    /**
+     * Write name by reference.
+     *
+     * @param name name. null is allowed.
+     * @throws IOException output error
+     */
+    private void writeName(String name) throws IOException{
+        if(name == null){
+            writeVarLong(this.out, REF_NULL);
+            return;
+        }
+
+        Integer id = this.names.get(name);
+        if(id != null){
+            writeVarLong(this.out, REF_BASE + (long) id);
+            return;
+        }
+
+        this.names.put(name, this.names.size());
+        writeVarLong(this.out, REF_NEW);
+        writeString(this.out, name);
+
+        return;
+    }
+
+    /**
+     * Write Throwable chain.
+     *
+     * <p>Number of chained Throwables,
+     * then class name, message and stack frames of each.
+     *
+     * @param thrown Throwable. null is allowed.
+     * @throws IOException output error
+     */
+    private void writeThrown(Throwable thrown) throws IOException{
+        int depth = 0;
+        for(Throwable th = thrown; th != null && depth < Short.MAX_VALUE;
+                th = th.getCause()){
+            depth++;
+        }
+        writeVarLong(this.out, depth);
+
+        Throwable th = thrown;
+        for(int ct = 0; ct < depth; ct++){
+            String className;
+            if(th instanceof WorkloadReplayer.ReplayedThrowable){
+                className = ((WorkloadReplayer.ReplayedThrowable) th)
+                        .getClassName();
+            }else{
+                className = th.getClass().getName();
+            }
+            writeName(className);
+            writeString(this.out, th.getMessage());
+
+            StackTraceElement[] frames = th.getStackTrace();
+            writeVarLong(this.out, frames.length);
+            for(StackTraceElement frame : frames){
+                writeName(frame.getClassName());
+                writeName(frame.getMethodName());
+                writeName(frame.getFileName());
+                writeVarSigned(this.out, frame.getLineNumber());
+            }
+
+            th = th.getCause();
+        }
+
+        return;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param logRec {@inheritDoc}
+     */
+    @Override
+    @SuppressWarnings("deprecation")
+    public synchronized void publish(LogRecord logRec){
+        if(this.closed) return;
+        if(!isLoggable(logRec)) return;
+
+        long now = System.nanoTime();
+        String msg = this.msgFormatter.formatMessage(logRec);
+
+        try{
+            this.out.writeByte(TAG_RECORD);
+            writeVarLong(this.out, Math.max(0L, now - this.lastNanos));
+            writeName(logRec.getLevel().getName());
+            writeVarSigned(this.out, logRec.getLevel().intValue());
+            writeName(logRec.getLoggerName());
+            writeName(logRec.getSourceClassName());
+            writeName(logRec.getSourceMethodName());
+            writeVarLong(this.out, logRec.getThreadID() & 0xffffffffL);
+            writeString(this.out, msg);
+            writeThrown(logRec.getThrown());
+        }catch(IOException e){
+            reportError(null, e, ErrorManager.WRITE_FAILURE);
+            return;
+        }
+
+        this.lastNanos = now;
+        this.recordCount++;
+
+        return;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void flush(){
+        if(this.closed) return;
+        try{
+            this.out.flush();
+        }catch(IOException e){
+            reportError(null, e, ErrorManager.FLUSH_FAILURE);
+        }
+        return;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>End tag is written and file is closed.
+     */
+    @Override
+    public synchronized void close(){
+        if(this.closed) return;
+        this.closed = true;
+        try{
+            this.out.writeByte(TAG_END);
+            this.out.close();
+        }catch(IOException e){
+            reportError(null, e, ErrorManager.CLOSE_FAILURE);
+        }
+        return;
+    }
+
+}
@@ -0,0 +1,516 @@
+/*
+ * License : The MIT License
+ * Copyright(c) 2019 Olyutorskii
+ */
+
+package test.harness;
+
+import io.github.olyutorskii.quetexj.SwingLogHandler;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Replayer of workload file recorded by WorkloadRecorder.
+ *
+ * <p>Records are published to SwingLogHandler by one replay thread,
+ * keeping recorded intervals divided by speed factor.
+ * Speed 0 means max speed, without any wait.
+ * If replay falls behind, due records are published without waiting.
+ *
+ * <p>Replayed records have current time,
+ * and recorded level, logger name, source class and method names,
+ * thread ID and message.
+ * Thrown Throwables are rebuilt with recorded class names,
+ * messages and stack frames,
+ * so formatted text is same as recorded one except time.
+ *
+ * @see WorkloadRecorder
+ */
+class WorkloadReplayer{
+
+    private static final int IN_BUF = 64 * 1024;
+    private static final long MAX_PARK = TimeUnit.MILLISECONDS.toNanos(100);
+
+
+    private final Path path;
+    private final SwingLogHandler handler;
+    private final double speed;
+
+    private final List<String> names = new ArrayList<>();
+    private final List<Level> levels = new ArrayList<>();
+
+    private volatile Thread thread;
+    private volatile boolean running;
+    private volatile long replayedCount;
+    private volatile long elapsedNanos;
+    private volatile long maxBehindNanos;
+
+
+    /**
+     * Constructor.
+     *
+     * @param path workload file
+     * @param handler log handler
+     * @param speed speed factor. 0 means max speed.
+     * @throws IllegalArgumentException negative speed
+     */
+    WorkloadReplayer(Path path, SwingLogHandler handler, double speed)
+            throws IllegalArgumentException{
+        super();
+
+        if(!(speed >= 0.0)) throw new IllegalArgumentException();
+
+        this.path = path;
+        this.handler = handler;
+        this.speed = speed;
+
+        return;
+    }
+
+
+    /**
+     * Parse speed factor.
+     *
+     * <p>"max" means max speed. "1", "2.5" or "10x" means factor.
+     *
+     * @param text text
+     * @return speed factor. 0 means max speed.
+     * @throws NumberFormatException illegal text
+     */
+    static double parseSpeed(String text) throws NumberFormatException{
+        String trimmed = text.trim();
+        if("max".equalsIgnoreCase(trimmed)) return 0.0;
+        if(trimmed.endsWith("x") || trimmed.endsWith("X")){
+            trimmed = trimmed.substring(0, trimmed.length() - 1);
+        }
+        double result = Double.parseDouble(trimmed);
+        if(!(result > 0.0)) throw new NumberFormatException(text);
+        return result;
+    }
+
+    /**
+     * Read unsigned variable-length integer.
+     *
+     * @param din input
+     * @return value
+     * @throws IOException input error
+     */
+    static long readVarLong(DataInputStream din) throws IOException{
+        long result = 0L;
+        int shift = 0;
+        while(true){
+            int bval = din.readUnsignedByte();
+            result |= (long)(bval & 0x7f) << shift;
+            if((bval & 0x80) == 0) break;
+            shift += 7;
+            if(shift >= Long.SIZE) throw new IOException("broken varint");
+        }
+        return result;
+    }
+
+    /**
+     * Read signed variable-length integer by zigzag encoding.
+     *
+     * @param din input
+     * @return value
+     * @throws IOException input error
+     */
+    static long readVarSigned(DataInputStream din) throws IOException{
+        long raw = readVarLong(din);
+        return (raw >>> 1) ^ -(raw & 1L);
+    }
+
+    /**
+     * Read string. null is possible.
+     *
+     * @param din input
+     * @return string
+     * @throws IOException input error
+     */
+    static String readString(DataInputStream din) throws IOException{
+        long lenPlus = readVarLong(din);
+        if(lenPlus == 0L) return null;
+        if(lenPlus - 1L > Integer.MAX_VALUE) throw new IOException("too long");
+
+        byte[] bytes = new byte[(int)(lenPlus - 1L)];
+        din.readFully(bytes);
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Return number of replayed records.
+     *
+     * @return number of records
+     */
+    long getReplayedCount(){
+        return this.replayedCount;
+    }
+
+    /**
+     * Return elapsed time of replay.
+     *
+     * @return elapsed nanoseconds
+     */
+    long getElapsedNanos(){
+        return this.elapsedNanos;
+    }
+
+    /**
+     * Return max delay behind recorded schedule.
+     *
+     * @return nanoseconds. 0 at max speed.
+     */
+    long getMaxBehindNanos(){
+        return this.maxBehindNanos;
+    }
+
+    /**
+     * Return whether replaying.
+     *
+     * @return true if replaying
+     */
+    boolean isRunning(){
+        return this.running;
+    }
+
+    /**
+     * Start replay thread.
+     *
+     * <p>If already started, do nothing.
+     *
+     * @param onEnd called by replay thread at end. null is allowed.
+     */
+    synchronized void start(Runnable onEnd){
+        if(this.thread != null) return;
+
+        this.running = true;
+        Thread th = new Thread(() -> {
+            replay();
+            this.running = false;
+            if(onEnd != null) onEnd.run();
+        });
+        th.setName("workload-replay");
+        th.setDaemon(true);
+
+        this.thread = th;
+        th.start();
+
+        return;
+    }
+
+    /**
+     * Stop replay and wait for replay thread.
+     */
+    void stop(){
+        this.running = false;
+
+        Thread th = this.thread;
+        if(th == null) return;
+
+        try{
+            th.join();
+        }catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+        }
+
+        return;
+    }
+
+    /**
+     * Replay whole file.
+     *
+     * <p>Errors are reported to ErrorManager of handler.
+     */
+    private void replay(){
+        long start = System.nanoTime();
+
+        try(InputStream is = Files.newInputStream(this.path)){
+            replay(is, start);
+        }catch(EOFException e){
+            // truncated by crash of recording process
+        }catch(IOException e){
+            this.handler.getErrorManager().error(
+                    "workload replay failed", e, 0);
+        }
+
+        this.elapsedNanos = System.nanoTime() - start;
+
+        return;
+    }
+
+    /**
+     * Replay stream.
+     *
+     * @param is input
+     * @param start replay start time by System.nanoTime()
+     * @throws IOException input error
+     */
+    private void replay(InputStream is, long start) throws IOException{
+        DataInputStream din = new DataInputStream(
+                new BufferedInputStream(
+                        new GZIPInputStream(is, IN_BUF), IN_BUF));
+
+        if(din.readInt() != WorkloadRecorder.MAGIC){
+            throw new IOException("not workload file");
+        }
+
+        long recorded = 0L;
+        long count = 0L;
+
+        while(this.running){
+            int tag = din.readUnsignedByte();
+            if(tag == WorkloadRecorder.TAG_END) break;
+            if(tag != WorkloadRecorder.TAG_RECORD){
+                throw new IOException("unknown tag " + tag);
+            }
+
+            recorded += readVarLong(din);
+            LogRecord logRec = readRecord(din);
+
+            waitDue(start, recorded);
+
+            this.handler.publish(logRec);
+            count++;
+            this.replayedCount = count;
+        }
+
+        return;
+    }
+
+    /**
+     * Wait until record is due.
+     *
+     * @param start replay start time by System.nanoTime()
+     * @param recorded recorded nanoseconds since first record
+     */
+    private void waitDue(long start, long recorded){
+        if(this.speed <= 0.0) return;
+
+        long due = start + (long)(recorded / this.speed);
+        while(this.running){
+            long rest = due - System.nanoTime();
+            if(rest <= 0L){
+                if(-rest > this.maxBehindNanos) this.maxBehindNanos = -rest;
+                break;
+            }
+            LockSupport.parkNanos(Math.min(rest, MAX_PARK));
+        }
+
+        return;
+    }
+
+    /**
+     * Read one record.
+     *
+     * @param din input
+     * @return log record
+     * @throws IOException input error
+     */
+    @SuppressWarnings("deprecation")
+    private LogRecord readRecord(DataInputStream din) throws IOException{
+        Level level = readLevel(din);
+        String loggerName = readName(din);
+        String sourceClass = readName(din);
+        String sourceMethod = readName(din);
+        int threadId = (int) readVarLong(din);
+        String msg = readString(din);
+        Throwable thrown = readThrown(din);
+
+        LogRecord result = new LogRecord(level, msg);
+        result.setLoggerName(loggerName);
+        result.setSourceClassName(sourceClass);
+        result.setSourceMethodName(sourceMethod);
+        result.setThreadID(threadId);
+        result.setThrown(thrown);
+
+        return result;
+    }
+
+    /**
+     * Read name by reference.
+     *
+     * @param din input
+     * @return name. null is possible.
+     * @throws IOException input error
+     */
+    private String readName(DataInputStream din) throws IOException{
+        int id = readNameId(din);
+        if(id < 0) return null;
+        return this.names.get(id);
+    }
+
+    /**
+     * Read name reference as name ID.
+     *
+     * <p>New name is registered.
+     *
+     * @param din input
+     * @return name ID. -1 if null.
+     * @throws IOException input error
+     */
+    private int readNameId(DataInputStream din) throws IOException{
+        long ref = readVarLong(din);
+        if(ref == WorkloadRecorder.REF_NULL) return -1;
+
+        if(ref == WorkloadRecorder.REF_NEW){
+            String name = readString(din);
+            this.names.add(name);
+            this.levels.add(null);
+            return this.names.size() - 1;
+        }
+
+        long id = ref - WorkloadRecorder.REF_BASE;
+        if(id >= this.names.size()) throw new IOException("unknown name");
+
+        return (int) id;
+    }
+
+    /**
+     * Read level.
+     *
+     * <p>Standard level is parsed by name.
+     * Custom level is parsed by its value.
+     *
+     * @param din input
+     * @return level
+     * @throws IOException input error
+     */
+    private Level readLevel(DataInputStream din) throws IOException{
+        int id = readNameId(din);
+        int value = (int) readVarSigned(din);
+        if(id < 0) throw new IOException("no level");
+
+        Level result = this.levels.get(id);
+        if(result != null) return result;
+
+        String name = this.names.get(id);
+
+        try{
+            result = Level.parse(name);
+            if(result.intValue() != value) result = null;
+        }catch(IllegalArgumentException e){
+            result = null;
+        }
+        if(result == null){
+            result = Level.parse(Integer.toString(value));
+        }
+
+        this.levels.set(id, result);
+
+        return result;
+    }
+
+    /**
+     * Read Throwable chain.
+     *
+     * @param din input
+     * @return Throwable. null if none.
+     * @throws IOException input error
+     */
+    private Throwable readThrown(DataInputStream din) throws IOException{
+        int depth = (int) readVarLong(din);
+        if(depth <= 0) return null;
+
+        ReplayedThrowable[] chain = new ReplayedThrowable[depth];
+        for(int idx = 0; idx < depth; idx++){
+            String className = readName(din);
+            String msg = readString(din);
+
+            int frameNum = (int) readVarLong(din);
+            StackTraceElement[] frames = new StackTraceElement[frameNum];
+            for(int fidx = 0; fidx < frameNum; fidx++){
+                String declClass = readName(din);
+                String method = readName(din);
+                String file = readName(din);
+                int line = (int) readVarSigned(din);
+                frames[fidx] =
+                        new StackTraceElement(declClass, method, file, line);
+            }
+
+            chain[idx] = new ReplayedThrowable(className, msg);
+            chain[idx].setStackTrace(frames);
+        }
+
+        for(int idx = 0; idx < depth - 1; idx++){
+            chain[idx].initCause(chain[idx + 1]);
+        }
+
+        return chain[0];
+    }
+
+
+    /**
+     * Throwable rebuilt from workload.
+     *
+     * <p>String form is same as recorded Throwable.
+     * Stack trace is not filled in by construction.
+     */
+    @SuppressWarnings("serial")
+    static class ReplayedThrowable extends Throwable{
+
+        private final String className;
+
+
+        /**
+         * Constructor.
+         *
+         * @param className recorded class name
+         * @param msg recorded message
+         */
+        ReplayedThrowable(String className, String msg){
+            super(msg);
+            this.className = className;
+            return;
+        }
+
+
+        /**
+         * Return recorded class name.
+         *
+         * @return class name
+         */
+        String getClassName(){
+            return this.className;
+        }
+
+        /**
+         * {@inheritDoc}
+         *
+         * <p>Stack trace is set later.
+         *
+         * @return {@inheritDoc}
+         */
+        @Override
+        public synchronized Throwable fillInStackTrace(){
+            return this;
+        }
+
+        /**
+         * {@inheritDoc}
+         *
+         * @return {@inheritDoc}
+         */
+        @Override
+        public String toString(){
+            String msg = getLocalizedMessage();
+            if(msg == null) return this.className;
+            return this.className + ": " + msg;
+        }
+
+    }
+
+}